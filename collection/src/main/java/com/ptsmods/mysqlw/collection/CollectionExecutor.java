@@ -0,0 +1,43 @@
+package com.ptsmods.mysqlw.collection;
+
+import com.ptsmods.mysqlw.executor.GatedExecutor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Holds the executor a {@link DbCollection} runs its asynchronous calls on.<br>
+ * Collections are not thread-safe, so the executors created here run one call at a time and in order.
+ */
+final class CollectionExecutor {
+    private final String name;
+    private Executor executor;
+    private boolean own = true;
+
+    /**
+     * @param threadName The name of the thread calls are run on by default
+     * @param name The name of the collection, used in the names of virtual threads
+     */
+    CollectionExecutor(String threadName, String name) {
+        this.name = name;
+        executor = Executors.newFixedThreadPool(1, r -> new Thread(r, threadName));
+    }
+
+    Executor get() {
+        return executor;
+    }
+
+    void set(Executor executor) {
+        this.executor = executor;
+        own = false;
+    }
+
+    boolean useVirtualThreads() {
+        if (!GatedExecutor.isVirtualSupported()) return false;
+
+        if (own) GatedExecutor.shutdown(executor);
+        executor = GatedExecutor.virtual(name, 1);
+        own = true;
+        return true;
+    }
+}
@@ -12,7 +12,6 @@ import org.jetbrains.annotations.NotNull;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 import java.util.function.BiFunction;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -35,7 +34,7 @@ public class DbList<E> extends AbstractList<E> implements DbCollection {
     private final String name;
     private final BiFunction<E, DbCollection, String> elementToString;
     private final BiFunction<String, DbCollection, E> elementFromString;
-    private Executor executor;
+    private final CollectionExecutor executor;
 
     /**
      * Parses a String representation of a DbList into a DbList.
@@ -96,16 +95,26 @@ public class DbList<E> extends AbstractList<E> implements DbCollection {
         this.elementToString = elementToString;
         this.elementFromString = elementFromString;
         // Not thread-safe so we use a fixed pool.
-        executor = Executors.newFixedThreadPool(1, r -> new Thread(r, "Database List Thread - " + db.getName() + ":" + name));
+        executor = new CollectionExecutor("Database List Thread - " + db.getName() + ":" + name, db.getName() + ":" + name);
         cache.put(name, this);
     }
 
     public void setExecutor(Executor executor) {
-        this.executor = executor;
+        this.executor.set(executor);
     }
 
     public Executor getExecutor() {
-        return executor;
+        return executor.get();
+    }
+
+    /**
+     * Makes this list run its asynchronous calls on virtual threads, if the running JVM supports them (Java 21 and up).
+     * Calls still run one at a time and in order.
+     * The previous executor is shut down if it was created by this list, tasks it already accepted still run.
+     * @return Whether virtual threads are supported and are now used. If not, the executor is left untouched.
+     */
+    public boolean useVirtualThreads() {
+        return executor.useVirtualThreads();
     }
 
     public <T> CompletableFuture<T> runAsync(Supplier<T> sup) {
@@ -12,7 +12,6 @@ import org.jetbrains.annotations.Nullable;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 import java.util.function.BiFunction;
 import java.util.function.Supplier;
 
@@ -36,7 +35,7 @@ public class DbMap<K, V> extends AbstractMap<K, V> implements DbCollection {
     private final BiFunction<V, DbCollection, String> valueToString;
     private final BiFunction<String, DbCollection, K> keyFromString;
     private final BiFunction<String, DbCollection, V> valueFromString;
-    private Executor executor;
+    private final CollectionExecutor executor;
 
     /**
      * Parses a String representation of a DbMap into a DbMap.
@@ -111,16 +110,26 @@ public class DbMap<K, V> extends AbstractMap<K, V> implements DbCollection {
         this.keyFromString = keyFromString;
         this.valueFromString = valueFromString;
         // Not thread-safe so we use a fixed pool.
-        executor = Executors.newFixedThreadPool(1, r -> new Thread(r, "Database Map Thread - " + db.getName() + ":" + name));
+        executor = new CollectionExecutor("Database Map Thread - " + db.getName() + ":" + name, db.getName() + ":" + name);
         cache.put(name, this);
     }
 
     public void setExecutor(Executor executor) {
-        this.executor = executor;
+        this.executor.set(executor);
     }
 
     public Executor getExecutor() {
-        return executor;
+        return executor.get();
+    }
+
+    /**
+     * Makes this map run its asynchronous calls on virtual threads, if the running JVM supports them (Java 21 and up).
+     * Calls still run one at a time and in order.
+     * The previous executor is shut down if it was created by this map, tasks it already accepted still run.
+     * @return Whether virtual threads are supported and are now used. If not, the executor is left untouched.
+     */
+    public boolean useVirtualThreads() {
+        return executor.useVirtualThreads();
     }
 
     public <T> CompletableFuture<T> runAsync(Supplier<T> sup) {
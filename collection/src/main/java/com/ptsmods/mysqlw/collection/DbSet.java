@@ -10,7 +10,6 @@ import org.jetbrains.annotations.NotNull;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 import java.util.function.BiFunction;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -31,7 +30,7 @@ public class DbSet<E> extends AbstractSet<E> implements DbCollection {
     private final String name;
     private final BiFunction<E, DbCollection, String> elementToString;
     private final BiFunction<String, DbCollection, E> elementFromString;
-    private Executor executor;
+    private final CollectionExecutor executor;
 
     /**
      * Parses a String representation of a DbSet into a DbSet.
@@ -90,16 +89,26 @@ public class DbSet<E> extends AbstractSet<E> implements DbCollection {
         this.elementToString = elementToString;
         this.elementFromString = elementFromString;
         // Not thread-safe so we use a fixed pool.
-        executor = Executors.newFixedThreadPool(1, r -> new Thread(r, "Database Set Thread - " + name + ":" + db.getName()));
+        executor = new CollectionExecutor("Database Set Thread - " + name + ":" + db.getName(), db.getName() + ":" + name);
         cache.put(name, this);
     }
 
     public void setExecutor(Executor executor) {
-        this.executor = executor;
+        this.executor.set(executor);
     }
 
     public Executor getExecutor() {
-        return executor;
+        return executor.get();
+    }
+
+    /**
+     * Makes this set run its asynchronous calls on virtual threads, if the running JVM supports them (Java 21 and up).
+     * Calls still run one at a time and in order.
+     * The previous executor is shut down if it was created by this set, tasks it already accepted still run.
+     * @return Whether virtual threads are supported and are now used. If not, the executor is left untouched.
+     */
+    public boolean useVirtualThreads() {
+        return executor.useVirtualThreads();
     }
 
     public <T> CompletableFuture<T> runAsync(Supplier<T> sup) {
@@ -1,14 +1,34 @@
 package com.ptsmods.mysqlw;
 
+import com.ptsmods.mysqlw.cache.ResultCache;
+import com.ptsmods.mysqlw.executor.BoundedExecutor;
+import com.ptsmods.mysqlw.executor.ExecutorOptions;
+import com.ptsmods.mysqlw.executor.GatedExecutor;
+import com.ptsmods.mysqlw.pool.ConnectionPool;
+import com.ptsmods.mysqlw.pool.PoolOptions;
+import com.ptsmods.mysqlw.pool.StatementCache;
 import com.ptsmods.mysqlw.procedure.IBlockBuilder;
 import com.ptsmods.mysqlw.procedure.ProcedureParameter;
 import com.ptsmods.mysqlw.procedure.TriggeringEvent;
 import com.ptsmods.mysqlw.query.*;
+import com.ptsmods.mysqlw.query.builder.BatchLoader;
+import com.ptsmods.mysqlw.query.builder.BatchLoaderOptions;
+import com.ptsmods.mysqlw.query.builder.BulkLoadOptions;
+import com.ptsmods.mysqlw.query.builder.BulkLoader;
+import com.ptsmods.mysqlw.query.builder.DeleteBuilder;
+import com.ptsmods.mysqlw.query.builder.GroupCommitOptions;
+import com.ptsmods.mysqlw.query.builder.GroupCommitter;
 import com.ptsmods.mysqlw.query.builder.InsertBuilder;
 import com.ptsmods.mysqlw.query.builder.SelectBuilder;
+import com.ptsmods.mysqlw.query.builder.UpdateBuilder;
+import com.ptsmods.mysqlw.query.builder.WriteBehindBuffer;
+import com.ptsmods.mysqlw.query.builder.WriteBehindOptions;
+import com.ptsmods.mysqlw.sqlite.SQLiteOptions;
 import com.ptsmods.mysqlw.table.ColumnStructure;
 import com.ptsmods.mysqlw.table.TableIndex;
 import com.ptsmods.mysqlw.table.TablePreset;
+import com.ptsmods.mysqlw.transaction.IsolationLevel;
+import com.ptsmods.mysqlw.transaction.TransactionOptions;
 import org.intellij.lang.annotations.Language;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -16,6 +36,8 @@ import org.jetbrains.annotations.Nullable;
 import java.io.*;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
@@ -25,8 +47,12 @@ import java.nio.channels.ReadableByteChannel;
 import java.sql.*;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
@@ -35,7 +61,10 @@ import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 public class Database {
+    // The amount of seconds closing waits for each executor to run the tasks it already accepted.
+    private static final long CLOSE_TIMEOUT = 30;
     private static final Map<Connection, Database> databases = new HashMap<>();
+    private static final Map<ConnectionPool, Database> pooledDatabases = new HashMap<>();
     private static final Map<Class<?>, Function<Object, String>> classConverters = new HashMap<>();
     private static final Map<Class<?>, Function<String, Object>> reverseClassConverters = new HashMap<>();
     private static final char[] HEX_DIGITS = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F'};
@@ -132,12 +161,7 @@ public class Database {
     public static Database connect(String host, int port, String name, String username, String password) throws SQLException {
         checkNotNull(host, "host");
         checkNotNull(name, "name");
-
-        try {
-            Class.forName(RDBMS.MySQL.getInitialLoadClass());
-        } catch (ClassNotFoundException e) {
-            throw new SQLException("Could not find MySQL connector on classpath, is it loaded?", e);
-        }
+        checkConnector(RDBMS.MySQL);
 
         Database db = new Database(RDBMS.MySQL, RDBMS.MySQL.createConnection(host + ':' + port, username, password), name);
         db.execute("CREATE DATABASE IF NOT EXISTS " + name + ";"); // Create database if it does not yet exist.
@@ -145,6 +169,38 @@ public class Database {
         return db;
     }
 
+    /**
+     * Makes a pooled connection to a MySQL database.<br>
+     * Every call made on the returned Database borrows a connection from the pool and returns it once done,
+     * so asynchronous calls no longer have to wait for each other.
+     * @param host The hostname of this database. Often localhost
+     * @param port The port this dataserver runs on. Often 3306
+     * @param name The name of this database. An attempt to create this database will be made if it does not yet exist.
+     * @param username The username to log in with.
+     * @param password The password that goes with the username. Can be null if there isn't one.
+     * @param poolOptions The options to configure the connection pool with.
+     * @return A Database with which you can do anything.
+     * @throws SQLException If an error occurred while either connecting or creating the database.
+     * @see PoolOptions
+     */
+    public static Database connect(String host, int port, String name, String username, String password, PoolOptions poolOptions) throws SQLException {
+        checkNotNull(host, "host");
+        checkNotNull(name, "name");
+        checkNotNull(poolOptions, "poolOptions");
+        checkConnector(RDBMS.MySQL);
+
+        // Create database if it does not yet exist, before any pooled connection tries to use it.
+        try (Connection con = RDBMS.MySQL.createConnection(host + ':' + port, username, password); Statement statement = con.createStatement()) {
+            statement.execute("CREATE DATABASE IF NOT EXISTS " + name + ";");
+        }
+
+        return new Database(RDBMS.MySQL, new ConnectionPool(name, () -> {
+            Connection con = RDBMS.MySQL.createConnection(host + ':' + port, username, password);
+            con.setCatalog(name);
+            return con;
+        }, poolOptions), name);
+    }
+
     /**
      * Makes a new connection to an SQLite database or creates it if it does not yet exist.
      * @param file The database file to connect to.
@@ -152,13 +208,117 @@ public class Database {
      * @throws SQLException If an error occurred while either connecting or creating the database.
      */
     public static Database connect(File file) throws SQLException {
+        return connect(file, SQLiteOptions.defaults());
+    }
+
+    /**
+     * Makes a new connection to an SQLite database or creates it if it does not yet exist and applies the given options to it.
+     * @param file The database file to connect to.
+     * @param sqliteOptions The options to apply to the connection, e.g. {@link SQLiteOptions#balanced()}.
+     * @return A Database with which you can do anything.
+     * @throws SQLException If an error occurred while either connecting, creating the database or applying the options.
+     * @see SQLiteOptions
+     */
+    public static Database connect(File file, SQLiteOptions sqliteOptions) throws SQLException {
+        checkNotNull(sqliteOptions, "sqliteOptions");
+        checkConnector(RDBMS.SQLite);
+        return new Database(RDBMS.SQLite, createSQLiteConnection(file.getAbsolutePath(), sqliteOptions),
+                file.getName().substring(file.getName().lastIndexOf('.')));
+    }
+
+    /**
+     * Makes a new pooled connection to an SQLite database or creates it if it does not yet exist.
+     * @param file The database file to connect to.
+     * @param poolOptions The options to configure the connection pool with.
+     * @return A Database with which you can do anything.
+     * @throws SQLException If an error occurred while either connecting or creating the database.
+     * @see PoolOptions
+     */
+    public static Database connect(File file, PoolOptions poolOptions) throws SQLException {
+        return connect(file, poolOptions, SQLiteOptions.defaults());
+    }
+
+    /**
+     * Makes a new pooled connection to an SQLite database or creates it if it does not yet exist.
+     * The given SQLite options are applied to every connection the pool opens.
+     * @param file The database file to connect to.
+     * @param poolOptions The options to configure the connection pool with.
+     * @param sqliteOptions The options to apply to each connection, e.g. {@link SQLiteOptions#balanced()}.
+     * @return A Database with which you can do anything.
+     * @throws SQLException If an error occurred while either connecting, creating the database or applying the options.
+     * @see PoolOptions
+     * @see SQLiteOptions
+     */
+    public static Database connect(File file, PoolOptions poolOptions, SQLiteOptions sqliteOptions) throws SQLException {
+        checkNotNull(poolOptions, "poolOptions");
+        checkNotNull(sqliteOptions, "sqliteOptions");
+        checkConnector(RDBMS.SQLite);
+        String path = file.getAbsolutePath();
+        String name = file.getName().substring(file.getName().lastIndexOf('.'));
+        return new Database(RDBMS.SQLite, new ConnectionPool(name, () -> createSQLiteConnection(path, sqliteOptions), poolOptions), name);
+    }
+
+    /**
+     * Makes a new connection to an SQLite database or creates it if it does not yet exist, with separate connections for reading.<br>
+     * Every select, count and {@link SelectBuilder} query is run on a pool of read-only connections, and asynchronous reads run on
+     * an executor with a thread per reader. Everything else, including all writes, goes to a single writer connection and
+     * the single thread of the {@link #getExecutor() default executor}, so writes stay in order.
+     * Reads within a {@link #transaction(Function) transaction} go to the writer, so they see the transaction's own writes.<br>
+     * Readers only run alongside the writer when using {@link SQLiteOptions.JournalMode#WAL WAL}, e.g. {@link SQLiteOptions#balanced()}.
+     * @param file The database file to connect to.
+     * @param sqliteOptions The options to apply to the writer and each reader.
+     * @param readers The maximum amount of read-only connections.
+     * @return A Database with which you can do anything.
+     * @throws SQLException If an error occurred while either connecting, creating the database or applying the options.
+     * @see #getReadPool()
+     */
+    public static Database connect(File file, SQLiteOptions sqliteOptions, int readers) throws SQLException {
+        checkNotNull(sqliteOptions, "sqliteOptions");
+        if (readers < 1) throw new IllegalArgumentException("There must be at least one reader.");
+        checkConnector(RDBMS.SQLite);
+        String path = file.getAbsolutePath();
+        String name = file.getName().substring(file.getName().lastIndexOf('.'));
+
+        // The writer goes first, so it can switch the journal mode before any reader opens the database.
+        Connection writer = createSQLiteConnection(path, sqliteOptions);
+        ConnectionPool readPool;
+        try {
+            readPool = new ConnectionPool(name + " Readers", () -> createSQLiteConnection(path, sqliteOptions, true),
+                    PoolOptions.builder().maxSize(readers).build());
+        } catch (SQLException | RuntimeException e) {
+            writer.close();
+            throw e;
+        }
+
+        return new Database(RDBMS.SQLite, writer, null, readPool, name);
+    }
+
+    private static Connection createSQLiteConnection(String path, SQLiteOptions options) throws SQLException {
+        return createSQLiteConnection(path, options, false);
+    }
+
+    private static Connection createSQLiteConnection(String path, SQLiteOptions options, boolean readOnly) throws SQLException {
+        Connection connection = RDBMS.SQLite.createConnection(path);
         try {
-            Class.forName(RDBMS.SQLite.getInitialLoadClass());
+            options.apply(connection);
+            if (readOnly)
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("PRAGMA query_only = ON;");
+                }
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+
+        return connection;
+    }
+
+    private static void checkConnector(RDBMS type) throws SQLException {
+        try {
+            Class.forName(type.getInitialLoadClass());
         } catch (ClassNotFoundException e) {
-            throw new SQLException("Could not find SQLite connector on classpath, is it loaded?", e);
+            throw new SQLException("Could not find " + type.name() + " connector on classpath, is it loaded?", e);
         }
-        return new Database(RDBMS.SQLite, RDBMS.SQLite.createConnection(file.getAbsolutePath()),
-                file.getName().substring(file.getName().lastIndexOf('.')));
     }
 
     /**
@@ -179,7 +339,8 @@ public class Database {
      * @return The Database that wraps this connection or null.
      */
     public static @Nullable Database getDatabase(Connection connection) {
-        return databases.get(connection);
+        ConnectionPool pool = ConnectionPool.getPool(connection);
+        return pool == null ? databases.get(connection) : pooledDatabases.get(pool);
     }
 
     public static Database getDatabase(ResultSet set) {
@@ -192,23 +353,66 @@ public class Database {
 
     private final RDBMS type;
     private final Connection con;
+    // What is handed out instead of con, its statements wait for the transactions of other threads.
+    private final Connection guarded;
+    private final ConnectionPool pool;
+    // Read-only connections selects are run on, only used by SQLite databases with separate readers.
+    private final ConnectionPool readPool;
+    private final StatementCache statementCache;
     private final Logger log;
     private boolean doLog = false;
     private final String cachedName;
     private Executor executor;
+    private final Executor readExecutor;
+    private boolean ownExecutor = true;
     private Function<Throwable, Void> errorHandler;
+    private final Map<String, WriteBehindBuffer> writeBehindBuffers = new ConcurrentHashMap<>();
+    private final Map<List<Object>, BatchLoader> batchLoaders = new ConcurrentHashMap<>();
+    private volatile GroupCommitter groupCommitter;
+    private volatile SingleFlight<List<Object>, SelectResults> singleFlight;
+    private volatile ResultCache resultCache;
+    // Bumped whenever a table is written to, so results selected while it was being written to are not cached.
+    private final Map<String, Long> tableVersions = new HashMap<>();
+    private final ThreadLocal<Transaction> transaction = new ThreadLocal<>();
+    // The deadline and statements of the call running on each thread, see withTimeout and runAsync.
+    private final ThreadLocal<Call> call = new ThreadLocal<>();
+    private volatile int queryTimeout;
+    // Only used when not pooled, as all transactions then share a single connection.
+    // Held by a transaction for as long as it runs and by any statement on the shared connection while it executes.
+    private final ReentrantLock transactionLock = new ReentrantLock();
 
     private Database(RDBMS type, Connection con, String name) {
+        this(type, con, null, name);
+    }
+
+    private Database(RDBMS type, ConnectionPool pool, String name) {
+        this(type, null, pool, name);
+    }
+
+    private Database(RDBMS type, Connection con, ConnectionPool pool, String name) {
+        this(type, con, pool, null, name);
+    }
+
+    private Database(RDBMS type, Connection con, ConnectionPool pool, ConnectionPool readPool, String name) {
         this.type = type;
         this.con = con;
+        guarded = con == null ? null : guard(con);
+        this.pool = pool;
+        this.readPool = readPool;
+        statementCache = con == null ? null : new StatementCache(con, StatementCache.DEFAULT_SIZE);
         log = Logger.getLogger("Database-" + name);
         cachedName = name;
-        executor = type.getDefaultExecutor(name);
+        executor = type.getDefaultExecutor(name, getConnectionCapacity());
+        readExecutor = readPool == null ? null : RDBMS.createBoundedExecutor(name + " Reader", readPool.getOptions().getMaxSize());
         errorHandler = t -> {
             log.log(Level.SEVERE, "An error occurred during an asynchronous Database call.", t);
             return null;
         };
-        databases.put(con, this);
+        if (pool == null) {
+            databases.put(con, this);
+            databases.put(guarded, this);
+        } else pooledDatabases.put(pool, this);
+        if (readPool != null) pooledDatabases.put(readPool, this);
     }
 
     public Logger getLog() {
@@ -229,8 +433,230 @@ public class Database {
     }
 
     public void logOrThrow(String msg, SQLException e) throws SilentSQLException {
-        if (doLog) log.log(Level.FINER, msg, e);
-        else throw new SilentSQLException(e);
+        if (!doLog) throw new SilentSQLException(e);
+
+        // Statements of cancelled calls fail on purpose, that's not worth logging.
+        Call call = this.call.get();
+        if (call == null || !call.isCancelled()) log.log(Level.FINER, msg, e);
+    }
+
+    /**
+     * Sets the default amount of seconds any statement created by this Database may take to execute before the driver cancels it.<br>
+     * Calls with a {@link #withTimeout(long, TimeUnit, Supplier) deadline} use whichever of the two ends first.
+     * The SQLite driver uses the query timeout as busy timeout of the entire connection rather than as execution timeout,
+     * so on SQLite, this is not passed to the driver and deadlines are only checked before each statement is executed.
+     * @param seconds The amount of seconds statements may take, or 0 for no limit
+     * @see Statement#setQueryTimeout(int)
+     */
+    public void setQueryTimeout(int seconds) {
+        if (seconds < 0) throw new IllegalArgumentException("The query timeout cannot be negative.");
+        queryTimeout = seconds;
+    }
+
+    /**
+     * @return The default amount of seconds any statement created by this Database may take to execute, or 0 if there is no limit.
+     * @see #setQueryTimeout(int)
+     */
+    public int getQueryTimeout() {
+        return queryTimeout;
+    }
+
+    /**
+     * Runs the given block with a deadline, every statement created while it runs is given the time that is left as query timeout
+     * and statements created after the deadline has passed fail with an {@link SQLTimeoutException} instead.
+     * Asynchronous calls made from the given block inherit its deadline, so time spent waiting for a thread counts towards it.
+     * If this call already has a deadline that ends earlier, that one is kept.
+     * @param timeout The amount of time the given block may take
+     * @param unit The unit of the given timeout
+     * @param block The block to run
+     * @param <T> The type the given block returns
+     * @return The value the given block returned
+     * @see #setQueryTimeout(int)
+     */
+    public <T> T withTimeout(long timeout, TimeUnit unit, Supplier<T> block) {
+        Call previous = call.get();
+        call.set(new Call(previous, System.nanoTime() + unit.toNanos(timeout)));
+        try {
+            return block.get();
+        } finally {
+            if (previous == null) call.remove();
+            else call.set(previous);
+        }
+    }
+
+    /**
+     * @param unit The unit to return the time in
+     * @return The time left until the {@link #withTimeout(long, TimeUnit, Supplier) deadline} of the call running on the calling thread,
+     * which may be negative if it has passed, or {@link Long#MAX_VALUE} if it has no deadline
+     */
+    public long getTimeLeft(TimeUnit unit) {
+        Call call = this.call.get();
+        return call == null || !call.hasDeadline ? Long.MAX_VALUE : unit.convert(call.deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return Whether the asynchronous call running on the calling thread has been cancelled by cancelling its future
+     * @see #runAsync(Supplier)
+     */
+    public boolean isCancelled() {
+        Call call = this.call.get();
+        return call != null && call.isCancelled();
+    }
+
+    /**
+     * Applies the query timeout of the current call to the given statement and makes it cancellable by
+     * {@link CompletableFuture#cancel(boolean) cancelling} the future of the asynchronous call it was created in.<br>
+     * Statements created by this Database already have this applied, this is only needed for statements created on
+     * {@link #getConnection() its connection} directly.
+     * @param statement The statement that is about to be executed
+     * @param <S> The type of the statement
+     * @return The given statement
+     * @throws SQLException If the call has been cancelled or its deadline has passed
+     * @see #setQueryTimeout(int)
+     * @see #withTimeout(long, TimeUnit, Supplier)
+     */
+    public <S extends Statement> S applyTimeout(S statement) throws SQLException {
+        int timeout = queryTimeout;
+        Call call = this.call.get();
+        if (call != null) {
+            if (call.isCancelled()) throw new SQLException("The call this statement was created in has been cancelled.", "HY008");
+            if (call.hasDeadline) {
+                long remaining = call.deadline - System.nanoTime();
+                if (remaining <= 0) throw new SQLTimeoutException("The deadline of the call this statement was created in has passed.", "HYT00");
+
+                int seconds = (int) Math.min(Integer.MAX_VALUE, (remaining + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+                timeout = timeout == 0 ? seconds : Math.min(timeout, seconds);
+            }
+
+            call.register(statement);
+        }
+
+        // Cached statements are reused, so the timeout is always set to reset that of an earlier call.
+        if (type != RDBMS.SQLite) statement.setQueryTimeout(timeout);
+        return statement;
+    }
+
+    private <S extends Statement> S applyTimeoutOrClose(S statement) throws SQLException {
+        try {
+            return applyTimeout(statement);
+        } catch (SQLException e) {
+            statement.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Sets whether identical select queries that run at the same time should share a single execution.<br>
+     * When enabled, a {@link SelectBuilder#execute() select} that is started while the exact same query with
+     * the exact same values is still running waits for that query and gets the same {@link SelectResults}.
+     * Only the first of them ever uses a connection. Results are only shared while the query is running, they are not cached.
+     * @param singleFlight Whether to share executions of identical select queries
+     * @see SingleFlight
+     */
+    public void setSingleFlight(boolean singleFlight) {
+        this.singleFlight = singleFlight ? new SingleFlight<>() : null;
+    }
+
+    /**
+     * @return Whether identical select queries that run at the same time share a single execution.
+     * @see #setSingleFlight(boolean)
+     */
+    public boolean isSingleFlight() {
+        return singleFlight != null;
+    }
+
+    /**
+     * @return The single-flight select queries are executed through, or null if single-flight is disabled.
+     * @see #setSingleFlight(boolean)
+     */
+    public @Nullable SingleFlight<List<Object>, SelectResults> getSingleFlight() {
+        return singleFlight;
+    }
+
+    /**
+     * Sets the cache the results of {@link SelectBuilder#execute() select queries} are cached in.<br>
+     * Cached results are invalidated whenever a table they were selected from is written to through this Database,
+     * e.g. with {@link #insert(String, String, Object) insert}, {@link #update(String, Map, QueryCondition) update},
+     * {@link #delete(String, QueryCondition) delete}, {@link #replace(String, String, Object) replace},
+     * {@link #truncate(String) truncate} or an {@link InsertBuilder}. Writes made in any other way, like with
+     * {@link #executeUpdate(String)} or by other applications, are not noticed and require calling
+     * {@link #invalidateCache(String)} manually.
+     * @param cache The cache to use, or null to stop caching results
+     * @see com.ptsmods.mysqlw.cache.MemoryResultCache
+     */
+    public void setResultCache(@Nullable ResultCache cache) {
+        synchronized (tableVersions) {
+            resultCache = cache;
+        }
+    }
+
+    /**
+     * @return The cache the results of select queries are cached in, or null if results are not cached.
+     * @see #setResultCache(ResultCache)
+     */
+    public @Nullable ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Removes all cached results selected from the given table.
+     * This is done automatically for writes made through this Database.
+     * @param table The table that was written to
+     * @see #setResultCache(ResultCache)
+     */
+    public void invalidateCache(String table) {
+        String name = normaliseTable(table);
+        Transaction transaction = this.transaction.get();
+        if (transaction != null) transaction.tables.add(name);
+
+        synchronized (tableVersions) {
+            tableVersions.merge(name, 1L, Long::sum);
+            if (resultCache != null) resultCache.invalidate(name);
+        }
+    }
+
+    /**
+     * Returns the cached results for the given key, or runs the given query and caches its results.
+     * Used by {@link SelectBuilder#execute()}, results are only cached if none of the given tables were written to while
+     * the query was running. Within a {@link #transaction(Function) transaction}, the cache is not used at all, as
+     * the transaction may see changes others cannot.
+     * @param key The key to cache the results under, generally the query and its values
+     * @param tables The tables the results are selected from
+     * @param query The query to run if no results were cached, may return null if it failed, in which case nothing is cached
+     * @return The cached results or the results of the given query
+     * @see #setResultCache(ResultCache)
+     */
+    public SelectResults executeCached(List<Object> key, Collection<String> tables, Supplier<SelectResults> query) {
+        ResultCache cache = resultCache;
+        if (cache == null || isInTransaction()) return query.get();
+
+        SelectResults results = cache.get(key);
+        if (results != null) return results;
+
+        Set<String> names = new HashSet<>();
+        for (String table : tables) names.add(normaliseTable(table));
+        long version = getTableVersion(names);
+
+        results = query.get();
+        if (results != null)
+            synchronized (tableVersions) {
+                if (resultCache == cache && getTableVersion(names) == version) cache.put(key, Collections.unmodifiableSet(names), results);
+            }
+
+        return results;
+    }
+
+    // Versions only ever go up, so their sum only stays the same if none of them changed.
+    private long getTableVersion(Set<String> tables) {
+        synchronized (tableVersions) {
+            long version = 0;
+            for (String table : tables) version += tableVersions.getOrDefault(table, 0L);
+            return version;
+        }
+    }
+
+    private static String normaliseTable(String table) {
+        return table.replace("`", "").toLowerCase(Locale.ROOT);
     }
 
     /**
@@ -240,6 +666,52 @@ public class Database {
         return executor;
     }
 
+    /**
+     * Replaces the {@link Executor} used to run tasks asynchronously with a {@link BoundedExecutor} configured with the given options.<br>
+     * If {@link ExecutorOptions#getThreads() threads} is {@code 0}, the executor gets as many threads as this Database has connections,
+     * or one per processor if it only has a single connection.
+     * The previous executor is shut down if it was created by this Database, tasks it already accepted still run.
+     * @param options The options to configure the new executor with
+     * @return The new executor
+     */
+    public BoundedExecutor configureExecutor(ExecutorOptions options) {
+        if (options.getThreads() == 0) options = options.toBuilder().threads(getConnectionCapacity()).build();
+
+        BoundedExecutor executor = new BoundedExecutor(getName(), options);
+        replaceExecutor(executor);
+        return executor;
+    }
+
+    /**
+     * Makes this Database run all asynchronous calls on virtual threads, if the running JVM supports them (Java 21 and up).<br>
+     * Blocked virtual threads do not tie up a platform thread, so many more calls can be waiting for a connection at once.
+     * At most as many calls run at once as this Database has connections, or one per processor if it only has a single connection.
+     * The previous executor is shut down if it was created by this Database, tasks it already accepted still run.
+     * @return Whether virtual threads are supported and are now used. If not, the executor is left untouched.
+     * @see GatedExecutor#virtual(String, int)
+     */
+    public boolean useVirtualThreads() {
+        if (!GatedExecutor.isVirtualSupported()) return false;
+
+        replaceExecutor(GatedExecutor.virtual(getName(), getConnectionCapacity()));
+        return true;
+    }
+
+    private void replaceExecutor(Executor executor) {
+        if (ownExecutor) GatedExecutor.shutdown(this.executor);
+
+        this.executor = executor;
+        ownExecutor = true;
+    }
+
+    // There is no point in having more threads than connections as they would just wait on one another.
+    // A single connection serialises queries on its own, but a few more threads can still parse results in the meantime.
+    // Except on SQLite, where only one thread can use the database at a time.
+    private int getConnectionCapacity() {
+        if (pool != null) return pool.getOptions().getMaxSize();
+        return type == RDBMS.SQLite ? 1 : Runtime.getRuntime().availableProcessors();
+    }
+
     /**
      * Sets the {@link Executor} used to run tasks asynchronously.
      * @param executor The new default executor to use
@@ -247,6 +719,7 @@ public class Database {
      */
     public void setExecutor(Executor executor) {
         this.executor = executor;
+        ownExecutor = false;
     }
 
     /**
@@ -273,9 +746,11 @@ public class Database {
 
     /**
      * Attempts to get the name of the database currently in use.
-     * @return The name of the currently in use database, or the cached name if it could not be gotten.
+     * @return The name of the currently in use database, or the cached name if it could not be gotten or this Database is pooled.
      */
     public String getName() throws SilentSQLException {
+        if (pool != null) return cachedName; // Borrowing a connection just for this could block when the pool is exhausted.
+
         try {
             return con.getCatalog();
         } catch (SQLException throwables) {
@@ -285,53 +760,254 @@ public class Database {
     }
 
     /**
-     * Returns the connection to the dataserver.
+     * Returns the connection to the dataserver.<br>
+     * If this Database is pooled, this borrows a connection from the pool instead.
+     * <p style="color: red; font-weight: bold;">In that case, DO NOT FORGET TO CLOSE IT.</p>
+     * Closing it returns it to the pool.
      * @return The connection to the dataserver.
+     * @see #getConnectionPool()
+     */
+    public Connection getConnection() throws SilentSQLException {
+        try {
+            return acquireConnection();
+        } catch (SQLException throwables) {
+            logOrThrow("Error borrowing a connection on database " + getName() + ".", throwables);
+            return null;
+        }
+    }
+
+    /**
+     * @return The pool connections are borrowed from, or null if this Database uses a single connection.
+     */
+    public @Nullable ConnectionPool getConnectionPool() {
+        return pool;
+    }
+
+    /**
+     * @return Whether this Database borrows its connections from a {@link ConnectionPool}.
+     */
+    public boolean isPooled() {
+        return pool != null;
+    }
+
+    /**
+     * @return The pool of read-only connections selects are run on, or null if this Database has no separate readers.
+     * @see #connect(File, SQLiteOptions, int)
+     */
+    public @Nullable ConnectionPool getReadPool() {
+        return readPool;
+    }
+
+    /**
+     * @return The executor asynchronous reads are run on, or null if this Database has no separate readers.
+     * @see #runReadAsync(Supplier)
+     */
+    public @Nullable Executor getReadExecutor() {
+        return readExecutor;
+    }
+
+    /**
+     * Returns the cache prepared statements are taken from when using the single connection of this Database.
+     * If this Database is pooled, each pooled connection has its own cache instead.
+     * @return The statement cache of this Database's connection, or null if this Database is pooled.
+     * @see PoolOptions#getStatementCacheSize()
      */
-    public Connection getConnection() {
-        return con;
+    public @Nullable StatementCache getStatementCache() {
+        return statementCache;
+    }
+
+    private Connection acquireConnection() throws SQLException {
+        Transaction transaction = this.transaction.get();
+        if (transaction != null) return transaction.pinned;
+
+        return pool == null ? guarded : pool.borrow();
+    }
+
+    // Only selects go to the readers, anything else could write. Transactions have to see their own writes, so they never do.
+    private boolean isRead(String query) {
+        return readPool != null && !isInTransaction() && query.trim().regionMatches(true, 0, "SELECT", 0, 6);
+    }
+
+    private void releaseConnection(Connection connection) throws SQLException {
+        // Pooled connections are only actually returned once all statements created on them are closed.
+        if (connection != con) connection.close();
     }
 
     /**
      * Creates a new statement.
      * <p style="color: red; font-weight: bold;">DO NOT FORGET TO CLOSE THIS.</p>
+     * If this Database is pooled, the connection this statement was created on is returned to the pool once it is closed.
      * @return A new statement which must be closed once finished.
      */
     public Statement createStatement() throws SilentSQLException {
         try {
-            return con.createStatement();
+            return createStatement(false);
         } catch (SQLException throwables) {
             logOrThrow("Error creating statement on database " + getName() + ".", throwables);
             return null;
         }
     }
 
+    private Statement createStatement(boolean read) throws SQLException {
+        Connection connection = read ? readPool.borrow() : acquireConnection();
+        try {
+            return applyTimeoutOrClose(connection.createStatement());
+        } finally {
+            releaseConnection(connection);
+        }
+    }
+
     /**
-     * Prepares a new statement.
+     * Prepares a new statement or takes one with the same query from the {@link StatementCache statement cache}.<br>
+     * Closing it returns it to the cache so it can be reused.
      * @param query The query to use in this statement. Use question marks as argument placeholders.
      * @return A prepared statement which can be used to easily insert or update data.
      */
     public PreparedStatement prepareStatement(String query) {
         try {
-            return con.prepareStatement(query);
+            return prepare(query);
         } catch (SQLException throwables) {
             logOrThrow("Could not prepare statement with query '" + query + "'", throwables);
             return null;
         }
     }
 
+    private PreparedStatement prepare(String query) throws SQLException {
+        if (statementCache != null) return applyTimeoutOrClose(guard(statementCache.prepare(query), PreparedStatement.class));
+
+        Connection connection = acquireConnection();
+        try {
+            return applyTimeoutOrClose(connection.prepareStatement(query)); // Pooled connections take it from their own cache.
+        } finally {
+            releaseConnection(connection);
+        }
+    }
+
+    private PreparedStatement prepare(String query, boolean read) throws SQLException {
+        if (!read) return prepare(query);
+
+        Connection connection = readPool.borrow();
+        try {
+            return applyTimeoutOrClose(connection.prepareStatement(query));
+        } finally {
+            releaseConnection(connection);
+        }
+    }
+
+    private PreparedStatement prepare(String query, List<?> parameters) throws SQLException {
+        return prepare(query, parameters, false);
+    }
+
+    private PreparedStatement prepare(String query, List<?> parameters, boolean read) throws SQLException {
+        PreparedStatement statement = prepare(query, read);
+        try {
+            bindParameters(statement, parameters);
+        } catch (SQLException e) {
+            statement.close();
+            throw e;
+        }
+
+        return statement;
+    }
+
     /**
-     * Runs the given supplier on the set executor using {@link CompletableFuture}s.
+     * Runs the given supplier on the set executor using {@link CompletableFuture}s.<br>
+     * The supplier inherits the {@link #withTimeout(long, TimeUnit, Supplier) deadline} of the calling thread, if any.
+     * Cancelling the returned future {@link Statement#cancel() cancels} any statement of this Database the supplier is executing
+     * and makes any statement it creates afterwards fail.
      * @param sup The supplier to run.
      * @param <T> The type the given supplier returns.
      * @return A {@link} CompletableFuture.
      */
     public <T> CompletableFuture<T> runAsync(Supplier<T> sup) {
+        return runAsync(sup, getExecutor());
+    }
+
+    /**
+     * Runs the given supplier, which must only read, on the executor of the readers if this Database has
+     * {@link #connect(File, SQLiteOptions, int) separate readers}, or the set executor otherwise.
+     * @param sup The supplier to run.
+     * @param <T> The type the given supplier returns.
+     * @return A {@link} CompletableFuture.
+     */
+    public <T> CompletableFuture<T> runReadAsync(Supplier<T> sup) {
+        return runAsync(sup, readExecutor == null ? getExecutor() : readExecutor);
+    }
+
+    private <T> CompletableFuture<T> runAsync(Supplier<T> sup, Executor executor) {
         Exception rootTrace = new Exception("Trace to root of async call");
-        return CompletableFuture.supplyAsync(sup, getExecutor()).exceptionally(t -> {
-            errorHandler.apply(new AsyncSQLException(t, rootTrace));
-            return null;
+        Call parent = call.get();
+        Call task = new Call(parent != null && parent.hasDeadline, parent == null ? 0 : parent.deadline);
+        CancellableFuture<T> future = new CancellableFuture<>(task);
+
+        executor.execute(() -> {
+            if (future.isDone()) return; // Cancelled before it got to run.
+
+            // The task may run on the calling thread, e.g. when the executor runs rejected tasks on the caller,
+            // but it must not become part of the caller's transaction.
+            Call previous = call.get();
+            Transaction previousTransaction = transaction.get();
+            call.set(task);
+            transaction.remove();
+            try {
+                future.complete(sup.get());
+            } catch (Throwable t) {
+                // Whatever the cancelled statements threw is the expected result of cancelling.
+                if (future.isCancelled()) return;
+
+                try {
+                    errorHandler.apply(new AsyncSQLException(t, rootTrace));
+                    future.complete(null);
+                } catch (Throwable t1) {
+                    future.completeExceptionally(t1);
+                }
+            } finally {
+                if (previous == null) call.remove();
+                else call.set(previous);
+                if (previousTransaction != null) transaction.set(previousTransaction);
+            }
         });
+
+        return future;
+    }
+
+    /**
+     * Runs the given supplier, which writes, on the set executor, or queues it to be committed together with other writes
+     * if {@link #enableGroupCommit(GroupCommitOptions) group commit} is enabled and the calling thread has no deadline.<br>
+     * Cancelling the returned future cancels the write like {@link #runAsync(Supplier)} does. Grouped writes that have not run yet are
+     * skipped instead, but grouped writes that are already running share a transaction with other writes and are not interrupted.
+     * @param write The supplier to run.
+     * @param <T> The type the given supplier returns.
+     * @return A {@link} CompletableFuture.
+     */
+    public <T> CompletableFuture<T> runWriteAsync(Supplier<T> write) {
+        GroupCommitter committer = groupCommitter;
+        // Grouped writes share a transaction, the deadline of one of them cannot be applied to the others.
+        Call call = this.call.get();
+        if (committer == null || call != null && call.hasDeadline) return runAsync(write);
+
+        CompletableFuture<T> future;
+        try {
+            future = committer.submit(write);
+        } catch (IllegalStateException e) {
+            return runAsync(write); // Group commit was disabled in the meantime.
+        }
+
+        Exception rootTrace = new Exception("Trace to root of async call");
+        CompletableFuture<T> handled = new ForwardingFuture<>(future);
+        future.whenComplete((result, t) -> {
+            if (t == null) handled.complete(result);
+            else if (!future.isCancelled()) {
+                try {
+                    errorHandler.apply(new AsyncSQLException(t, rootTrace));
+                    handled.complete(null);
+                } catch (Throwable t1) {
+                    handled.completeExceptionally(t1);
+                }
+            }
+        });
+
+        return handled;
     }
 
     /**
@@ -340,11 +1016,145 @@ public class Database {
      * @return A {@link} CompletableFuture.
      */
     public CompletableFuture<Void> runAsync(Runnable run) {
-        Exception rootTrace = new Exception("Trace to root of async call");
-        return CompletableFuture.runAsync(run, getExecutor()).exceptionally(t -> {
-            errorHandler.apply(new AsyncSQLException(t, rootTrace));
+        return runAsync(run, getExecutor());
+    }
+
+    /**
+     * Runs the given runnable, which must only read, on the executor of the readers if this Database has
+     * {@link #connect(File, SQLiteOptions, int) separate readers}, or the set executor otherwise.
+     * @param run The runnable to run.
+     * @return A {@link} CompletableFuture.
+     */
+    public CompletableFuture<Void> runReadAsync(Runnable run) {
+        return runAsync(run, readExecutor == null ? getExecutor() : readExecutor);
+    }
+
+    private CompletableFuture<Void> runAsync(Runnable run, Executor executor) {
+        return runAsync(() -> {
+            run.run();
             return null;
-        });
+        }, executor);
+    }
+
+    /**
+     * Runs the given block in a transaction with the {@link TransactionOptions#defaults() default options}.
+     * @param block The block to run, it is given this Database
+     * @param <T> The type the given block returns
+     * @return The value the given block returned, or null if the transaction could not be started or committed
+     * @see #transaction(TransactionOptions, Function)
+     */
+    public <T> T transaction(Function<Database, T> block) throws SilentSQLException {
+        return transaction(TransactionOptions.defaults(), block);
+    }
+
+    /**
+     * Runs the given block in a transaction.<br>
+     * Everything the block does with this Database on the calling thread is done on a single connection and is committed at once
+     * when the block returns, which is a lot faster for many small writes than committing each of them separately.
+     * If the block throws an exception, everything is rolled back instead and the exception is rethrown.
+     * Note that errors are only thrown if {@link #setLogging(boolean) logging} is disabled, errors that are logged do not cause a rollback.<br>
+     * Calling this method again within the block starts a nested transaction using a savepoint, which only rolls back what was done within it.
+     * The options of nested transactions are ignored. Asynchronous calls made within the block run on other threads and are thus not part of the transaction.<br>
+     * If this Database is not pooled, transactions share its single connection and thus run one after another. Statements executed by
+     * other threads on it wait until the running transaction has ended in that case, so the block must not wait for asynchronous calls.
+     * @param options The options to run the transaction with
+     * @param block The block to run, it is given this Database
+     * @param <T> The type the given block returns
+     * @return The value the given block returned, or null if the transaction could not be started or committed
+     * @see #transactionAsync(TransactionOptions, Function)
+     */
+    public <T> T transaction(TransactionOptions options, Function<Database, T> block) throws SilentSQLException {
+        Transaction current = this.transaction.get();
+        if (current != null) return savepoint(current, block);
+
+        if (pool == null) transactionLock.lock();
+        try {
+            Transaction transaction;
+            try {
+                transaction = new Transaction(pool == null ? con : pool.borrow(), options);
+            } catch (SQLException e) {
+                logOrThrow("Error starting transaction on database " + getName() + ".", e);
+                return null;
+            }
+
+            this.transaction.set(transaction);
+            boolean committed = false;
+            try {
+                T result = block.apply(this);
+                transaction.connection.commit();
+                committed = true;
+                return result;
+            } catch (SQLException e) {
+                logOrThrow("Error committing transaction on database " + getName() + ".", e);
+                return null;
+            } finally {
+                this.transaction.remove();
+                transaction.end(committed);
+
+                // Results selected outside the transaction while it was running may have been cached,
+                // including rows it wrote if they could be read uncommitted, which are gone again if it was rolled back.
+                transaction.tables.forEach(this::invalidateCache);
+            }
+        } finally {
+            if (pool == null) transactionLock.unlock();
+        }
+    }
+
+    private <T> T savepoint(Transaction transaction, Function<Database, T> block) throws SilentSQLException {
+        Savepoint savepoint;
+        try {
+            savepoint = transaction.connection.setSavepoint();
+        } catch (SQLException e) {
+            logOrThrow("Error creating savepoint on database " + getName() + ".", e);
+            return null;
+        }
+
+        boolean released = false;
+        try {
+            T result = block.apply(this);
+            transaction.connection.releaseSavepoint(savepoint);
+            released = true;
+            return result;
+        } catch (SQLException e) {
+            logOrThrow("Error releasing savepoint on database " + getName() + ".", e);
+            return null;
+        } finally {
+            if (!released)
+                try {
+                    transaction.connection.rollback(savepoint);
+                } catch (SQLException ignored) {} // The outer transaction can still be rolled back.
+        }
+    }
+
+    /**
+     * Runs the given block in a transaction with the {@link TransactionOptions#defaults() default options} asynchronously.
+     * @param block The block to run, it is given this Database
+     * @param <T> The type the given block returns
+     * @return A {@link CompletableFuture} containing the value the given block returned
+     * @see #transaction(Function)
+     */
+    public <T> CompletableFuture<T> transactionAsync(Function<Database, T> block) {
+        return transactionAsync(TransactionOptions.defaults(), block);
+    }
+
+    /**
+     * Runs the given block in a transaction asynchronously.
+     * The block runs entirely on a single thread of the executor, so everything it does synchronously is part of the transaction.
+     * @param options The options to run the transaction with
+     * @param block The block to run, it is given this Database
+     * @param <T> The type the given block returns
+     * @return A {@link CompletableFuture} containing the value the given block returned
+     * @see #transaction(TransactionOptions, Function)
+     */
+    public <T> CompletableFuture<T> transactionAsync(TransactionOptions options, Function<Database, T> block) {
+        return runAsync(() -> transaction(options, block));
+    }
+
+    /**
+     * @return Whether the calling thread is running a {@link #transaction(Function) transaction} on this Database.
+     */
+    public boolean isInTransaction() {
+        return transaction.get() != null;
     }
 
     /**
@@ -368,7 +1178,8 @@ public class Database {
      * @see #countAsync(String, String, QueryCondition)
      */
     public int count(String table, String what, QueryCondition condition) throws SilentSQLException {
-        ResultSet set = executeQuery("SELECT count(" + what + ") FROM " + engrave(table) + (condition == null ? "" : " WHERE " + condition) + ";");
+        List<Object> parameters = new ArrayList<>();
+        ResultSet set = executeQuery("SELECT count(" + what + ") FROM " + engrave(table) + (condition == null ? "" : " WHERE " + condition.toPreparedString(parameters)) + ";", parameters);
         try {
             set.next();
             int i = set.getInt(1);
@@ -388,7 +1199,7 @@ public class Database {
      * @see #count(String, String)
      */
     public CompletableFuture<Integer> countAsync(String table, String what) {
-        return runAsync(() -> count(table, what));
+        return runReadAsync(() -> count(table, what));
     }
 
     /**
@@ -400,7 +1211,7 @@ public class Database {
      * @see #count(String, String, QueryCondition)
      */
     public CompletableFuture<Integer> countAsync(String table, String what, QueryCondition condition) {
-        return runAsync(() -> count(table, what, condition));
+        return runReadAsync(() -> count(table, what, condition));
     }
 
     /**
@@ -411,7 +1222,10 @@ public class Database {
      */
     public void truncate(String table) {
         if (getType() == RDBMS.SQLite) delete(table, null); // No truncate statement in SQLite.
-        else execute("TRUNCATE " + engrave(table) + ";");
+        else {
+            execute("TRUNCATE " + engrave(table) + ";");
+            invalidateCache(table);
+        }
     }
 
     /**
@@ -444,6 +1258,7 @@ public class Database {
      * @return The amount of rows affected.
      * @see #truncate(String)
      * @see #deleteAsync(String, QueryCondition)
+     * @see #deleteBuilder(String, String)
      * @throws IllegalStateException When limit > 0 and type is {@link RDBMS#SQLite SQLite}
      * as SQLite does not support delete limits.
      */
@@ -451,8 +1266,11 @@ public class Database {
         if (limit > 0 && getType() == RDBMS.SQLite)
             throw new IllegalStateException("SQLite does not have native support for delete limits.");
 
-        return executeUpdate("DELETE FROM " + engrave(table) +
-                (condition == null ? "" : " WHERE " + condition) + (limit > 0 ? " LIMIT " + limit : "") + ";");
+        List<Object> parameters = new ArrayList<>();
+        int affected = executeUpdate("DELETE FROM " + engrave(table) +
+                (condition == null ? "" : " WHERE " + condition.toPreparedString(parameters)) + (limit > 0 ? " LIMIT " + limit : "") + ";", parameters);
+        invalidateCache(table);
+        return affected;
     }
 
     /**
@@ -477,7 +1295,7 @@ public class Database {
      * @see #delete(String, QueryCondition)
      */
     public CompletableFuture<Integer> deleteAsync(String table, QueryCondition condition, int limit) {
-        return runAsync(() -> delete(table, condition, limit));
+        return runWriteAsync(() -> delete(table, condition, limit));
     }
 
 
@@ -516,7 +1334,7 @@ public class Database {
      * @see #selectVariable(String)
      */
     public CompletableFuture<Object> selectVariableAsync(String variable) {
-        return runAsync(() -> selectVariable(variable));
+        return runReadAsync(() -> selectVariable(variable));
     }
 
     /**
@@ -540,7 +1358,7 @@ public class Database {
      * @see #selectRawAsync(String, CharSequence)
      */
     public CompletableFuture<ResultSet> selectRawAsync(String table, CharSequence column) {
-        return runAsync(() -> selectRaw(table, column));
+        return runReadAsync(() -> selectRaw(table, column));
     }
 
     /**
@@ -564,7 +1382,7 @@ public class Database {
      * @see #selectRaw(String, CharSequence, QueryCondition)
      */
     public CompletableFuture<ResultSet> selectRawAsync(String table, CharSequence column, QueryCondition condition) {
-        return runAsync(() -> selectRaw(table, column, condition));
+        return runReadAsync(() -> selectRaw(table, column, condition));
     }
 
     /**
@@ -596,7 +1414,7 @@ public class Database {
      * @see #selectRaw(String, CharSequence, QueryCondition, QueryOrder, QueryLimit)
      */
     public CompletableFuture<ResultSet> selectRawAsync(String table, CharSequence column, QueryCondition condition, QueryOrder order, QueryLimit limit) {
-        return runAsync(() -> selectRaw(table, column, condition, order, limit));
+        return runReadAsync(() -> selectRaw(table, column, condition, order, limit));
     }
 
     /**
@@ -620,7 +1438,7 @@ public class Database {
      * @see #selectRaw(String, CharSequence[])
      */
     public CompletableFuture<ResultSet> selectRawAsync(String table, CharSequence[] columns) {
-        return runAsync(() -> selectRaw(table, columns));
+        return runReadAsync(() -> selectRaw(table, columns));
     }
 
     /**
@@ -644,7 +1462,7 @@ public class Database {
      * @see #selectRaw(String, CharSequence[], QueryCondition)
      */
     public CompletableFuture<ResultSet> selectRawAsync(String table, CharSequence[] columns, QueryCondition condition) {
-        return runAsync(() -> selectRaw(table, columns, condition));
+        return runReadAsync(() -> selectRaw(table, columns, condition));
     }
 
     /**
@@ -676,7 +1494,7 @@ public class Database {
      * @see #selectRaw(String, CharSequence[], QueryCondition, QueryOrder, QueryLimit)
      */
     public CompletableFuture<ResultSet> selectRawAsync(String table, CharSequence[] columns, QueryCondition condition, QueryOrder order, QueryLimit limit) {
-        return runAsync(() -> selectRaw(table, columns, condition, order, limit));
+        return runReadAsync(() -> selectRaw(table, columns, condition, order, limit));
     }
 
     /**
@@ -698,7 +1516,7 @@ public class Database {
      * @see #select(String, CharSequence)
      */
     public CompletableFuture<SelectResults> selectAsync(String table, CharSequence column) {
-        return runAsync(() -> select(table, column));
+        return runReadAsync(() -> select(table, column));
     }
 
     /**
@@ -722,7 +1540,7 @@ public class Database {
      * @see #select(String, CharSequence, QueryCondition)
      */
     public CompletableFuture<SelectResults> selectAsync(String table, CharSequence column, QueryCondition condition) {
-        return runAsync(() -> select(table, column, condition));
+        return runReadAsync(() -> select(table, column, condition));
     }
 
     /**
@@ -750,7 +1568,7 @@ public class Database {
      * @see #select(String, CharSequence, QueryCondition, QueryOrder, QueryLimit)
      */
     public CompletableFuture<SelectResults> selectAsync(String table, CharSequence column, QueryCondition condition, QueryOrder order, QueryLimit limit) {
-        return runAsync(() -> select(table, column, condition, order, limit));
+        return runReadAsync(() -> select(table, column, condition, order, limit));
     }
 
     /**
@@ -772,7 +1590,7 @@ public class Database {
      * @see #select(String, CharSequence[])
      */
     public CompletableFuture<SelectResults> selectAsync(String table, CharSequence[] columns) {
-        return runAsync(() -> select(table, columns));
+        return runReadAsync(() -> select(table, columns));
     }
 
     /**
@@ -796,7 +1614,7 @@ public class Database {
      * @see #select(String, CharSequence[], QueryCondition)
      */
     public CompletableFuture<SelectResults> selectAsync(String table, CharSequence[] columns, QueryCondition condition) {
-        return runAsync(() -> select(table, columns, condition));
+        return runReadAsync(() -> select(table, columns, condition));
     }
 
     /**
@@ -824,7 +1642,181 @@ public class Database {
      * @see #select(String, CharSequence[], QueryCondition, QueryOrder, QueryLimit)
      */
     public CompletableFuture<SelectResults> selectAsync(String table, CharSequence[] columns, QueryCondition condition, QueryOrder order, QueryLimit limit) {
-        return runAsync(() -> select(table, columns, condition, order, limit));
+        return runReadAsync(() -> select(table, columns, condition, order, limit));
+    }
+
+    /**
+     * Runs a select query and passes a {@link RowCursor} positioned at each selected row to the given visitor.
+     * @param table The table to select from.
+     * @param columns The columns to select.
+     * @param visitor The visitor to pass the cursor to for each row.
+     * @return The amount of rows visited.
+     * @see #selectCursor(String, CharSequence[], QueryCondition, QueryOrder, QueryLimit, RowCursor.Visitor)
+     */
+    public long selectCursor(String table, CharSequence[] columns, RowCursor.Visitor visitor) {
+        return selectCursor(table, columns, null, null, null, visitor);
+    }
+
+    /**
+     * Runs a select query and passes a {@link RowCursor} positioned at each selected row to the given visitor.<br>
+     * Values are read straight from the underlying {@link ResultSet}, so unlike {@link #select(String, CharSequence[], QueryCondition, QueryOrder, QueryLimit)},
+     * nothing is allocated per row when reading values with the cursor's primitive getters.
+     * @param table The table to select from.
+     * @param columns The columns to select.
+     * @param condition The condition rows must meet in order to be selected.
+     * @param order What column to order by and in what direction.
+     * @param limit The limit of rows returned, including the offset at which these rows are selected from the entire result.
+     * @param visitor The visitor to pass the cursor to for each row.
+     * @return The amount of rows visited.
+     * @see #selectCursorAsync(String, CharSequence[], QueryCondition, QueryOrder, QueryLimit, RowCursor.Visitor)
+     */
+    public long selectCursor(String table, CharSequence[] columns, QueryCondition condition, QueryOrder order, QueryLimit limit, RowCursor.Visitor visitor) {
+        return selectBuilder(table).select(columns).where(condition).order(order).limit(limit).forEachCursor(visitor);
+    }
+
+    /**
+     * Runs a select query and passes a {@link RowCursor} positioned at each selected row to the given visitor asynchronously.
+     * @param table The table to select from.
+     * @param columns The columns to select.
+     * @param condition The condition rows must meet in order to be selected.
+     * @param order What column to order by and in what direction.
+     * @param limit The limit of rows returned, including the offset at which these rows are selected from the entire result.
+     * @param visitor The visitor to pass the cursor to for each row.
+     * @return The amount of rows visited.
+     * @see #selectCursor(String, CharSequence[], QueryCondition, QueryOrder, QueryLimit, RowCursor.Visitor)
+     */
+    public CompletableFuture<Long> selectCursorAsync(String table, CharSequence[] columns, QueryCondition condition, QueryOrder order, QueryLimit limit, RowCursor.Visitor visitor) {
+        return runReadAsync(() -> selectCursor(table, columns, condition, order, limit, visitor));
+    }
+
+    /**
+     * Buffers rows inserted into the given table using {@link #insertAsync(String, String[], Object[])},
+     * {@link #replaceAsync(String, String[], Object[])} and {@link #insertIgnoreAsync(String, String[], Object[], String)}
+     * (and their single column variants) and writes them in batches rather than one by one.<br>
+     * The futures returned by those methods then complete once the batch their row was written in has been committed.
+     * On MySQL, batched rows report no count of their own, so those futures complete with 1 even for rows that were ignored.
+     * Buffered rows are flushed when this Database is closed.
+     * @param table The table to buffer rows for.
+     * @param options The options determining when rows are flushed.
+     * @return The buffer rows for the given table are collected in.
+     * @throws IllegalStateException If write-behind is already enabled for the given table.
+     * @see WriteBehindBuffer
+     */
+    public WriteBehindBuffer enableWriteBehind(String table, WriteBehindOptions options) {
+        WriteBehindBuffer buffer = new WriteBehindBuffer(this, table, options);
+        if (writeBehindBuffers.putIfAbsent(table, buffer) != null) throw new IllegalStateException("Write-behind is already enabled for table " + table + ".");
+
+        return buffer;
+    }
+
+    /**
+     * Stops buffering rows for the given table and writes all rows that are still buffered.
+     * @param table The table to stop buffering rows for.
+     */
+    public void disableWriteBehind(String table) {
+        WriteBehindBuffer buffer = writeBehindBuffers.remove(table);
+        if (buffer != null) buffer.close();
+    }
+
+    /**
+     * @param table The table to get the buffer of.
+     * @return The buffer rows for the given table are collected in, or null if write-behind is not enabled for it.
+     */
+    public @Nullable WriteBehindBuffer getWriteBehindBuffer(String table) {
+        return writeBehindBuffers.get(table);
+    }
+
+    // Null if write-behind is not enabled for the given table, or was disabled between looking up its buffer and writing to it.
+    private CompletableFuture<Integer> writeBehind(String table, Function<WriteBehindBuffer, CompletableFuture<Integer>> write) {
+        WriteBehindBuffer buffer = writeBehindBuffers.get(table);
+        if (buffer == null) return null;
+
+        try {
+            return write.apply(buffer);
+        } catch (IllegalStateException e) {
+            return null; // Closed in the meantime, its rows have been flushed already or are being flushed.
+        }
+    }
+
+    /**
+     * Runs asynchronous writes, like {@link #insertAsync(String, String[], Object[]) insertAsync}, {@link #updateAsync(String, Map, QueryCondition) updateAsync},
+     * {@link #deleteAsync(String, QueryCondition) deleteAsync} and {@link #executeUpdateAsync(String, List) executeUpdateAsync},
+     * that are made around the same time in a single transaction, so they share a single commit.<br>
+     * This is mostly useful for SQLite, where every commit waits for the data to be written to disk.
+     * The futures returned by those methods then complete once the transaction their write was run in has been committed.
+     * Queued writes are committed when this Database is closed.
+     * @param options The options determining when writes are committed.
+     * @return The committer asynchronous writes are queued in.
+     * @throws IllegalStateException If group commit is already enabled.
+     * @see GroupCommitter
+     */
+    public synchronized GroupCommitter enableGroupCommit(GroupCommitOptions options) {
+        if (groupCommitter != null) throw new IllegalStateException("Group commit is already enabled.");
+
+        return groupCommitter = new GroupCommitter(this, options);
+    }
+
+    /**
+     * Stops committing asynchronous writes in groups and commits all writes that are still queued.
+     */
+    public void disableGroupCommit() {
+        GroupCommitter committer;
+        synchronized (this) {
+            committer = groupCommitter;
+            groupCommitter = null;
+        }
+
+        if (committer != null) committer.close();
+    }
+
+    /**
+     * @return The committer asynchronous writes are queued in, or null if group commit is disabled.
+     */
+    public @Nullable GroupCommitter getGroupCommitter() {
+        return groupCommitter;
+    }
+
+    /**
+     * Returns a loader that batches lookups of rows in the given table by the given key column,
+     * so concurrent lookups of different keys result in a single query.<br>
+     * Loaders are cached per table, key column and selected columns and use the {@link BatchLoaderOptions#defaults() default options}.
+     * To use other options, create a {@link BatchLoader} yourself.
+     * @param table The table to look rows up in.
+     * @param keyColumn The column to look rows up by.
+     * @param columns The columns to select.
+     * @return A loader for the given table, key column and columns.
+     * @see BatchLoader#load(Object)
+     */
+    public BatchLoader batchLoader(String table, String keyColumn, CharSequence... columns) {
+        List<Object> key = new ArrayList<>(Arrays.asList(table, keyColumn));
+        for (CharSequence column : columns) key.add(column.toString());
+
+        return batchLoaders.computeIfAbsent(key, k -> new BatchLoader(this, table, keyColumn, columns, BatchLoaderOptions.defaults()));
+    }
+
+    /**
+     * Returns a loader that streams large amounts of rows into the given table with the {@link BulkLoadOptions#defaults() default options}.
+     * @param table The table to load rows into.
+     * @param columns The columns values are loaded into.
+     * @return A loader for the given table and columns.
+     * @see #bulkLoader(String, BulkLoadOptions, String...)
+     */
+    public BulkLoader bulkLoader(String table, String... columns) {
+        return bulkLoader(table, BulkLoadOptions.defaults(), columns);
+    }
+
+    /**
+     * Returns a loader that streams large amounts of rows into the given table.<br>
+     * Rows can be loaded from an {@link java.util.Iterator}, a {@link java.util.stream.Stream} or an {@link java.io.InputStream}
+     * of CSV or TSV and are loaded in chunks, so only a single chunk is ever held in memory.
+     * @param table The table to load rows into.
+     * @param options The options determining the size of chunks and how they are loaded.
+     * @param columns The columns values are loaded into.
+     * @return A loader for the given table and columns.
+     * @see BulkLoader#load(java.util.Iterator)
+     */
+    public BulkLoader bulkLoader(String table, BulkLoadOptions options, String... columns) {
+        return new BulkLoader(this, table, columns, options);
     }
 
     /**
@@ -836,6 +1828,27 @@ public class Database {
     public InsertBuilder insertBuilder(String table, String... columns) {
         return InsertBuilder.create(this, table, columns);
     }
+
+    /**
+     * Creates a new {@link UpdateBuilder} to update many rows with different values at once.
+     * @param table The table to update.
+     * @param keyColumn The column rows are identified by.
+     * @param columns The columns to update.
+     * @return A new {@link UpdateBuilder}.
+     */
+    public UpdateBuilder updateBuilder(String table, String keyColumn, String... columns) {
+        return UpdateBuilder.create(this, table, keyColumn, columns);
+    }
+
+    /**
+     * Creates a new {@link DeleteBuilder} to delete large amounts of rows in chunks with.
+     * @param table The table to delete rows from.
+     * @param keyColumn The unique column rows are deleted in ranges of, generally the primary key.
+     * @return A new {@link DeleteBuilder}.
+     */
+    public DeleteBuilder deleteBuilder(String table, String keyColumn) {
+        return DeleteBuilder.create(this, table, keyColumn);
+    }
     
     /**
      * Inserts new data into the table.
@@ -860,7 +1873,7 @@ public class Database {
      * @see #insert(String, String, Object)
      */
     public CompletableFuture<Integer> insertAsync(String table, String column, Object value) {
-        return runAsync(() -> insert(table, column, value));
+        return insertAsync(table, new String[] {column}, new Object[] {value});
     }
 
     /**
@@ -886,7 +1899,8 @@ public class Database {
      * @see #insert(String, String[], Object[])
      */
     public CompletableFuture<Integer> insertAsync(String table, String[] columns, Object[] values) {
-        return runAsync(() -> insert(table, columns, values));
+        CompletableFuture<Integer> buffered = writeBehind(table, buffer -> buffer.insert(columns, values));
+        return buffered != null ? buffered : runWriteAsync(() -> insert(table, columns, values));
     }
 
     /**
@@ -910,7 +1924,7 @@ public class Database {
      * @see #insert(String, String[], List)
      */
     public CompletableFuture<Integer> insertAsync(String table, String[] columns, List<Object[]> values) {
-        return runAsync(() -> insert(table, columns, values));
+        return runWriteAsync(() -> insert(table, columns, values));
     }
 
     /**
@@ -940,7 +1954,7 @@ public class Database {
      * @see #insertUpdateAsync(String, String, Object, Object)
      */
     public CompletableFuture<Integer> insertUpdateAsync(String table, String column, Object value, Object duplicateValue) {
-        return runAsync(() -> insertUpdate(table, column, value, duplicateValue));
+        return runWriteAsync(() -> insertUpdate(table, column, value, duplicateValue));
     }
 
     /**
@@ -955,15 +1969,18 @@ public class Database {
      * @see #insertUpdateAsync(String, String[], Object[], Map, String)
      */
     public int insertUpdate(String table, String[] columns, Object[] values, Map<String, Object> duplicateValues, String keyColumn) throws SilentSQLException {
+        List<Object> parameters = new ArrayList<>();
         StringBuilder query = new StringBuilder("INSERT INTO " + engrave(table) + " (`" + String.join("`, `", columns) + "`) VALUES (");
         for (Object value : values)
-            query.append(getAsString(value)).append(", ");
+            query.append(getAsParameter(value, parameters)).append(", ");
         query.delete(query.length()-2, query.length()).append(") ON ").append(type == RDBMS.SQLite ? "CONFLICT(`" + keyColumn + "`) DO UPDATE SET " : "DUPLICATE KEY UPDATE ");
-        duplicateValues.forEach((key, value) -> query.append('`').append(key).append('`').append('=').append(getAsString(value)).append(", "));
+        duplicateValues.forEach((key, value) -> query.append('`').append(key).append('`').append('=').append(getAsParameter(value, parameters)).append(", "));
         if (duplicateValues.size() > 0) query.delete(query.length()-2, query.length());
         query.append(";");
 
-        return executeUpdate(query.toString());
+        int affected = executeUpdate(query.toString(), parameters);
+        invalidateCache(table);
+        return affected;
     }
 
     /**
@@ -978,7 +1995,7 @@ public class Database {
      * @see #insertUpdate(String, String[], Object[], Map, String)
      */
     public CompletableFuture<Integer> insertUpdateAsync(String table, String[] columns, Object[] values, Map<String, Object> duplicateValues, String keyColumn) throws SilentSQLException {
-        return runAsync(() -> insertUpdate(table, columns, values, duplicateValues, keyColumn));
+        return runWriteAsync(() -> insertUpdate(table, columns, values, duplicateValues, keyColumn));
     }
 
     /**
@@ -1006,7 +2023,7 @@ public class Database {
      * @see #insertIgnore(String, String, Object)
      */
     public CompletableFuture<Integer> insertIgnoreAsync(String table, String column, Object value) {
-        return runAsync(() -> insertIgnore(table, column, value));
+        return insertIgnoreAsync(table, new String[] {column}, new Object[] {value}, column);
     }
 
     /**
@@ -1032,7 +2049,8 @@ public class Database {
      * @see #insertIgnore(String, String[], Object[], String)
      */
     public CompletableFuture<Integer> insertIgnoreAsync(String table, String[] columns, Object[] values, String keyColumn) {
-        return runAsync(() -> insertIgnore(table, columns, values, keyColumn));
+        CompletableFuture<Integer> buffered = writeBehind(table, buffer -> buffer.insertIgnore(columns, values, keyColumn));
+        return buffered != null ? buffered : runWriteAsync(() -> insertIgnore(table, columns, values, keyColumn));
     }
 
     /**
@@ -1058,7 +2076,7 @@ public class Database {
      * @see #update(String, String, Object, QueryCondition)
      */
     public CompletableFuture<Integer> updateAsync(String table, String column, Object value, QueryCondition condition) {
-        return runAsync(() -> update(table, column, value, condition));
+        return runWriteAsync(() -> update(table, column, value, condition));
     }
 
     /**
@@ -1070,12 +2088,15 @@ public class Database {
      * @see #updateAsync(String, Map, QueryCondition)
      */
     public int update(String table, Map<String, Object> updates, QueryCondition condition) {
+        List<Object> parameters = new ArrayList<>();
         StringBuilder query = new StringBuilder("UPDATE " + engrave(table) + " SET ");
-        updates.forEach((key, value) -> query.append('`').append(key).append('`').append('=').append(getAsString(value)).append(", "));
+        updates.forEach((key, value) -> query.append('`').append(key).append('`').append('=').append(getAsParameter(value, parameters)).append(", "));
         if (updates.size() > 0) query.delete(query.length()-2, query.length());
-        if (condition != null) query.append(" WHERE ").append(condition);
+        if (condition != null) query.append(" WHERE ").append(condition.toPreparedString(parameters));
         query.append(";");
-        return executeUpdate(query.toString());
+        int affected = executeUpdate(query.toString(), parameters);
+        invalidateCache(table);
+        return affected;
     }
 
     /**
@@ -1087,7 +2108,7 @@ public class Database {
      * @see #update(String, Map, QueryCondition)
      */
     public CompletableFuture<Integer> updateAsync(String table, Map<String, Object> updates, QueryCondition condition) {
-        return runAsync(() -> update(table, updates, condition));
+        return runWriteAsync(() -> update(table, updates, condition));
     }
 
     /**
@@ -1111,7 +2132,7 @@ public class Database {
      * @see #replace(String, String, Object)
      */
     public CompletableFuture<Integer> replaceAsync(String table, String column, Object value) {
-        return runAsync(() -> replace(table, column, value));
+        return replaceAsync(table, new String[] {column}, new Object[] {value});
     }
 
     /**
@@ -1135,7 +2156,8 @@ public class Database {
      * @see #replace(String, String[], Object[])
      */
     public CompletableFuture<Integer> replaceAsync(String table, String[] columns, Object[] values) {
-        return runAsync(() -> replace(table, columns, values));
+        CompletableFuture<Integer> buffered = writeBehind(table, buffer -> buffer.replace(columns, values));
+        return buffered != null ? buffered : runWriteAsync(() -> replace(table, columns, values));
     }
 
     /**
@@ -1159,7 +2181,7 @@ public class Database {
      * @see #replace(String, String[], List)
      */
     public CompletableFuture<Integer> replaceAsync(String table, String[] columns, List<Object[]> values) {
-        return runAsync(() -> replace(table, columns, values));
+        return runWriteAsync(() -> replace(table, columns, values));
     }
 
     /**
@@ -1169,6 +2191,7 @@ public class Database {
      */
     public void drop(String table) {
         execute("DROP TABLE IF EXISTS " + engrave(table) + ";");
+        invalidateCache(table);
     }
 
     /**
@@ -1229,7 +2252,38 @@ public class Database {
      * @see #executeUpdate(String)
      */
     public CompletableFuture<Integer> executeUpdateAsync(@Language("SQL") String query) {
-        return runAsync(() -> executeUpdate(query));
+        return runWriteAsync(() -> executeUpdate(query));
+    }
+
+    /**
+     * Executes a prepared query with the given parameters and returns an integer value which often denotes the amount of rows affected.<br>
+     * The statement is taken from and returned to the {@link StatementCache statement cache}.
+     * @param query The query to execute. Use question marks as argument placeholders.
+     * @param parameters The parameters to bind, or null to execute the query as a plain statement.
+     * @return An integer value often denoting the amount of rows affected.
+     * @see #bindParameters(PreparedStatement, List)
+     * @see #executeUpdateAsync(String, List)
+     */
+    public int executeUpdate(@Language("SQL") String query, List<?> parameters) throws SilentSQLException {
+        if (parameters == null) return executeUpdate(query);
+
+        try (PreparedStatement statement = prepare(query, parameters)) {
+            return statement.executeUpdate();
+        } catch (SQLException e) {
+            logOrThrow("Error executing update '" + query + "' on database " + getName() + ".", e);
+            return -1;
+        }
+    }
+
+    /**
+     * Executes a prepared query with the given parameters and returns an integer value which often denotes the amount of rows affected asynchronously.
+     * @param query The query to execute. Use question marks as argument placeholders.
+     * @param parameters The parameters to bind, or null to execute the query as a plain statement.
+     * @return An integer value often denoting the amount of rows affected.
+     * @see #executeUpdate(String, List)
+     */
+    public CompletableFuture<Integer> executeUpdateAsync(@Language("SQL") String query, List<?> parameters) {
+        return runWriteAsync(() -> executeUpdate(query, parameters));
     }
 
     /**
@@ -1242,7 +2296,7 @@ public class Database {
      */
     public ResultSet executeQuery(@Language("SQL") String query) throws SilentSQLException {
         try {
-            Statement statement = createStatement();
+            Statement statement = createStatement(isRead(query));
             ResultSet set = statement.executeQuery(query);
             statement.closeOnCompletion();
             return set;
@@ -1262,7 +2316,74 @@ public class Database {
      * @see #executeQuery(String)
      */
     public CompletableFuture<ResultSet> executeQueryAsync(@Language("SQL") String query) {
-        return runAsync(() -> executeQuery(query));
+        return isRead(query) ? runReadAsync(() -> executeQuery(query)) : runAsync(() -> executeQuery(query));
+    }
+
+    /**
+     * Executes a prepared query with the given parameters and returns a ResultSet. Most often used with the SELECT query.<br>
+     * The statement is taken from the {@link StatementCache statement cache} and returned to it once closed.
+     * <p style="color: red; font-weight: bold;">DO NOT FORGET TO CLOSE THE STATEMENT.</p>
+     * This can be done with {@code set.getStatement().close()}. Not doing so will eventually result in memory leaks.
+     * @param query The query to execute. Use question marks as argument placeholders.
+     * @param parameters The parameters to bind, or null to execute the query as a plain statement.
+     * @return The ResultSet containing all the data this query returned.
+     * @see #bindParameters(PreparedStatement, List)
+     * @see #executeQueryAsync(String, List)
+     */
+    public ResultSet executeQuery(@Language("SQL") String query, List<?> parameters) throws SilentSQLException {
+        return executeQuery(query, parameters, 0);
+    }
+
+    /**
+     * Executes a prepared query with the given parameters and fetch size and returns a ResultSet.<br>
+     * The fetch size hints the driver how many rows to fetch at once. On MySQL, a positive fetch size
+     * makes the server read the results using a cursor and {@link Integer#MIN_VALUE} streams the results row by row,
+     * in which case no other queries can be executed on the same connection until the results are closed.
+     * On SQLite, results are always read as they are iterated over, so negative fetch sizes are ignored.
+     * <p style="color: red; font-weight: bold;">DO NOT FORGET TO CLOSE THE STATEMENT.</p>
+     * This can be done with {@code set.getStatement().close()}. Not doing so will eventually result in memory leaks.
+     * @param query The query to execute. Use question marks as argument placeholders.
+     * @param parameters The parameters to bind, or null if there are none.
+     * @param fetchSize The amount of rows to fetch at once, or {@code 0} to use the driver's default.
+     * @return The ResultSet containing all the data this query returned.
+     * @see #executeQuery(String, List)
+     */
+    public ResultSet executeQuery(@Language("SQL") String query, List<?> parameters, int fetchSize) throws SilentSQLException {
+        if (fetchSize < 0 && type != RDBMS.MySQL) fetchSize = 0;
+        if (parameters == null) {
+            if (fetchSize == 0) return executeQuery(query);
+            parameters = Collections.emptyList();
+        }
+
+        try {
+            PreparedStatement statement = prepare(query, parameters, isRead(query));
+            ResultSet set;
+            try {
+                if (fetchSize != 0) statement.setFetchSize(fetchSize);
+                set = statement.executeQuery();
+            } catch (SQLException e) {
+                statement.close();
+                throw e;
+            }
+            statement.closeOnCompletion();
+            return set;
+        } catch (SQLException e) {
+            logOrThrow("Error executing query '" + query + "' on database " + getName() + ".", e);
+            return null;
+        }
+    }
+
+    /**
+     * Executes a prepared query with the given parameters and returns a ResultSet asynchronously. Most often used with the SELECT query.
+     * <p style="color: red; font-weight: bold;">DO NOT FORGET TO CLOSE THE STATEMENT.</p>
+     * This can be done with {@code set.getStatement().close()}. Not doing so will eventually result in memory leaks.
+     * @param query The query to execute. Use question marks as argument placeholders.
+     * @param parameters The parameters to bind, or null to execute the query as a plain statement.
+     * @return The ResultSet containing all the data this query returned.
+     * @see #executeQuery(String, List)
+     */
+    public CompletableFuture<ResultSet> executeQueryAsync(@Language("SQL") String query, List<?> parameters) {
+        return isRead(query) ? runReadAsync(() -> executeQuery(query, parameters)) : runAsync(() -> executeQuery(query, parameters));
     }
 
     /**
@@ -1293,10 +2414,12 @@ public class Database {
      */
     public boolean tableExists(String name) throws SilentSQLException {
         try {
-            ResultSet set = con.getMetaData().getTables(null, null, name, null);
-            boolean b = set.next();
-            set.close();
-            return b;
+            Connection connection = acquireConnection();
+            try (ResultSet set = connection.getMetaData().getTables(null, null, name, null)) {
+                return set.next();
+            } finally {
+                releaseConnection(connection);
+            }
         } catch (SQLException throwables) {
             logOrThrow("Error checking if table " + enquote(name) + " exists on database " + getName() + ".", throwables);
             return false;
@@ -1319,8 +2442,9 @@ public class Database {
      * @see #getCreateQueryAsync(String)
      */
     public String getCreateQuery(String table) {
-        @Language("SQL") String query = type == RDBMS.SQLite ? "SELECT sql FROM sqlite_master WHERE name=" + enquote(table) + ";" : "SHOW CREATE TABLE " + engrave(table) + ";";
-        SelectResults results = SelectResults.parse(this, table, executeQuery(query), type == RDBMS.SQLite ? QueryCondition.equals("name", table) : null, null, null);
+        ResultSet set = type == RDBMS.SQLite ? executeQuery("SELECT sql FROM sqlite_master WHERE name=?;", Collections.singletonList(table)) :
+                executeQuery("SHOW CREATE TABLE " + engrave(table) + ";");
+        SelectResults results = SelectResults.parse(this, table, set, type == RDBMS.SQLite ? QueryCondition.equals("name", table) : null, null, null);
         return results.get(0).get(results.getColumns().get(0)).toString();
     }
 
@@ -1371,6 +2495,7 @@ public class Database {
     public void addColumn(String table, String name, ColumnStructure<?> structure, @Nullable String after) {
         execute("ALTER TABLE " + engrave(table) + " ADD COLUMN " +
                 engrave(name) + " " + structure.buildTypeString(getType()) + (after == null ? " FIRST" : " AFTER " + engrave(after)));
+        invalidateCache(table);
     }
 
     /**
@@ -1420,6 +2545,7 @@ public class Database {
      */
     public void dropColumn(String table, String column) {
         execute("ALTER TABLE " + engrave(table) + " DROP COLUMN " + engrave(column));
+        invalidateCache(table);
     }
 
     /**
@@ -1518,6 +2644,47 @@ public class Database {
         return runAsync(() -> call(procedure, parameters));
     }
 
+    /**
+     * Closes the connection or connection pool of this Database, after writing any rows that are still buffered.
+     * Executors created by this Database are shut down as well. Tasks they already accepted still run before the connections
+     * are closed, for up to 30 seconds per executor, tasks that take longer fail once the connections are closed.
+     * This Database can no longer be used afterwards.
+     */
+    public void close() throws SilentSQLException {
+        for (String table : new ArrayList<>(writeBehindBuffers.keySet()))
+            disableWriteBehind(table);
+        disableGroupCommit();
+
+        if (ownExecutor) GatedExecutor.shutdown(executor);
+        if (readExecutor != null) GatedExecutor.shutdown(readExecutor);
+        // Closing from within an asynchronous call would only end up waiting for itself.
+        Call call = this.call.get();
+        if (call == null || call.root.statements == null) try {
+            if (ownExecutor) GatedExecutor.awaitTermination(executor, CLOSE_TIMEOUT, TimeUnit.SECONDS);
+            if (readExecutor != null) GatedExecutor.awaitTermination(readExecutor, CLOSE_TIMEOUT, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Closing anyway, the tasks that are still running will fail.
+        }
+
+        try {
+            if (readPool != null) readPool.close();
+
+            if (pool != null) pool.close();
+            else {
+                statementCache.close();
+                con.close();
+            }
+        } catch (SQLException throwables) {
+            logOrThrow("Error closing database " + getName() + ".", throwables);
+        } finally {
+            if (pool == null) {
+                databases.remove(con);
+                databases.remove(guarded);
+            } else pooledDatabases.remove(pool);
+            if (readPool != null) pooledDatabases.remove(readPool);
+        }
+    }
+
     @Override
     public String toString() {
         return "Database[" +
@@ -1596,6 +2763,55 @@ public class Database {
         else return enquote(String.valueOf(o));
     }
 
+    /**
+     * Converts an Object to be used as a parameter in a prepared query.<br>
+     * Values that are part of the query itself, i.e. {@link QueryFunction}s and types registered with
+     * {@link #registerTypeConverter(Class, Function, Function)}, are inlined as with {@link #getAsString(Object)}.
+     * Any other value is added to the given parameters and a question mark is returned in its place.
+     * @param o The object to convert.
+     * @param parameters The parameters to add the object to, or null to always inline it.
+     * @return Either a question mark or the String representation of the given object.
+     * @see #bindParameters(PreparedStatement, List)
+     */
+    public static String getAsParameter(Object o, @Nullable List<Object> parameters) {
+        if (parameters == null || o instanceof QueryFunction) return getAsString(o);
+        if (o != null && !(o instanceof Boolean || o instanceof Number || o instanceof byte[] || o instanceof UUID) && classConverters.containsKey(o.getClass()))
+            return getAsString(o);
+
+        parameters.add(o);
+        return "?";
+    }
+
+    /**
+     * Binds the given parameters to the given statement in order.<br>
+     * Booleans, numbers, Strings and byte arrays are bound as their respective types,
+     * anything else is bound as its String representation, as it would have been by {@link #getAsString(Object)}.
+     * @param statement The statement to bind the parameters to.
+     * @param parameters The parameters to bind.
+     * @throws SQLException If a parameter could not be bound.
+     * @see #getAsParameter(Object, List)
+     */
+    public static void bindParameters(PreparedStatement statement, List<?> parameters) throws SQLException {
+        for (int i = 0; i < parameters.size(); i++) {
+            Object o = parameters.get(i);
+            int index = i + 1;
+
+            if (o == null) statement.setNull(index, Types.NULL);
+            else if (o instanceof String) statement.setString(index, (String) o);
+            else if (o instanceof Integer) statement.setInt(index, (Integer) o);
+            else if (o instanceof Long) statement.setLong(index, (Long) o);
+            else if (o instanceof Double) statement.setDouble(index, (Double) o);
+            else if (o instanceof Float) statement.setFloat(index, (Float) o);
+            else if (o instanceof Short) statement.setShort(index, (Short) o);
+            else if (o instanceof Byte) statement.setByte(index, (Byte) o);
+            else if (o instanceof Boolean) statement.setBoolean(index, (Boolean) o);
+            else if (o instanceof BigDecimal) statement.setBigDecimal(index, (BigDecimal) o);
+            else if (o instanceof Number) statement.setBigDecimal(index, new BigDecimal(o.toString()));
+            else if (o instanceof byte[]) statement.setBytes(index, (byte[]) o); // For blobs and geometry objects
+            else statement.setString(index, String.valueOf(o));
+        }
+    }
+
     private static String encodeHex(byte[] bytes) {
         final char[] out = new char[bytes.length*2];
         for (int i = 0, j = 0; i < bytes.length; i++) {
@@ -1664,27 +2880,222 @@ public class Database {
         return reference;
     }
 
+    private final class Transaction {
+        private final Connection connection;
+        // What is handed out while the transaction runs, closing it must not end the transaction.
+        private final Connection pinned;
+        private final TransactionOptions options;
+        private final Set<String> tables = new HashSet<>();
+        private int previousIsolation = -1;
+
+        private Transaction(Connection connection, TransactionOptions options) throws SQLException {
+            this.connection = connection;
+            pinned = connection == con ? guarded : pin(connection);
+            this.options = options;
+
+            try {
+                if (options.getIsolation() != IsolationLevel.DEFAULT) {
+                    previousIsolation = connection.getTransactionIsolation();
+                    connection.setTransactionIsolation(options.getIsolation().getLevel());
+                }
+
+                // SQLite connections can only be made read-only when opened.
+                if (options.isReadOnly()) setReadOnly(true);
+                connection.setAutoCommit(false);
+            } catch (SQLException | RuntimeException e) {
+                end(false);
+                throw e;
+            }
+        }
+
+        private void setReadOnly(boolean readOnly) throws SQLException {
+            if (type != RDBMS.SQLite) connection.setReadOnly(readOnly);
+            else try (Statement statement = connection.createStatement()) {
+                statement.execute("PRAGMA query_only = " + (readOnly ? "ON" : "OFF") + ";");
+            }
+        }
+
+        private void end(boolean committed) {
+            try {
+                if (!committed && !connection.getAutoCommit()) connection.rollback();
+                connection.setAutoCommit(true);
+                if (options.isReadOnly()) setReadOnly(false);
+                if (previousIsolation != -1) connection.setTransactionIsolation(previousIsolation);
+            } catch (SQLException ignored) { // Nothing we can do about it anymore.
+            } finally {
+                if (connection != con)
+                    try {
+                        connection.close();
+                    } catch (SQLException ignored) {}
+            }
+        }
+    }
+
+    private static final class Call {
+        private final Call root;
+        private final boolean hasDeadline;
+        // Relative to System.nanoTime().
+        private final long deadline;
+        // Only kept by asynchronous calls, as only their futures can cancel them.
+        private final Set<Statement> statements;
+        private volatile boolean cancelled;
+
+        // The root of an asynchronous call.
+        private Call(boolean hasDeadline, long deadline) {
+            root = this;
+            this.hasDeadline = hasDeadline;
+            this.deadline = deadline;
+            statements = Collections.newSetFromMap(new IdentityHashMap<>());
+        }
+
+        // A deadline set within the given call, which is kept if it ends earlier.
+        private Call(@Nullable Call parent, long deadline) {
+            root = parent == null ? this : parent.root;
+            hasDeadline = true;
+            this.deadline = parent != null && parent.hasDeadline && parent.deadline - deadline < 0 ? parent.deadline : deadline;
+            statements = null;
+        }
+
+        private boolean isCancelled() {
+            return root.cancelled;
+        }
+
+        private void register(Statement statement) {
+            Set<Statement> statements = root.statements;
+            if (statements == null) return;
+
+            synchronized (statements) {
+                // Long calls, like chunked deletes, can create many statements.
+                if (statements.size() >= 16) statements.removeIf(Call::isClosed);
+                statements.add(statement);
+            }
+        }
+
+        private void cancel() {
+            cancelled = true;
+
+            List<Statement> statements;
+            synchronized (this.statements) {
+                statements = new ArrayList<>(this.statements);
+            }
+
+            for (Statement statement : statements)
+                try {
+                    if (!statement.isClosed()) statement.cancel();
+                } catch (SQLException ignored) {} // Nothing we can do about it.
+        }
+
+        private static boolean isClosed(Statement statement) {
+            try {
+                return statement.isClosed();
+            } catch (SQLException e) {
+                return true;
+            }
+        }
+    }
+
+    private static final class CancellableFuture<T> extends CompletableFuture<T> {
+        private final Call call;
+
+        private CancellableFuture(Call call) {
+            this.call = call;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) call.cancel();
+            return cancelled;
+        }
+    }
+
+    // Completes with what the future it was derived from completes with, cancelling it cancels that future too.
+    private static final class ForwardingFuture<T> extends CompletableFuture<T> {
+        private final CompletableFuture<?> source;
+
+        private ForwardingFuture(CompletableFuture<?> source) {
+            this.source = source;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) source.cancel(mayInterruptIfRunning);
+            return cancelled;
+        }
+    }
+
+    // Statements executed on the shared connection wait for the transaction of another thread to end, rather than becoming part of it.
+    private Connection guard(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Database.class.getClassLoader(), new Class[] {Connection.class}, (proxy, method, args) -> {
+            if ("close".equals(method.getName())) return null; // Only this Database closes it.
+
+            Object result = invokeGuarded(connection, method, args, "commit", "rollback", "setAutoCommit");
+            return result instanceof Statement ? guard((Statement) result, method.getReturnType().asSubclass(Statement.class)) : result;
+        });
+    }
+
+    private <S extends Statement> S guard(Statement statement, Class<S> type) {
+        return type.cast(Proxy.newProxyInstance(Database.class.getClassLoader(), new Class[] {type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return invokeGuarded(statement, method, args, "execute", "executeQuery", "executeUpdate", "executeLargeUpdate",
+                            "executeBatch", "executeLargeBatch");
+            }
+        }));
+    }
+
+    // Invokes the given method while holding the transaction lock if it is one of the given methods.
+    private Object invokeGuarded(Object target, Method method, Object[] args, String... locking) throws Throwable {
+        boolean lock = Arrays.asList(locking).contains(method.getName());
+        if (lock) transactionLock.lock();
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        } finally {
+            if (lock) transactionLock.unlock();
+        }
+    }
+
+    private static Connection pin(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Database.class.getClassLoader(), new Class[] {Connection.class}, (proxy, method, args) -> {
+            if ("close".equals(method.getName())) return null;
+
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+    }
+
     public enum RDBMS {
         MySQL("com.mysql.cj.jdbc.Driver", "https://repo1.maven.org/maven2/mysql/mysql-connector-java/maven-metadata.xml",
                 "https://repo1.maven.org/maven2/mysql/mysql-connector-java/${VERSION}/mysql-connector-java-${VERSION}.jar",
-                "jdbc:mysql://%s/?autoReconnect=true", new Properties(),
-                name -> Executors.newCachedThreadPool(r -> new Thread(r, "Database Thread - " + name))),
+                "jdbc:mysql://%s/?autoReconnect=true", createMySQLProperties(), 65535, RDBMS::createBoundedExecutor),
         SQLite("org.sqlite.JDBC", "https://repo1.maven.org/maven2/org/xerial/sqlite-jdbc/maven-metadata.xml",
                 "https://repo1.maven.org/maven2/org/xerial/sqlite-jdbc/${VERSION}/sqlite-jdbc-${VERSION}.jar",
-                "jdbc:sqlite:%s", createSQLiteProperties(),
-                name -> Executors.newFixedThreadPool(1, r -> new Thread(r, "Database Thread - " + name))), // Preventing database lock, only one thread can use an SQLite database at a time.
-        UNKNOWN(null, null, null, null, new Properties(), name -> Executors.newCachedThreadPool(r -> new Thread(r, "Database Thread - " + name)));
+                "jdbc:sqlite:%s", createSQLiteProperties(), 32766,
+                (name, threads) -> Executors.newFixedThreadPool(1, r -> new Thread(r, "Database Thread - " + name))), // Preventing database lock, only one thread can use an SQLite database at a time.
+        UNKNOWN(null, null, null, null, new Properties(), 999, RDBMS::createBoundedExecutor);
 
         private final String initialLoadClass, metadataUrl, downloadUrl, connectionUrl;
         private final Properties connectionProperties;
-        private final Function<String, Executor> defaultExecutor;
+        private final int maxParameters;
+        private final BiFunction<String, Integer, Executor> defaultExecutor;
 
-        RDBMS(String initialLoadClass, String metadataUrl, String downloadUrl, String connectionUrl, Properties connectionProperties, Function<String, Executor> defaultExecutor) {
+        RDBMS(String initialLoadClass, String metadataUrl, String downloadUrl, String connectionUrl, Properties connectionProperties, int maxParameters, BiFunction<String, Integer, Executor> defaultExecutor) {
             this.initialLoadClass = initialLoadClass;
             this.metadataUrl = metadataUrl;
             this.downloadUrl = downloadUrl;
             this.connectionUrl = connectionUrl;
             this.connectionProperties = connectionProperties;
+            this.maxParameters = maxParameters;
             this.defaultExecutor = defaultExecutor;
         }
 
@@ -1709,6 +3120,14 @@ public class Database {
             return connectionProperties;
         }
 
+        /**
+         * @return The maximum amount of parameters a single prepared statement may have.
+         * For SQLite, this is the limit of version 3.32.0 and up.
+         */
+        public int getMaxParameters() {
+            return maxParameters;
+        }
+
         public Connection createConnection(String host) throws SQLException {
             return DriverManager.getConnection(formatConnectionUrl(host), getConnectionProperties());
         }
@@ -1722,7 +3141,31 @@ public class Database {
         }
 
         public Executor getDefaultExecutor(String name) {
-            return defaultExecutor.apply(name);
+            return getDefaultExecutor(name, Runtime.getRuntime().availableProcessors());
+        }
+
+        /**
+         * @param name The name of the database the executor is for
+         * @param threads The maximum amount of threads the executor may use, ignored for SQLite
+         * @return A new instance of the default executor of this type
+         */
+        public Executor getDefaultExecutor(String name, int threads) {
+            return defaultExecutor.apply(name, threads);
+        }
+
+        private static Executor createBoundedExecutor(String name, int threads) {
+            return new BoundedExecutor(name, ExecutorOptions.builder().threads(threads).build());
+        }
+
+        // Makes prepared statements actually get prepared (and their plans cached) on the server rather than emulated by the driver.
+        private static Properties createMySQLProperties() {
+            Properties properties = new Properties();
+            properties.setProperty("useServerPrepStmts", "true");
+            // Sends batches of inserts as multi-row inserts, split according to max_allowed_packet.
+            properties.setProperty("rewriteBatchedStatements", "true");
+            // Makes positive fetch sizes fetch rows using a cursor rather than reading the entire result at once.
+            properties.setProperty("useCursorFetch", "true");
+            return properties;
         }
 
         // Required for Foreign Keys to actually do something rather than just be decoration.
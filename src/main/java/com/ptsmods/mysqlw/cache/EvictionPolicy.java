@@ -0,0 +1,15 @@
+package com.ptsmods.mysqlw.cache;
+
+/**
+ * Which entry a {@link MemoryResultCache} removes when it is full.
+ */
+public enum EvictionPolicy {
+    /**
+     * Removes the entry that was used least recently.
+     */
+    LRU,
+    /**
+     * Removes the entry that was used least often, or of those, the one that was used least recently.
+     */
+    LFU
+}
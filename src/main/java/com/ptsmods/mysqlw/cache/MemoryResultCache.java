@@ -0,0 +1,188 @@
+package com.ptsmods.mysqlw.cache;
+
+import com.ptsmods.mysqlw.query.SelectResults;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * A {@link ResultCache} keeping results in memory.<br>
+ * The cache is bounded by both an amount of entries and an estimated amount of bytes, entries are evicted
+ * according to the configured {@link EvictionPolicy} once either is exceeded. Entries also expire once they
+ * have been cached for longer than the configured time-to-live.
+ */
+public class MemoryResultCache implements ResultCache {
+    private final ResultCacheOptions options;
+    private final Map<List<Object>, Entry> entries = new HashMap<>();
+    private final Map<String, Set<Entry>> tables = new HashMap<>();
+    // Ordered by which entry should be evicted first.
+    private final TreeSet<Entry> order;
+    private long bytes, sequence, hits, misses, evictions;
+
+    /**
+     * @param options The options determining the size of this cache and how long results are kept
+     */
+    public MemoryResultCache(ResultCacheOptions options) {
+        if (options.getMaxEntries() < 1) throw new IllegalArgumentException("The maximum amount of entries of a result cache must be at least 1.");
+
+        this.options = options;
+        Comparator<Entry> recency = Comparator.comparingLong(entry -> entry.lastUsed);
+        order = new TreeSet<>(options.getEvictionPolicy() == EvictionPolicy.LFU ?
+                Comparator.<Entry>comparingLong(entry -> entry.uses).thenComparing(recency) : recency);
+    }
+
+    @Override
+    public synchronized @Nullable SelectResults get(List<Object> key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.isExpired()) {
+            remove(entry);
+            entry = null;
+        }
+
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+
+        hits++;
+        order.remove(entry);
+        entry.uses++;
+        entry.lastUsed = sequence++;
+        order.add(entry);
+        return entry.results;
+    }
+
+    @Override
+    public synchronized void put(List<Object> key, Set<String> tables, SelectResults results) {
+        long size = estimateSize(key, results);
+        Entry previous = entries.get(key);
+        if (previous != null) remove(previous);
+        if (size > options.getMaxBytes()) return;
+
+        // Room is made before adding the new entry, as it would otherwise be the first to go when using LFU.
+        while (entries.size() >= options.getMaxEntries() || bytes + size > options.getMaxBytes()) {
+            remove(order.first());
+            evictions++;
+        }
+
+        Entry entry = new Entry(key, tables, results, size);
+        entry.lastUsed = sequence++;
+        entries.put(key, entry);
+        order.add(entry);
+        for (String table : tables) this.tables.computeIfAbsent(table, k -> new HashSet<>()).add(entry);
+        bytes += size;
+    }
+
+    @Override
+    public synchronized void invalidate(String table) {
+        Set<Entry> entries = tables.get(table);
+        if (entries != null)
+            for (Entry entry : new ArrayList<>(entries)) remove(entry);
+    }
+
+    @Override
+    public synchronized void clear() {
+        entries.clear();
+        tables.clear();
+        order.clear();
+        bytes = 0;
+    }
+
+    private void remove(Entry entry) {
+        entries.remove(entry.key);
+        order.remove(entry);
+        for (String table : entry.tables) {
+            Set<Entry> tableEntries = tables.get(table);
+            tableEntries.remove(entry);
+            if (tableEntries.isEmpty()) tables.remove(table);
+        }
+        bytes -= entry.size;
+    }
+
+    /**
+     * @return The amount of results currently cached
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return The estimated amount of bytes all cached results take up together
+     */
+    public synchronized long getEstimatedBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return The amount of times cached results were returned
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return The amount of times no cached results were found
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return The amount of entries removed to make room for others
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return The options this cache was created with
+     */
+    public ResultCacheOptions getOptions() {
+        return options;
+    }
+
+    // A rough estimate of the heap taken up by the key and results, it does not have to be exact to bound memory usage.
+    private static long estimateSize(List<Object> key, SelectResults results) {
+        long size = 64 + estimateSize(key);
+        int columns = results.getColumns().size();
+        size += (16 + 8L * results.size()) * columns;
+        for (SelectResults.SelectResultRow row : results)
+            for (int i = 0; i < columns; i++)
+                size += estimateSize(row.get(i));
+
+        return size;
+    }
+
+    private static long estimateSize(Object o) {
+        if (o == null) return 0;
+        if (o instanceof CharSequence) return 40 + 2L * ((CharSequence) o).length();
+        if (o instanceof byte[]) return 16 + ((byte[]) o).length;
+        if (o instanceof Collection) {
+            long size = 16;
+            for (Object element : (Collection<?>) o) size += 8 + estimateSize(element);
+            return size;
+        }
+
+        return 24;
+    }
+
+    private final class Entry {
+        private final List<Object> key;
+        private final Set<String> tables;
+        private final SelectResults results;
+        private final long size, expiresAt;
+        private long uses, lastUsed;
+
+        private Entry(List<Object> key, Set<String> tables, SelectResults results, long size) {
+            this.key = key;
+            this.tables = tables;
+            this.results = results;
+            this.size = size;
+            expiresAt = options.getTtl() > 0 ? System.currentTimeMillis() + options.getTtl() : Long.MAX_VALUE;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.ptsmods.mysqlw.cache;
+
+import com.ptsmods.mysqlw.query.SelectResults;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A cache of {@link SelectResults}, keyed by the query and values they were selected with.<br>
+ * Each entry is tagged with the tables it was selected from, so that it can be
+ * {@link #invalidate(String) invalidated} once any of those tables is written to.
+ * Implementations must be thread-safe.
+ * @see com.ptsmods.mysqlw.Database#setResultCache(ResultCache)
+ * @see MemoryResultCache
+ */
+public interface ResultCache {
+    /**
+     * @param key The query and values the results were selected with
+     * @return The cached results, or null if none are cached
+     */
+    @Nullable SelectResults get(List<Object> key);
+
+    /**
+     * Caches results.
+     * @param key The query and values the results were selected with
+     * @param tables The lower-case names of all tables the results were selected from
+     * @param results The results to cache
+     */
+    void put(List<Object> key, Set<String> tables, SelectResults results);
+
+    /**
+     * Removes all cached results selected from the given table.
+     * @param table The lower-case name of the table
+     */
+    void invalidate(String table);
+
+    /**
+     * Removes all cached results.
+     */
+    void clear();
+}
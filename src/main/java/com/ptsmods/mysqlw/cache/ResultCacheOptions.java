@@ -0,0 +1,41 @@
+package com.ptsmods.mysqlw.cache;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Settings used to configure a {@link MemoryResultCache}.<br>
+ * An entry is evicted as soon as either of the size limits is exceeded.
+ */
+@Getter
+@Builder(builderClassName = "Builder")
+public class ResultCacheOptions {
+    /**
+     * Which entry to evict when the cache is full.
+     */
+    @lombok.Builder.Default
+    private final EvictionPolicy evictionPolicy = EvictionPolicy.LRU;
+    /**
+     * The maximum amount of results cached.
+     */
+    @lombok.Builder.Default
+    private final int maxEntries = 1000;
+    /**
+     * The maximum estimated amount of bytes all cached results may take up together.
+     * Results estimated to be larger than this are not cached at all.
+     */
+    @lombok.Builder.Default
+    private final long maxBytes = 64L * 1024 * 1024;
+    /**
+     * How many milliseconds results may be cached for, {@code 0} keeps them until they are evicted or invalidated.
+     */
+    @lombok.Builder.Default
+    private final long ttl = 60_000;
+
+    /**
+     * @return ResultCacheOptions with all default values
+     */
+    public static ResultCacheOptions defaults() {
+        return builder().build();
+    }
+}
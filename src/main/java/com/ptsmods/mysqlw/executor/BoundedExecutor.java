@@ -0,0 +1,159 @@
+package com.ptsmods.mysqlw.executor;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread pool with a bounded amount of threads and a bounded queue that keeps track of how long tasks wait.<br>
+ * Unlike a cached thread pool, a burst of tasks does not result in a burst of threads that would all end up
+ * waiting for the same few connections anyway. Tasks are queued instead and once the queue is full,
+ * the configured {@link RejectionPolicy} applies.
+ * @see ExecutorOptions
+ */
+public class BoundedExecutor extends ThreadPoolExecutor {
+    // Threads that must never run or wait for tasks themselves, see markHandOffOnly().
+    private static final ThreadLocal<Boolean> handOffOnly = ThreadLocal.withInitial(() -> false);
+    private final String name;
+    private final ExecutorOptions options;
+    private final LongAdder waitTime = new LongAdder();
+    private final AtomicLong maxWaitTime = new AtomicLong();
+    private final LongAdder started = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param name The name of this executor, used in thread names
+     * @param options The options to configure this executor with, {@link ExecutorOptions#getThreads() threads} must be at least 1
+     */
+    public BoundedExecutor(String name, ExecutorOptions options) {
+        super(options.getThreads(), options.getThreads(), options.getKeepAlive(), TimeUnit.MILLISECONDS,
+                options.getQueueCapacity() == 0 ? new SynchronousQueue<>() : new LinkedBlockingQueue<>(options.getQueueCapacity()),
+                createThreadFactory(name));
+
+        this.name = name;
+        this.options = options;
+        // Idle threads are stopped just like they would be in a cached pool, so an unused executor does not keep the JVM alive.
+        allowCoreThreadTimeOut(options.getKeepAlive() > 0);
+        setRejectedExecutionHandler(this::reject);
+    }
+
+    private static ThreadFactory createThreadFactory(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> new Thread(r, "Database Thread - " + name + " #" + counter.incrementAndGet());
+    }
+
+    /**
+     * Marks the calling thread as one that only hands tasks off, like a timer thread shared by many tasks.<br>
+     * Tasks it submits while the queue is full are rejected regardless of the {@link RejectionPolicy},
+     * as running them on, or blocking, this thread would hold up everything else it hands off.
+     */
+    public static void markHandOffOnly() {
+        handOffOnly.set(true);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        super.execute(new TimedTask(command));
+    }
+
+    private void reject(Runnable task, ThreadPoolExecutor executor) {
+        if (!isShutdown() && !handOffOnly.get())
+            switch (options.getRejectionPolicy()) {
+                case CALLER_RUNS:
+                    task.run();
+                    return;
+                case BLOCK:
+                    try {
+                        if (getQueue().offer(task, options.getBlockTimeout(), TimeUnit.MILLISECONDS)) return;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    break;
+            }
+
+        rejected.increment();
+        throw new RejectedExecutionException("Task rejected by executor " + name + ", " + getQueue().size() + " tasks are queued.");
+    }
+
+    /**
+     * @return The name of this executor
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The options this executor was created with
+     */
+    public ExecutorOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * @return The amount of tasks currently waiting for a thread
+     */
+    public int getQueueDepth() {
+        return getQueue().size();
+    }
+
+    /**
+     * @return The amount of tasks that were rejected because the queue was full
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return The total amount of milliseconds tasks spent waiting for a thread
+     */
+    public long getTotalWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(waitTime.sum());
+    }
+
+    /**
+     * @return The average amount of milliseconds tasks spent waiting for a thread
+     */
+    public double getAverageWaitTime() {
+        long started = this.started.sum();
+        return started == 0 ? 0 : waitTime.sum() / 1e6 / started;
+    }
+
+    /**
+     * @return The longest amount of milliseconds a single task spent waiting for a thread
+     */
+    public long getMaxWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitTime.get());
+    }
+
+    @Override
+    public String toString() {
+        return "BoundedExecutor[" +
+                "name='" + name + '\'' +
+                ", threads=" + getMaximumPoolSize() +
+                ", active=" + getActiveCount() +
+                ", queued=" + getQueueDepth() +
+                ", rejected=" + getRejectedCount() +
+                ", averageWaitTime=" + getAverageWaitTime() +
+                ']';
+    }
+
+    private final class TimedTask implements Runnable {
+        private final Runnable task;
+        private final long submitted = System.nanoTime();
+
+        private TimedTask(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            long waited = System.nanoTime() - submitted;
+            waitTime.add(waited);
+            maxWaitTime.accumulateAndGet(waited, Math::max);
+            started.increment();
+
+            task.run();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.ptsmods.mysqlw.executor;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Settings used to configure a {@link BoundedExecutor}.<br>
+ * All durations are in milliseconds.
+ */
+@Getter
+@Builder(builderClassName = "Builder", toBuilder = true)
+public class ExecutorOptions {
+    /**
+     * The maximum amount of threads running tasks at once, {@code 0} sizes the executor to the
+     * connection capacity of the database it is used by.
+     * @see com.ptsmods.mysqlw.Database#configureExecutor(ExecutorOptions)
+     */
+    @lombok.Builder.Default
+    private final int threads = 0;
+    /**
+     * The maximum amount of tasks waiting for a thread, {@code 0} hands tasks straight to a thread or rejects them.
+     */
+    @lombok.Builder.Default
+    private final int queueCapacity = 1024;
+    /**
+     * What to do with tasks submitted while the queue is full.
+     */
+    @lombok.Builder.Default
+    private final RejectionPolicy rejectionPolicy = RejectionPolicy.CALLER_RUNS;
+    /**
+     * How long a submitting thread may block when using {@link RejectionPolicy#BLOCK}.
+     */
+    @lombok.Builder.Default
+    private final long blockTimeout = 30_000;
+    /**
+     * How long a thread may sit idle before it is stopped.
+     */
+    @lombok.Builder.Default
+    private final long keepAlive = 60_000;
+
+    /**
+     * @return ExecutorOptions with all default values
+     */
+    public static ExecutorOptions defaults() {
+        return builder().build();
+    }
+}
@@ -0,0 +1,215 @@
+package com.ptsmods.mysqlw.executor;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An executor that starts threads on demand, but never runs more than a fixed amount of tasks at once.
+ * Tasks are started in the order they were submitted in, so with a limit of one, tasks never overlap and run in order.<br>
+ * Threads stop as soon as there are no more tasks to run, which makes this executor especially suitable for virtual threads
+ * (see {@link #virtual(String, int)}), as those are cheap to start and do not tie up a platform thread while blocked on JDBC calls.
+ */
+public class GatedExecutor implements Executor {
+    private static final boolean virtualSupported = isVirtualAvailable();
+    private final ThreadFactory factory;
+    private final int maxConcurrency;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger running = new AtomicInteger();
+    private volatile boolean shutdown;
+
+    /**
+     * @param factory The factory used to create threads
+     * @param maxConcurrency The maximum amount of tasks to run at once, generally the amount of connections available
+     */
+    public GatedExecutor(ThreadFactory factory, int maxConcurrency) {
+        if (maxConcurrency < 1) throw new IllegalArgumentException("The maximum concurrency of an executor must be at least 1.");
+
+        this.factory = factory;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * @return Whether the running JVM supports virtual threads, which requires Java 21 or newer.
+     */
+    public static boolean isVirtualSupported() {
+        return virtualSupported;
+    }
+
+    /**
+     * Creates a new executor running its tasks on virtual threads.
+     * @param name The name of this executor, used in thread names
+     * @param maxConcurrency The maximum amount of tasks to run at once, generally the amount of connections available
+     * @return A new executor running its tasks on virtual threads
+     * @throws UnsupportedOperationException If the running JVM does not support virtual threads
+     * @see #isVirtualSupported()
+     */
+    public static GatedExecutor virtual(String name, int maxConcurrency) {
+        if (!isVirtualSupported()) throw new UnsupportedOperationException("Virtual threads require Java 21 or newer.");
+
+        try {
+            // Builders are not thread-safe, so each executor gets its own factory.
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "Database Virtual Thread - " + name + " #", 1L);
+            return new GatedExecutor((ThreadFactory) builderClass.getMethod("factory").invoke(builder), maxConcurrency);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Could not create a virtual thread factory.", e);
+        }
+    }
+
+    // The library is compiled against Java 8, so virtual threads can only be reached through reflection.
+    // On Java 19 and 20, ofVirtual exists, but throws if preview features are not enabled, so it is actually called.
+    private static boolean isVirtualAvailable() {
+        try {
+            Thread.class.getMethod("ofVirtual").invoke(null);
+            return true;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (shutdown) throw new RejectedExecutionException("This executor has been shut down.");
+
+        tasks.add(command);
+        startWorker();
+    }
+
+    private void startWorker() {
+        if (!tryAcquire()) return;
+
+        try {
+            factory.newThread(this::work).start();
+        } catch (RuntimeException | Error e) {
+            running.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private void work() {
+        do {
+            Runnable task;
+            while ((task = tasks.poll()) != null)
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    Thread thread = Thread.currentThread();
+                    thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+                }
+
+            if (running.decrementAndGet() == 0 && shutdown)
+                synchronized (this) {
+                    notifyAll(); // Wakes up anyone awaiting termination.
+                }
+            // A task may have been submitted after the queue was found empty, but before this worker stopped counting as running.
+        } while (!tasks.isEmpty() && tryAcquire());
+    }
+
+    private boolean tryAcquire() {
+        while (true) {
+            int running = this.running.get();
+            if (running >= maxConcurrency) return false;
+            if (this.running.compareAndSet(running, running + 1)) return true;
+        }
+    }
+
+    /**
+     * @return The maximum amount of tasks this executor runs at once
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * @return The amount of tasks currently waiting to be run
+     */
+    public int getQueueDepth() {
+        return tasks.size();
+    }
+
+    /**
+     * @return The amount of threads currently running tasks
+     */
+    public int getActiveCount() {
+        return running.get();
+    }
+
+    /**
+     * Stops accepting new tasks, tasks that were already submitted still run.
+     */
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    /**
+     * Shuts down the given executor if it is an {@link ExecutorService} or a GatedExecutor, tasks it already accepted still run.
+     * @param executor The executor to shut down
+     */
+    public static void shutdown(Executor executor) {
+        if (executor instanceof ExecutorService) ((ExecutorService) executor).shutdown();
+        else if (executor instanceof GatedExecutor) ((GatedExecutor) executor).shutdown();
+    }
+
+    /**
+     * @return Whether this executor has been shut down
+     */
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    /**
+     * @return Whether this executor has been shut down and all tasks it accepted have finished
+     */
+    public boolean isTerminated() {
+        return shutdown && running.get() == 0 && tasks.isEmpty();
+    }
+
+    /**
+     * Waits for all tasks to finish after this executor has been shut down.
+     * @param timeout The maximum time to wait
+     * @param unit The unit of the timeout
+     * @return Whether all tasks finished before the timeout passed
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public synchronized boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!isTerminated()) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) return false;
+            // Waits in short steps, as workers only notify once the last of them stops.
+            wait(Math.max(1, Math.min(TimeUnit.NANOSECONDS.toMillis(remaining), 10)));
+        }
+
+        return true;
+    }
+
+    /**
+     * @param executor The executor to check
+     * @return Whether the given executor is an {@link ExecutorService} or a GatedExecutor that has been shut down
+     */
+    public static boolean isShutdown(Executor executor) {
+        return executor instanceof ExecutorService ? ((ExecutorService) executor).isShutdown() :
+                executor instanceof GatedExecutor && ((GatedExecutor) executor).isShutdown();
+    }
+
+    /**
+     * Waits for all tasks of the given executor to finish after it has been shut down.
+     * Executors that are neither an {@link ExecutorService} nor a GatedExecutor cannot be waited for.
+     * @param executor The executor to wait for
+     * @param timeout The maximum time to wait
+     * @param unit The unit of the timeout
+     * @return Whether all tasks finished before the timeout passed, always true for executors that cannot be waited for
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public static boolean awaitTermination(Executor executor, long timeout, TimeUnit unit) throws InterruptedException {
+        if (executor instanceof ExecutorService) return ((ExecutorService) executor).awaitTermination(timeout, unit);
+        return !(executor instanceof GatedExecutor) || ((GatedExecutor) executor).awaitTermination(timeout, unit);
+    }
+}
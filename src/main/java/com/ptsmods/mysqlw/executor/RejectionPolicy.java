@@ -0,0 +1,21 @@
+package com.ptsmods.mysqlw.executor;
+
+/**
+ * What a {@link BoundedExecutor} does with tasks submitted while its queue is full.<br>
+ * Tasks submitted by {@link BoundedExecutor#markHandOffOnly() hand-off-only} threads are always rejected instead.
+ */
+public enum RejectionPolicy {
+    /**
+     * Runs the task on the thread that submitted it, which naturally slows down whoever is submitting too many tasks.
+     */
+    CALLER_RUNS,
+    /**
+     * Immediately throws a {@link java.util.concurrent.RejectedExecutionException}.
+     */
+    FAIL_FAST,
+    /**
+     * Blocks the submitting thread until there is room in the queue, or throws a {@link java.util.concurrent.RejectedExecutionException}
+     * if none became available within {@link ExecutorOptions#getBlockTimeout() blockTimeout}.
+     */
+    BLOCK
+}
@@ -0,0 +1,17 @@
+package com.ptsmods.mysqlw.pool;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Creates the physical connections a {@link ConnectionPool} hands out.
+ */
+@FunctionalInterface
+public interface ConnectionFactory {
+
+    /**
+     * @return A newly opened connection
+     * @throws SQLException If the connection could not be opened
+     */
+    Connection create() throws SQLException;
+}
@@ -0,0 +1,248 @@
+package com.ptsmods.mysqlw.pool;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A simple, bounded pool of JDBC connections.<br>
+ * Connections are borrowed with {@link #borrow()} and returned by closing them. Closing a borrowed connection
+ * while statements created on it are still open defers returning it until those statements are closed too.
+ * @see PoolOptions
+ */
+public class ConnectionPool implements AutoCloseable {
+    // Connections used less than this long ago are assumed to still be valid.
+    private static final long VALIDATION_BYPASS = 500;
+    private final String name;
+    private final ConnectionFactory factory;
+    private final PoolOptions options;
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger active = new AtomicInteger();
+    private final Semaphore permits;
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    /**
+     * Creates a new pool and immediately opens {@link PoolOptions#getMinSize() minSize} connections.
+     * @param name The name of this pool, used in thread names and error messages
+     * @param factory The factory used to open new physical connections
+     * @param options The options to configure this pool with
+     * @throws SQLException If the initial connections could not be opened
+     */
+    public ConnectionPool(String name, ConnectionFactory factory, PoolOptions options) throws SQLException {
+        if (options.getMaxSize() < 1) throw new IllegalArgumentException("The maximum size of a connection pool must be at least 1.");
+        if (options.getMinSize() < 0 || options.getMinSize() > options.getMaxSize())
+            throw new IllegalArgumentException("The minimum size of a connection pool must be between 0 and its maximum size.");
+
+        this.name = name;
+        this.factory = factory;
+        this.options = options;
+        permits = new Semaphore(options.getMaxSize(), true);
+
+        fill();
+        if (options.getHousekeepingInterval() > 0) {
+            housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "Connection Pool Housekeeper - " + name);
+                t.setDaemon(true);
+                return t;
+            });
+            housekeeper.scheduleWithFixedDelay(this::housekeep, options.getHousekeepingInterval(), options.getHousekeepingInterval(), TimeUnit.MILLISECONDS);
+        } else housekeeper = null;
+    }
+
+    /**
+     * Returns the pool the given connection was borrowed from.
+     * @param connection The connection to check
+     * @return The pool this connection belongs to or null if it was not borrowed from a pool.
+     */
+    public static ConnectionPool getPool(Connection connection) {
+        ConnectionProxy proxy = ConnectionProxy.of(connection);
+        return proxy == null ? null : proxy.getPool();
+    }
+
+    /**
+     * Borrows a connection from this pool, opening a new one if none are idle and the pool is not yet full.
+     * If the pool is full, this waits at most {@link PoolOptions#getBorrowTimeout() borrowTimeout} milliseconds for one to be returned.<br>
+     * <p style="color: red; font-weight: bold;">DO NOT FORGET TO CLOSE THIS.</p>
+     * @return A connection which is returned to this pool upon closing
+     * @throws SQLException If no connection became available in time or a new one could not be opened
+     */
+    public Connection borrow() throws SQLException {
+        if (closed) throw new SQLException("Connection pool " + name + " has been closed.");
+
+        try {
+            if (options.getBorrowTimeout() <= 0) permits.acquire();
+            else if (!permits.tryAcquire(options.getBorrowTimeout(), TimeUnit.MILLISECONDS))
+                throw new SQLTimeoutException("Timed out after " + options.getBorrowTimeout() + "ms waiting for a connection from pool " + name + ".");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection from pool " + name + ".", e);
+        }
+
+        try {
+            PooledConnection connection;
+            while ((connection = idle.pollFirst()) != null)
+                if (isUsable(connection)) break;
+                else destroy(connection);
+
+            if (connection == null) connection = open();
+            active.incrementAndGet();
+            return ConnectionProxy.lease(this, connection);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    void release(PooledConnection connection) {
+        connection.touch();
+        active.decrementAndGet();
+
+        try {
+            if (closed || connection.isExpired(options.getMaxLifetime(), System.currentTimeMillis()) || !reset(connection))
+                destroy(connection);
+            else idle.offerFirst(connection); // LIFO, so hot connections stay hot and cold ones can idle out.
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean reset(PooledConnection connection) {
+        Connection con = connection.getConnection();
+        try {
+            if (con.isClosed()) return false;
+            if (!con.getAutoCommit()) {
+                con.rollback();
+                con.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private boolean isUsable(PooledConnection connection) {
+        long now = System.currentTimeMillis();
+        if (connection.isExpired(options.getMaxLifetime(), now)) return false;
+        if (!options.isValidateOnBorrow() || now - connection.getLastUsed() < VALIDATION_BYPASS) return true;
+
+        try {
+            return connection.getConnection().isValid(options.getValidationTimeout());
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection open() throws SQLException {
+        PooledConnection connection = new PooledConnection(factory.create(), options.getStatementCacheSize());
+        connections.add(connection);
+        return connection;
+    }
+
+    private void destroy(PooledConnection connection) {
+        connections.remove(connection);
+        connection.closeQuietly();
+    }
+
+    private void fill() throws SQLException {
+        while (!closed && connections.size() < options.getMinSize() && permits.tryAcquire())
+            try {
+                idle.offerLast(open());
+            } finally {
+                permits.release();
+            }
+    }
+
+    private void housekeep() {
+        long now = System.currentTimeMillis();
+        for (Iterator<PooledConnection> iterator = idle.descendingIterator(); iterator.hasNext(); ) {
+            PooledConnection connection = iterator.next();
+            boolean retire = connection.isExpired(options.getMaxLifetime(), now) ||
+                    connections.size() > options.getMinSize() && connection.isIdleFor(options.getIdleTimeout(), now);
+
+            // Only destroy it if nobody borrowed it in the meantime.
+            if (retire && idle.removeFirstOccurrence(connection)) destroy(connection);
+        }
+
+        try {
+            fill();
+        } catch (SQLException ignored) {} // Will be tried again next time.
+    }
+
+    /**
+     * @return The name of this pool
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The options this pool was created with
+     */
+    public PoolOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * @return The amount of open connections, both idle and in use
+     */
+    public int getTotalCount() {
+        return connections.size();
+    }
+
+    /**
+     * @return The amount of connections currently waiting to be borrowed
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * @return The amount of connections currently borrowed
+     */
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    /**
+     * @return The (estimated) amount of threads waiting for a connection to become available
+     */
+    public int getPendingCount() {
+        return permits.getQueueLength();
+    }
+
+    /**
+     * @return Whether this pool has been closed
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Closes this pool and all idle connections in it.
+     * Connections that are still borrowed are closed as soon as they are returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (housekeeper != null) housekeeper.shutdownNow();
+
+        PooledConnection connection;
+        while ((connection = idle.pollFirst()) != null) destroy(connection);
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPool[" +
+                "name='" + name + '\'' +
+                ", total=" + getTotalCount() +
+                ", idle=" + getIdleCount() +
+                ", active=" + getActiveCount() +
+                ']';
+    }
+}
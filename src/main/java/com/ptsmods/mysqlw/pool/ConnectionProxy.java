@@ -0,0 +1,128 @@
+package com.ptsmods.mysqlw.pool;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The handler behind every connection lent out by a {@link ConnectionPool}.<br>
+ * Closing the proxy does not close the physical connection, instead it is returned to the pool
+ * as soon as every statement created on it has been closed too. This allows methods like
+ * {@link com.ptsmods.mysqlw.Database#executeQuery(String)} to hand out a ResultSet while
+ * the connection it was read from is returned once its statement is closed.
+ */
+final class ConnectionProxy implements InvocationHandler {
+    private final ConnectionPool pool;
+    private final PooledConnection connection;
+    private final Connection proxy;
+    private final Set<StatementProxy> statements = new HashSet<>();
+    private boolean closed, released;
+
+    private ConnectionProxy(ConnectionPool pool, PooledConnection connection) {
+        this.pool = pool;
+        this.connection = connection;
+        proxy = (Connection) Proxy.newProxyInstance(ConnectionProxy.class.getClassLoader(), new Class[] {Connection.class}, this);
+    }
+
+    static Connection lease(ConnectionPool pool, PooledConnection connection) {
+        return new ConnectionProxy(pool, connection).proxy;
+    }
+
+    static ConnectionProxy of(Connection connection) {
+        if (connection == null || !Proxy.isProxyClass(connection.getClass())) return null;
+        InvocationHandler handler = Proxy.getInvocationHandler(connection);
+        return handler instanceof ConnectionProxy ? (ConnectionProxy) handler : null;
+    }
+
+    ConnectionPool getPool() {
+        return pool;
+    }
+
+    PooledConnection getPooledConnection() {
+        return connection;
+    }
+
+    Connection getProxy() {
+        return proxy;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "close":
+                close();
+                return null;
+            case "isClosed":
+                return isClosed() || connection.getConnection().isClosed();
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "PooledConnection[pool=" + pool.getName() + ", connection=" + connection.getConnection() + "]";
+        }
+
+        if (isReleased()) throw new SQLException("This connection has already been returned to the pool.");
+
+        StatementCache cache = connection.getStatementCache();
+        if (cache != null && "prepareStatement".equals(method.getName()) && args.length == 1)
+            return track(new StatementProxy(this, cache.take((String) args[0]), PreparedStatement.class, cache, (String) args[0]));
+
+        Object result = delegate(connection.getConnection(), method, args);
+        return result instanceof Statement ? track(new StatementProxy(this, (Statement) result, method.getReturnType())) : result;
+    }
+
+    private Statement track(StatementProxy proxy) {
+        synchronized (this) {
+            statements.add(proxy);
+        }
+
+        return proxy.getProxy();
+    }
+
+    void statementClosed(StatementProxy statement) {
+        boolean release;
+        synchronized (this) {
+            statements.remove(statement);
+            release = closed && !released && statements.isEmpty();
+            if (release) released = true;
+        }
+
+        if (release) pool.release(connection);
+    }
+
+    private void close() {
+        boolean release;
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            release = statements.isEmpty();
+            if (release) released = true;
+        }
+
+        if (release) pool.release(connection);
+    }
+
+    private synchronized boolean isClosed() {
+        return closed;
+    }
+
+    private synchronized boolean isReleased() {
+        return released;
+    }
+
+    static Object delegate(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.ptsmods.mysqlw.pool;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Settings used to configure a {@link ConnectionPool}.<br>
+ * All durations are in milliseconds, any duration {@code <= 0} disables the feature it belongs to.
+ */
+@Getter
+@Builder(builderClassName = "Builder")
+public class PoolOptions {
+    /**
+     * The amount of connections the pool tries to keep open at all times.
+     */
+    @lombok.Builder.Default
+    private final int minSize = 1;
+    /**
+     * The maximum amount of connections the pool may have open at once, both idle and in use.
+     */
+    @lombok.Builder.Default
+    private final int maxSize = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+    /**
+     * How long a caller may wait for a connection to become available before a {@link java.sql.SQLTimeoutException} is thrown.
+     */
+    @lombok.Builder.Default
+    private final long borrowTimeout = 30_000;
+    /**
+     * Whether connections should be checked with {@link java.sql.Connection#isValid(int)} before being handed out.
+     * Connections that were used less than half a second ago are not checked again.
+     */
+    @lombok.Builder.Default
+    private final boolean validateOnBorrow = true;
+    /**
+     * The amount of seconds a validation check may take.
+     */
+    @lombok.Builder.Default
+    private final int validationTimeout = 5;
+    /**
+     * How long a connection may sit idle before it is closed, as long as the pool has more than {@link #getMinSize() minSize} connections.
+     */
+    @lombok.Builder.Default
+    private final long idleTimeout = 600_000;
+    /**
+     * How long a connection may live in total before it is retired, regardless of how often it is used.
+     */
+    @lombok.Builder.Default
+    private final long maxLifetime = 1_800_000;
+    /**
+     * How often idle eviction and max lifetime are enforced and the pool is refilled to {@link #getMinSize() minSize}.
+     */
+    @lombok.Builder.Default
+    private final long housekeepingInterval = 30_000;
+    /**
+     * The amount of prepared statements each connection keeps cached, {@code 0} disables caching.
+     * @see StatementCache
+     */
+    @lombok.Builder.Default
+    private final int statementCacheSize = StatementCache.DEFAULT_SIZE;
+
+    /**
+     * @return PoolOptions with all default values
+     */
+    public static PoolOptions defaults() {
+        return builder().build();
+    }
+}
@@ -0,0 +1,51 @@
+package com.ptsmods.mysqlw.pool;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * A physical connection owned by a {@link ConnectionPool} along with its bookkeeping.
+ */
+final class PooledConnection {
+    private final Connection connection;
+    private final StatementCache statementCache;
+    private final long createdAt;
+    private volatile long lastUsed;
+
+    PooledConnection(Connection connection, int statementCacheSize) {
+        this.connection = connection;
+        statementCache = statementCacheSize > 0 ? new StatementCache(connection, statementCacheSize) : null;
+        createdAt = lastUsed = System.currentTimeMillis();
+    }
+
+    Connection getConnection() {
+        return connection;
+    }
+
+    StatementCache getStatementCache() {
+        return statementCache;
+    }
+
+    long getLastUsed() {
+        return lastUsed;
+    }
+
+    void touch() {
+        lastUsed = System.currentTimeMillis();
+    }
+
+    boolean isExpired(long maxLifetime, long now) {
+        return maxLifetime > 0 && now - createdAt >= maxLifetime;
+    }
+
+    boolean isIdleFor(long idleTimeout, long now) {
+        return idleTimeout > 0 && now - lastUsed >= idleTimeout;
+    }
+
+    void closeQuietly() {
+        if (statementCache != null) statementCache.close();
+        try {
+            connection.close();
+        } catch (SQLException ignored) {} // Nothing we can do about it anymore.
+    }
+}
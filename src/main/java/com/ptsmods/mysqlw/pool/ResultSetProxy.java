@@ -0,0 +1,49 @@
+package com.ptsmods.mysqlw.pool;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+
+/**
+ * Wraps result sets of pooled statements so that {@link ResultSet#getStatement()} returns the
+ * statement proxy and {@link java.sql.Statement#closeOnCompletion()} keeps working.
+ */
+final class ResultSetProxy implements InvocationHandler {
+    private final StatementProxy statement;
+    private final ResultSet set;
+    private final ResultSet proxy;
+
+    ResultSetProxy(StatementProxy statement, ResultSet set) {
+        this.statement = statement;
+        this.set = set;
+        proxy = (ResultSet) Proxy.newProxyInstance(ResultSetProxy.class.getClassLoader(), new Class[] {ResultSet.class}, this);
+    }
+
+    ResultSet getProxy() {
+        return proxy;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "close":
+                try {
+                    set.close();
+                } finally {
+                    statement.resultSetClosed();
+                }
+                return null;
+            case "getStatement":
+                return statement.getProxy();
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return set.toString();
+        }
+
+        return ConnectionProxy.delegate(set, method, args);
+    }
+}
@@ -0,0 +1,140 @@
+package com.ptsmods.mysqlw.pool;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A least-recently-used cache of {@link PreparedStatement}s belonging to a single physical connection, keyed by their SQL.<br>
+ * Statements are checked out while in use, so no two callers ever share one. Closing a statement handed out by
+ * this cache returns it to the cache instead of actually closing it.
+ */
+public class StatementCache implements AutoCloseable {
+    /**
+     * The amount of statements cached per connection unless configured otherwise.
+     */
+    public static final int DEFAULT_SIZE = 64;
+    private final Connection connection;
+    private final int maxSize;
+    private final Map<String, PreparedStatement> statements;
+    private final AtomicLong hits = new AtomicLong(), misses = new AtomicLong();
+    private boolean closed;
+
+    /**
+     * @param connection The physical connection to prepare statements on
+     * @param maxSize The maximum amount of statements to keep, the least recently used statement is closed when exceeded
+     */
+    public StatementCache(Connection connection, int maxSize) {
+        if (maxSize < 1) throw new IllegalArgumentException("The maximum size of a statement cache must be at least 1.");
+
+        this.connection = connection;
+        this.maxSize = maxSize;
+        statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() <= StatementCache.this.maxSize) return false;
+
+                closeQuietly(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns a cached statement for the given SQL or prepares a new one if none is available.<br>
+     * Closing the returned statement returns it to this cache.
+     * @param sql The SQL to prepare, use question marks as argument placeholders
+     * @return A prepared statement which must be closed once finished
+     * @throws SQLException If the statement could not be prepared
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        return (PreparedStatement) new StatementProxy(null, take(sql), PreparedStatement.class, this, sql).getProxy();
+    }
+
+    PreparedStatement take(String sql) throws SQLException {
+        PreparedStatement statement;
+        synchronized (this) {
+            if (closed) throw new SQLException("This statement cache has been closed.");
+            statement = statements.remove(sql);
+        }
+
+        if (statement != null && !statement.isClosed()) {
+            hits.incrementAndGet();
+            return statement;
+        }
+
+        misses.incrementAndGet();
+        return connection.prepareStatement(sql);
+    }
+
+    void offer(String sql, PreparedStatement statement) {
+        try {
+            if (statement.isClosed()) return;
+            statement.clearParameters();
+            if (statement.getFetchSize() != 0) statement.setFetchSize(0);
+        } catch (SQLException e) {
+            closeQuietly(statement);
+            return;
+        }
+
+        PreparedStatement duplicate;
+        synchronized (this) {
+            // Another caller may have returned a statement for the same SQL in the meantime, only one is kept.
+            duplicate = closed ? statement : statements.putIfAbsent(sql, statement);
+        }
+
+        if (duplicate != null) closeQuietly(statement);
+    }
+
+    /**
+     * @return The maximum amount of statements this cache keeps
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return The amount of statements currently cached and not in use
+     */
+    public synchronized int size() {
+        return statements.size();
+    }
+
+    /**
+     * @return The amount of times a statement could be taken from this cache
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return The amount of times a statement had to be prepared because none was cached
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Closes all cached statements. Statements currently in use are closed once they are returned.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+
+        for (Iterator<PreparedStatement> iterator = statements.values().iterator(); iterator.hasNext(); ) {
+            closeQuietly(iterator.next());
+            iterator.remove();
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ignored) {} // Nothing we can do about it anymore.
+    }
+}
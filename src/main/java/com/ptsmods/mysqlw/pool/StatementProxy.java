@@ -0,0 +1,102 @@
+package com.ptsmods.mysqlw.pool;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Wraps statements created on pooled connections so the pool knows when they are closed,
+ * and statements taken from a {@link StatementCache} so they are returned to it rather than closed.
+ */
+final class StatementProxy implements InvocationHandler {
+    private final ConnectionProxy connection;
+    private final Statement statement;
+    private final Statement proxy;
+    private final StatementCache cache;
+    private final String sql;
+    private volatile boolean closeOnCompletion;
+    private volatile ResultSet resultSet;
+    private boolean closed;
+
+    StatementProxy(ConnectionProxy connection, Statement statement, Class<?> type) {
+        this(connection, statement, type, null, null);
+    }
+
+    StatementProxy(ConnectionProxy connection, Statement statement, Class<?> type, StatementCache cache, String sql) {
+        this.connection = connection;
+        this.statement = statement;
+        this.cache = cache;
+        this.sql = sql;
+        proxy = (Statement) Proxy.newProxyInstance(StatementProxy.class.getClassLoader(), new Class[] {type}, this);
+    }
+
+    Statement getProxy() {
+        return proxy;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "close":
+                close();
+                return null;
+            case "isClosed":
+                return isClosed() || statement.isClosed();
+            case "getConnection":
+                return connection == null ? statement.getConnection() : connection.getProxy();
+            // Handled here rather than by the driver as the driver would close
+            // the actual statement without this proxy ever knowing about it.
+            case "closeOnCompletion":
+                closeOnCompletion = true;
+                return null;
+            case "isCloseOnCompletion":
+                return closeOnCompletion;
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return statement.toString();
+        }
+
+        // A cached statement may already be used by someone else once it has been returned.
+        if (cache != null && isClosed()) throw new SQLException("This statement has already been closed.");
+
+        Object result = ConnectionProxy.delegate(statement, method, args);
+        if (!(result instanceof ResultSet)) return result;
+
+        resultSet = (ResultSet) result;
+        return new ResultSetProxy(this, resultSet).getProxy();
+    }
+
+    void resultSetClosed() throws Exception {
+        if (closeOnCompletion) close();
+    }
+
+    private void close() throws Exception {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+        }
+
+        try {
+            if (cache == null) statement.close();
+            else {
+                // Closing the statement would have closed its results too, which, on SQLite, also releases its read lock.
+                ResultSet resultSet = this.resultSet;
+                if (resultSet != null) resultSet.close();
+                cache.offer(sql, (PreparedStatement) statement);
+            }
+        } finally {
+            if (connection != null) connection.statementClosed(this);
+        }
+    }
+
+    private synchronized boolean isClosed() {
+        return closed;
+    }
+}
@@ -0,0 +1,66 @@
+package com.ptsmods.mysqlw.query;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Settings used to configure how results are exported.
+ * @see com.ptsmods.mysqlw.query.builder.SelectBuilder#export(java.io.Writer, ExportOptions)
+ */
+@Getter
+@Builder(builderClassName = "Builder")
+public class ExportOptions {
+    /**
+     * The format to export rows in.
+     */
+    @lombok.Builder.Default
+    private final Format format = Format.CSV;
+    /**
+     * Whether to start CSV and TSV exports with a line containing the names of the columns.
+     */
+    @lombok.Builder.Default
+    private final boolean header = true;
+    /**
+     * The charset to encode text with when exporting to an {@link java.io.OutputStream} or a {@link java.nio.channels.WritableByteChannel}.
+     */
+    @lombok.Builder.Default
+    private final Charset charset = StandardCharsets.UTF_8;
+    /**
+     * The amount of characters collected before they are written, the buffer is reused for the entire export.
+     */
+    @lombok.Builder.Default
+    private final int bufferSize = 8192;
+
+    /**
+     * @return ExportOptions with all default values
+     */
+    public static ExportOptions defaults() {
+        return builder().build();
+    }
+
+    /**
+     * The formats results can be exported in.<br>
+     * Byte arrays are exported as Base64 and booleans as {@code 1} or {@code 0} in CSV and TSV and as JSON booleans in NDJSON,
+     * any other value that is not a number is exported as its String representation.
+     */
+    public enum Format {
+        /**
+         * Comma-separated values as described in RFC 4180.
+         * Values containing commas, quotes or line breaks are quoted, null is exported as an empty value and empty Strings as {@code ""}.
+         */
+        CSV,
+        /**
+         * Tab-separated values.
+         * Tabs, line breaks and backslashes in values are escaped with a backslash and null is exported as {@code \N},
+         * just like MySQL's {@code SELECT ... INTO OUTFILE} does.
+         */
+        TSV,
+        /**
+         * Newline-delimited JSON, a JSON object per row with a property per column.
+         */
+        NDJSON
+    }
+}
@@ -27,9 +27,19 @@ public class GroupBy {
     }
 
     public String toString(Database.RDBMS type) {
+        return toPreparedString(type, null);
+    }
+
+    /**
+     * @param type The type of database this group by is used on
+     * @param parameters The list to add the values of the having condition to, or null to inline them
+     * @return This group by with placeholders for the values of its having condition
+     * @see QueryCondition#toPreparedString(List)
+     */
+    public String toPreparedString(Database.RDBMS type, List<Object> parameters) {
         return "GROUP BY " + columns.stream()
                 .map(Database::engrave)
                 .collect(Collectors.joining(", ")) + (rollup && type != Database.RDBMS.SQLite ? " WITH ROLLUP" : "") +
-                (having == null ? "" : " HAVING " + having);
+                (having == null ? "" : " HAVING " + having.toPreparedString(parameters));
     }
 }
@@ -7,6 +7,7 @@ import lombok.NonNull;
 import lombok.Singular;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -38,10 +39,19 @@ public class Join {
 
     @Override
     public String toString() {
+        return toPreparedString(null);
+    }
+
+    /**
+     * @param parameters The list to add the values of the join condition to, or null to inline them
+     * @return This join with placeholders for the values of its condition
+     * @see QueryCondition#toPreparedString(List)
+     */
+    public String toPreparedString(List<Object> parameters) {
         return (natural && type != JoinType.CROSS ? "NATURAL " : "") + type.name() +
                 " JOIN " + Database.engrave(table) +
                 (alias == null ? "" : " AS " + Database.engrave(alias)) +
-                (using.isEmpty() && condition == null ? "" : condition != null ? " ON " + condition : " USING (" + using.stream()
+                (using.isEmpty() && condition == null ? "" : condition != null ? " ON " + condition.toPreparedString(parameters) : " USING (" + using.stream()
                         .map(Database::engrave)
                         .collect(Collectors.joining(", ")) + ")");
     }
@@ -2,6 +2,8 @@ package com.ptsmods.mysqlw.query;
 
 import com.ptsmods.mysqlw.Database;
 
+import java.util.List;
+
 /**
  * A condition a query must meet to affect or return rows.
  */
@@ -29,12 +31,7 @@ public abstract class QueryCondition {
      * @return A QueryCondition comparing a column against a value
      */
     public static QueryConditions equals(String key, Object value) {
-        return QueryConditions.create(new QueryCondition() {
-            @Override
-            public String toString() {
-                return Database.engrave(key) + " = " + Database.getAsString(value);
-            }
-        });
+        return compare(key, "=", value);
     }
 
     /**
@@ -57,12 +54,7 @@ public abstract class QueryCondition {
      * @return A QueryCondition that checks if a column does not equal a value
      */
     public static QueryConditions notEquals(String key, Object value) {
-        return QueryConditions.create(new QueryCondition() {
-            @Override
-            public String toString() {
-                return Database.engrave(key) + " <> " + Database.getAsString(value);
-            }
-        });
+        return compare(key, "<>", value);
     }
 
     /**
@@ -85,12 +77,7 @@ public abstract class QueryCondition {
      * @return A QueryCondition that checks if a column is greater than the given value
      */
     public static QueryConditions greater(String key, Object value) {
-        return QueryConditions.create(new QueryCondition() {
-            @Override
-            public String toString() {
-                return Database.engrave(key) + " > " + Database.getAsString(value);
-            }
-        });
+        return compare(key, ">", value);
     }
 
     /**
@@ -113,12 +100,7 @@ public abstract class QueryCondition {
      * @return A QueryCondition that checks if a column is greater than or equal to the given value
      */
     public static QueryConditions greaterEqual(String key, Object value) {
-        return QueryConditions.create(new QueryCondition() {
-            @Override
-            public String toString() {
-                return Database.engrave(key) + " >= " + Database.getAsString(value);
-            }
-        });
+        return compare(key, ">=", value);
     }
 
     /**
@@ -141,12 +123,7 @@ public abstract class QueryCondition {
      * @return A QueryCondition that checks if a column is less than the given value
      */
     public static QueryConditions less(String key, Object value) {
-        return QueryConditions.create(new QueryCondition() {
-            @Override
-            public String toString() {
-                return Database.engrave(key) + " < " + Database.getAsString(value);
-            }
-        });
+        return compare(key, "<", value);
     }
 
     /**
@@ -169,12 +146,7 @@ public abstract class QueryCondition {
      * @return A QueryCondition that checks if a column is less than or equal to the given value
      */
     public static QueryConditions lessEqual(String key, Object value) {
-        return QueryConditions.create(new QueryCondition() {
-            @Override
-            public String toString() {
-                return Database.engrave(key) + " <= " + Database.getAsString(value);
-            }
-        });
+        return compare(key, "<=", value);
     }
 
     /**
@@ -197,12 +169,7 @@ public abstract class QueryCondition {
      * @return A QueryCondition that checks if a column is like the given value
      */
     public static QueryConditions like(String key, String value) {
-        return QueryConditions.create(new QueryCondition() {
-            @Override
-            public String toString() {
-                return Database.engrave(key) + " LIKE " + Database.enquote(value);
-            }
-        });
+        return compare(key, "LIKE", value);
     }
 
     /**
@@ -211,12 +178,7 @@ public abstract class QueryCondition {
      * @return A QueryCondition that checks if a column matches the given value
      */
     public static QueryConditions match(String key, String value) {
-        return QueryConditions.create(new QueryCondition() {
-            @Override
-            public String toString() {
-                return Database.engrave(key) + " MATCH " + Database.enquote(value);
-            }
-        });
+        return compare(key, "MATCH", value);
     }
 
     /**
@@ -225,15 +187,7 @@ public abstract class QueryCondition {
      * @return A QueryCondition that checks if a column is in the given list
      */
     public static QueryConditions in(String key, Object[] objects) {
-        return QueryConditions.create(new QueryCondition() {
-            @Override
-            public String toString() {
-                StringBuilder s = new StringBuilder().append(Database.engrave(key)).append(" IN (");
-                for (Object o : objects)
-                    s.append(Database.getAsString(o)).append(", ");
-                return s.delete(s.length()-2, s.length()).append(")").toString();
-            }
-        });
+        return in(key, "IN", objects);
     }
 
     /**
@@ -242,15 +196,7 @@ public abstract class QueryCondition {
      * @return A QueryCondition that checks if a column is not in the given list
      */
     public static QueryConditions notIn(String key, Object[] objects) {
-        return QueryConditions.create(new QueryCondition() {
-            @Override
-            public String toString() {
-                StringBuilder s = new StringBuilder().append(Database.engrave(key)).append(" NOT IN (");
-                for (Object o : objects)
-                    s.append(Database.getAsString(o)).append(", ");
-                return s.delete(s.length()-2, s.length()).append(")").toString();
-            }
-        });
+        return in(key, "NOT IN", objects);
     }
 
     /**
@@ -266,6 +212,49 @@ public abstract class QueryCondition {
         });
     }
 
+    private static QueryConditions compare(String key, String operator, Object value) {
+        return QueryConditions.create(new QueryCondition() {
+            @Override
+            public String toString() {
+                return toPreparedString(null);
+            }
+
+            @Override
+            public String toPreparedString(List<Object> parameters) {
+                return Database.engrave(key) + " " + operator + " " + Database.getAsParameter(value, parameters);
+            }
+        });
+    }
+
+    private static QueryConditions in(String key, String operator, Object[] objects) {
+        return QueryConditions.create(new QueryCondition() {
+            @Override
+            public String toString() {
+                return toPreparedString(null);
+            }
+
+            @Override
+            public String toPreparedString(List<Object> parameters) {
+                StringBuilder s = new StringBuilder().append(Database.engrave(key)).append(' ').append(operator).append(" (");
+                for (Object o : objects)
+                    s.append(Database.getAsParameter(o, parameters)).append(", ");
+                return s.delete(s.length()-2, s.length()).append(")").toString();
+            }
+        });
+    }
+
+    /**
+     * Renders this condition with question marks in place of the values it compares against,
+     * adding those values to the given list in the order they appear in.<br>
+     * Conditions without any values return the same as {@link #toString()}.
+     * @param parameters The list to add the values to, or null to have them inlined like {@link #toString()} does
+     * @return This condition with placeholders for its values
+     * @see Database#getAsParameter(Object, List)
+     */
+    public String toPreparedString(List<Object> parameters) {
+        return toString();
+    }
+
     @Override
     public abstract String toString();
 }
@@ -121,13 +121,18 @@ public class QueryConditions extends QueryCondition {
 
     @Override
     public String toString() {
+        return toPreparedString(null);
+    }
+
+    @Override
+    public String toPreparedString(List<Object> parameters) {
         // No need to use parentheses when there's only one condition.
-        if (conditions.size() == 1) return conditions.get(0).getRight().toString();
+        if (conditions.size() == 1) return conditions.get(0).getRight().toPreparedString(parameters);
 
         StringBuilder builder = new StringBuilder("(");
         boolean first = true;
         for (Pair<ConditionKeyword, QueryCondition> condition : conditions) {
-            builder.append(first ? "" : condition.getLeft().toString() + " ").append(condition.getRight()).append(" ");
+            builder.append(first ? "" : condition.getLeft().toString() + " ").append(condition.getRight().toPreparedString(parameters)).append(" ");
             first = false;
         }
         return builder.toString().trim() + ')';
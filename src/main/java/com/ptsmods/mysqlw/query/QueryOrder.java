@@ -2,6 +2,10 @@ package com.ptsmods.mysqlw.query;
 
 import com.ptsmods.mysqlw.Database;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * The order in which to return results.
  */
@@ -26,31 +30,77 @@ public class QueryOrder {
         return new QueryOrder(column, direction);
     }
 
-    private final String column;
-    private final OrderDirection direction;
+    private final List<String> columns;
+    private final List<OrderDirection> directions;
 
     private QueryOrder(String column, OrderDirection direction) {
-        this.column = column;
-        this.direction = direction;
+        this(Collections.singletonList(column), Collections.singletonList(direction));
+    }
+
+    private QueryOrder(List<String> columns, List<OrderDirection> directions) {
+        this.columns = Collections.unmodifiableList(columns);
+        this.directions = Collections.unmodifiableList(directions);
     }
 
     /**
-     * @return The column this QueryOrder orders by.
+     * Order by another column in an {@link OrderDirection#ASC ascending direction} when the previous columns are equal.
+     * @param column The column to order by next.
+     * @return A new QueryOrder ordering by the columns of this one and then the given column.
+     */
+    public QueryOrder then(String column) {
+        return then(column, OrderDirection.ASC);
+    }
+
+    /**
+     * Order by another column in the given direction when the previous columns are equal.
+     * @param column The column to order by next.
+     * @param direction The direction to order the given column in.
+     * @return A new QueryOrder ordering by the columns of this one and then the given column.
+     */
+    public QueryOrder then(String column, OrderDirection direction) {
+        List<String> columns = new ArrayList<>(this.columns);
+        List<OrderDirection> directions = new ArrayList<>(this.directions);
+        columns.add(column);
+        directions.add(direction);
+
+        return new QueryOrder(columns, directions);
+    }
+
+    /**
+     * @return The (first) column this QueryOrder orders by.
      */
     public String getColumn() {
-        return column;
+        return columns.get(0);
     }
 
     /**
-     * @return The direction in which this QueryOrder orders.
+     * @return The direction in which this QueryOrder orders its (first) column.
      */
     public OrderDirection getDirection() {
-        return direction;
+        return directions.get(0);
+    }
+
+    /**
+     * @return All columns this QueryOrder orders by, in order of precedence.
+     */
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return The directions of all columns this QueryOrder orders by, in the same order as {@link #getColumns()}.
+     */
+    public List<OrderDirection> getDirections() {
+        return directions;
     }
 
     @Override
     public String toString() {
-        return Database.engrave(column) + " " + direction.name();
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < columns.size(); i++)
+            builder.append(i == 0 ? "" : ", ").append(Database.engrave(columns.get(i))).append(' ').append(directions.get(i).name());
+
+        return builder.toString();
     }
 
     public enum OrderDirection {
@@ -0,0 +1,264 @@
+package com.ptsmods.mysqlw.query;
+
+import com.ptsmods.mysqlw.Database;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Base64;
+
+/**
+ * Writes the rows of a live {@link ResultSet} to a {@link Writer} as CSV, TSV or NDJSON.<br>
+ * Rows are written as they are read, so memory usage does not depend on the amount of rows. How each column is read is
+ * decided once per column, after which numbers are written straight from their primitive getters into a single reused buffer.
+ * @see com.ptsmods.mysqlw.query.builder.SelectBuilder#export(Writer, ExportOptions)
+ */
+public final class ResultExporter {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private final ResultSet set;
+    private final Writer writer;
+    private final ExportOptions options;
+    private final ExportOptions.Format format;
+    private final ValueType[] types;
+    private final String[] columns;
+    private final StringBuilder buffer;
+    private char[] chars = new char[0];
+
+    private ResultExporter(Database db, ResultSet set, Writer writer, ExportOptions options) throws SQLException {
+        this.set = set;
+        this.writer = writer;
+        this.options = options;
+        format = options.getFormat();
+        buffer = new StringBuilder(options.getBufferSize() + 256);
+
+        ResultSetMetaData meta = set.getMetaData();
+        types = new ValueType[meta.getColumnCount()];
+        columns = new String[types.length];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = ValueType.of(db, meta, i + 1);
+            columns[i] = meta.getColumnName(i + 1);
+        }
+    }
+
+    /**
+     * Writes every row in the given ResultSet to the given writer and closes its statement afterwards.
+     * The writer is flushed, but not closed.
+     * @param db The Database this ResultSet was created with.
+     * @param table The table this ResultSet contains rows of.
+     * @param set The ResultSet to write the rows of.
+     * @param writer The writer to write the rows to.
+     * @param options The options determining the format rows are written in.
+     * @return The amount of rows written.
+     * @throws UncheckedIOException If the rows could not be written
+     */
+    public static long export(Database db, String table, ResultSet set, Writer writer, ExportOptions options) {
+        if (options.getBufferSize() < 1) throw new IllegalArgumentException("The buffer size must be at least 1.");
+        if (set == null) return 0;
+
+        long rows = 0;
+        try {
+            ResultExporter exporter = new ResultExporter(db, set, writer, options);
+            if (options.isHeader() && exporter.format != ExportOptions.Format.NDJSON) exporter.writeHeader();
+
+            while (set.next()) {
+                exporter.writeRow();
+                rows++;
+            }
+
+            exporter.flush();
+            writer.flush();
+        } catch (SQLException e) {
+            if (db != null) db.logOrThrow("Error exporting results from table '" + table + "'.", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error exporting results from table '" + table + "'.", e);
+        } finally {
+            try {
+                set.getStatement().close();
+            } catch (SQLException ignored) {} // Nothing we can do about it anymore.
+        }
+
+        return rows;
+    }
+
+    private void writeHeader() {
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) buffer.append(format == ExportOptions.Format.CSV ? ',' : '\t');
+            writeText(columns[i]);
+        }
+        buffer.append('\n');
+    }
+
+    private void writeRow() throws SQLException, IOException {
+        if (format == ExportOptions.Format.NDJSON) buffer.append('{');
+
+        for (int i = 0; i < types.length; i++) {
+            if (format == ExportOptions.Format.NDJSON) {
+                if (i > 0) buffer.append(',');
+                writeJsonString(columns[i]);
+                buffer.append(':');
+            } else if (i > 0) buffer.append(format == ExportOptions.Format.CSV ? ',' : '\t');
+
+            writeValue(i + 1, types[i]);
+        }
+
+        buffer.append(format == ExportOptions.Format.NDJSON ? "}\n" : "\n");
+        if (buffer.length() >= options.getBufferSize()) flush();
+    }
+
+    // Columns are read like SelectResults reads them, but numbers are written without ever being boxed.
+    private void writeValue(int column, ValueType type) throws SQLException {
+        switch (type) {
+            case INT:
+                int i = set.getInt(column);
+                if (i == 0 && set.wasNull()) writeNull();
+                else buffer.append(i);
+                break;
+            case LONG:
+                long l = set.getLong(column);
+                if (l == 0 && set.wasNull()) writeNull();
+                else buffer.append(l);
+                break;
+            case DOUBLE:
+                double d = set.getDouble(column);
+                if (d == 0 && set.wasNull()) writeNull();
+                else writeDouble(d);
+                break;
+            case FLOAT:
+                float f = set.getFloat(column);
+                if (f == 0 && set.wasNull()) writeNull();
+                else writeFloat(f);
+                break;
+            case BOOLEAN:
+                boolean b = set.getBoolean(column);
+                if (!b && set.wasNull()) writeNull();
+                else writeBoolean(b);
+                break;
+            case STRING:
+                String s = set.getString(column);
+                if (s == null) writeNull();
+                else writeText(s);
+                break;
+            case BYTES:
+                byte[] bytes = set.getBytes(column);
+                if (bytes == null) writeNull();
+                else writeText(Base64.getEncoder().encodeToString(bytes));
+                break;
+            default:
+                writeObject(set.getObject(column));
+        }
+    }
+
+    private void writeObject(Object o) {
+        if (o == null) writeNull();
+        else if (o instanceof Integer || o instanceof Long || o instanceof Short || o instanceof Byte) buffer.append(((Number) o).longValue());
+        else if (o instanceof Double) writeDouble((Double) o);
+        else if (o instanceof Float) writeFloat((Float) o);
+        else if (o instanceof BigDecimal) buffer.append(((BigDecimal) o).toPlainString());
+        else if (o instanceof Number) buffer.append(o);
+        else if (o instanceof Boolean) writeBoolean((Boolean) o);
+        else if (o instanceof byte[]) writeText(Base64.getEncoder().encodeToString((byte[]) o));
+        else writeText(o.toString());
+    }
+
+    private void writeNull() {
+        if (format == ExportOptions.Format.TSV) buffer.append("\\N");
+        else if (format == ExportOptions.Format.NDJSON) buffer.append("null");
+        // Empty in CSV.
+    }
+
+    private void writeDouble(double d) {
+        // JSON has no representation for NaN or infinity.
+        if (format == ExportOptions.Format.NDJSON && (Double.isNaN(d) || Double.isInfinite(d))) writeJsonString(Double.toString(d));
+        else buffer.append(d);
+    }
+
+    private void writeFloat(float f) {
+        if (format == ExportOptions.Format.NDJSON && (Float.isNaN(f) || Float.isInfinite(f))) writeJsonString(Float.toString(f));
+        else buffer.append(f);
+    }
+
+    private void writeBoolean(boolean b) {
+        if (format == ExportOptions.Format.NDJSON) buffer.append(b);
+        else buffer.append(b ? '1' : '0');
+    }
+
+    private void writeText(String s) {
+        switch (format) {
+            case CSV:
+                writeCsvString(s);
+                break;
+            case TSV:
+                writeTsvString(s);
+                break;
+            default:
+                writeJsonString(s);
+        }
+    }
+
+    private void writeCsvString(String s) {
+        boolean quote = s.isEmpty();
+        for (int i = 0; i < s.length() && !quote; i++) {
+            char c = s.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+
+        if (!quote) {
+            buffer.append(s);
+            return;
+        }
+
+        buffer.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"') buffer.append('"');
+            buffer.append(c);
+        }
+        buffer.append('"');
+    }
+
+    private void writeTsvString(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '\\': buffer.append("\\\\"); break;
+                case '\t': buffer.append("\\t"); break;
+                case '\n': buffer.append("\\n"); break;
+                case '\r': buffer.append("\\r"); break;
+                case '\0': buffer.append("\\0"); break;
+                default: buffer.append(c);
+            }
+        }
+    }
+
+    private void writeJsonString(String s) {
+        buffer.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': buffer.append("\\\""); break;
+                case '\\': buffer.append("\\\\"); break;
+                case '\n': buffer.append("\\n"); break;
+                case '\r': buffer.append("\\r"); break;
+                case '\t': buffer.append("\\t"); break;
+                default:
+                    if (c < 0x20) buffer.append("\\u00").append(HEX_DIGITS[c >> 4]).append(HEX_DIGITS[c & 0xF]);
+                    else buffer.append(c);
+            }
+        }
+        buffer.append('"');
+    }
+
+    private void flush() throws IOException {
+        if (buffer.length() == 0) return;
+
+        // Copied into a reused array, as writing the builder itself would create a new String every time.
+        if (chars.length < buffer.length()) chars = new char[buffer.capacity()];
+        buffer.getChars(0, buffer.length(), chars, 0);
+        writer.write(chars, 0, buffer.length());
+        buffer.setLength(0);
+    }
+}
@@ -0,0 +1,163 @@
+package com.ptsmods.mysqlw.query;
+
+import com.ptsmods.mysqlw.Database;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * A cursor over the rows of a live {@link ResultSet}.<br>
+ * Unlike {@link SelectResults}, nothing is copied or boxed: the getters read straight from the underlying
+ * result set, so visiting rows with primitive getters does not allocate anything per row.
+ * The cursor is only valid while it is being visited, it must not be kept around afterwards.<br>
+ * All ordinals are zero-based, just like those of {@link SelectResults#getOrdinal(String)}.
+ * @see com.ptsmods.mysqlw.query.builder.SelectBuilder#forEachCursor(Visitor)
+ */
+public final class RowCursor {
+    private final ResultSet set;
+    private final List<String> columns;
+    private final Map<String, Integer> ordinals;
+    private long row = -1;
+    private boolean stopped;
+
+    private RowCursor(ResultSet set) throws SQLException {
+        this.set = set;
+
+        ResultSetMetaData meta = set.getMetaData();
+        List<String> columns = new ArrayList<>();
+        Map<String, Integer> ordinals = new LinkedHashMap<>();
+        for (int i = 0; i < meta.getColumnCount(); i++) {
+            columns.add(meta.getColumnName(i + 1));
+            ordinals.put(columns.get(i), i);
+        }
+
+        this.columns = Collections.unmodifiableList(columns);
+        this.ordinals = Collections.unmodifiableMap(ordinals);
+    }
+
+    /**
+     * Passes every row in the given ResultSet to the given visitor and closes its statement afterwards.
+     * @param db The Database this ResultSet was created with.
+     * @param table The table this ResultSet contains rows of.
+     * @param set The ResultSet to visit the rows of.
+     * @param visitor The visitor to pass each row to.
+     * @return The amount of rows visited.
+     */
+    public static long visit(Database db, String table, ResultSet set, Visitor visitor) {
+        if (set == null) return 0;
+
+        try {
+            RowCursor cursor = new RowCursor(set);
+            while (!cursor.stopped && set.next()) {
+                cursor.row++;
+                visitor.visit(cursor);
+            }
+
+            return cursor.row + 1;
+        } catch (SQLException e) {
+            if (db != null) db.logOrThrow("Error iterating through results from table '" + table + "'.", e);
+            return 0;
+        } finally {
+            try {
+                set.getStatement().close();
+            } catch (SQLException ignored) {} // Nothing we can do about it anymore.
+        }
+    }
+
+    /**
+     * @return A list of all columns in the rows of this cursor.
+     */
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * Returns the ordinal of the given column. Look this up once, outside of any loops, and use the ordinal from there on.
+     * @param column The name of the column
+     * @return The (zero-based) ordinal of the given column
+     * @throws IllegalArgumentException If no column by that name exists
+     */
+    public int getOrdinal(String column) {
+        Integer ordinal = ordinals.get(column);
+        if (ordinal == null) throw new IllegalArgumentException("No column by that name exists.");
+        return ordinal;
+    }
+
+    /**
+     * @return The (zero-based) index of the row this cursor is currently at.
+     */
+    public long getRow() {
+        return row;
+    }
+
+    /**
+     * Stops visiting rows once the current row has been visited.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * @return Whether the last value read was SQL {@code NULL}, in which case primitive getters return {@code 0} or {@code false}.
+     * @throws SQLException If the underlying result set could not be read
+     */
+    public boolean wasNull() throws SQLException {
+        return set.wasNull();
+    }
+
+    public Object getObject(int ordinal) throws SQLException {
+        return set.getObject(ordinal + 1);
+    }
+
+    public String getString(int ordinal) throws SQLException {
+        return set.getString(ordinal + 1);
+    }
+
+    public boolean getBoolean(int ordinal) throws SQLException {
+        return set.getBoolean(ordinal + 1);
+    }
+
+    public byte getByte(int ordinal) throws SQLException {
+        return set.getByte(ordinal + 1);
+    }
+
+    public short getShort(int ordinal) throws SQLException {
+        return set.getShort(ordinal + 1);
+    }
+
+    public int getInt(int ordinal) throws SQLException {
+        return set.getInt(ordinal + 1);
+    }
+
+    public long getLong(int ordinal) throws SQLException {
+        return set.getLong(ordinal + 1);
+    }
+
+    public float getFloat(int ordinal) throws SQLException {
+        return set.getFloat(ordinal + 1);
+    }
+
+    public double getDouble(int ordinal) throws SQLException {
+        return set.getDouble(ordinal + 1);
+    }
+
+    public byte[] getByteArray(int ordinal) throws SQLException {
+        return set.getBytes(ordinal + 1);
+    }
+
+    /**
+     * Visits the rows of a {@link RowCursor}.<br>
+     * Any {@link SQLException} thrown while visiting is handled like any other error in this library.
+     */
+    @FunctionalInterface
+    public interface Visitor {
+        /**
+         * Called once for every row, the cursor passed is the same instance every time.
+         * @param cursor The cursor positioned at the current row
+         * @throws SQLException If the cursor could not be read
+         */
+        void visit(RowCursor cursor) throws SQLException;
+    }
+}
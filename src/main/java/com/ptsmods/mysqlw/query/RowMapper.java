@@ -0,0 +1,312 @@
+package com.ptsmods.mysqlw.query;
+
+import com.ptsmods.mysqlw.Database;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Date;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Maps rows to instances of a class.<br>
+ * Columns are bound to either the parameters of a constructor or to setters and fields of the class
+ * once per class and list of columns, after which mapping a row is nothing more than converting
+ * its values and invoking the bound method handles.
+ * <p>
+ * Columns are matched to names ignoring case and underscores, so a column named {@code user_id} is bound
+ * to a field called {@code userId} or a setter called {@code setUserId}. A constructor is used if
+ * every column is matched by a parameter of it, which requires the class to be compiled with {@code -parameters}.
+ * Otherwise, the class must have a no-args constructor and columns are bound to setters, or to fields if no setter was found.
+ * Columns that cannot be bound are ignored.
+ * <p>
+ * Values that are not already of the type they are bound to are converted. Numbers are converted to any other number type,
+ * Strings are parsed into dates, times, timestamps, UUIDs and enums and any other type is converted using the
+ * converters registered with {@link Database#registerTypeConverter(Class, Function, Function)}.
+ * @param <T> The type rows are mapped to
+ * @see SelectResults#mapTo(Class)
+ * @see com.ptsmods.mysqlw.query.builder.SelectBuilder#executeAs(Class)
+ */
+public final class RowMapper<T> {
+    private static final ClassValue<Map<List<String>, RowMapper<?>>> mappers = new ClassValue<Map<List<String>, RowMapper<?>>>() {
+        @Override
+        protected Map<List<String>, RowMapper<?>> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+    private final Class<T> type;
+    private final List<String> columns;
+    // Either (Object[])Object when using a constructor or ()Object when using setters and fields.
+    private final MethodHandle constructor;
+    private final boolean spread;
+    // (Object, Object)void for each column, null if it is not bound.
+    private final MethodHandle[] setters;
+    private final Function<Object, Object>[] converters;
+    private final Object[] defaults;
+
+    @SuppressWarnings("unchecked")
+    private RowMapper(Class<T> type, List<String> columns) {
+        this.type = type;
+        this.columns = columns;
+        converters = new Function[columns.size()];
+        defaults = new Object[columns.size()];
+        setters = new MethodHandle[columns.size()];
+
+        Constructor<?> ctor = findConstructor(type, columns);
+        try {
+            if (ctor != null) {
+                // Reorder the constructor's parameters to the order of the columns.
+                Parameter[] parameters = ctor.getParameters();
+                int[] order = new int[parameters.length];
+                for (int i = 0; i < parameters.length; i++) {
+                    int column = indexOf(columns, parameters[i].getName());
+                    order[i] = column;
+                    bindType(column, parameters[i].getType());
+                }
+
+                ctor.setAccessible(true);
+                MethodHandle handle = MethodHandles.lookup().unreflectConstructor(ctor);
+                handle = handle.asType(handle.type().generic());
+                handle = MethodHandles.permuteArguments(handle, MethodType.genericMethodType(columns.size()), order);
+                constructor = handle.asSpreader(Object[].class, columns.size());
+                spread = true;
+            } else {
+                try {
+                    ctor = type.getDeclaredConstructor();
+                } catch (NoSuchMethodException e) {
+                    throw new IllegalArgumentException("Class " + type.getName() + " has neither a no-args constructor nor a constructor " +
+                            "whose parameters match the columns " + columns + ".");
+                }
+
+                ctor.setAccessible(true);
+                MethodHandle handle = MethodHandles.lookup().unreflectConstructor(ctor);
+                constructor = handle.asType(handle.type().generic());
+                spread = false;
+
+                for (int i = 0; i < columns.size(); i++) {
+                    MethodHandle setter = findSetter(type, columns.get(i), i);
+                    if (setter != null) setters[i] = setter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Could not access the members of class " + type.getName() + ".", e);
+        }
+    }
+
+    /**
+     * Returns the mapper mapping rows with the given columns to the given class.
+     * Mappers are cached, so this only resolves bindings the first time it is called with the same arguments.
+     * @param type The class to map rows to
+     * @param columns The columns of the rows, in the order they are selected in
+     * @param <T> The type rows are mapped to
+     * @return A mapper for the given class and columns
+     * @throws IllegalArgumentException If the given class has no constructor that can be used
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> RowMapper<T> of(Class<T> type, List<String> columns) {
+        Map<List<String>, RowMapper<?>> cache = mappers.get(type);
+        RowMapper<?> mapper = cache.get(columns);
+        if (mapper == null) {
+            List<String> key = Collections.unmodifiableList(new ArrayList<>(columns));
+            mapper = cache.computeIfAbsent(key, k -> new RowMapper<>(type, k));
+        }
+
+        return (RowMapper<T>) mapper;
+    }
+
+    /**
+     * Maps all rows in the given ResultSet straight to instances of the given class and closes its statement afterwards.
+     * @param db The Database this ResultSet was created with.
+     * @param table The table this ResultSet contains rows of.
+     * @param set The ResultSet to map the rows of.
+     * @param type The class to map rows to.
+     * @param <T> The type rows are mapped to.
+     * @return The mapped rows.
+     */
+    public static <T> List<T> mapAll(Database db, String table, ResultSet set, Class<T> type) {
+        List<T> objects = new ArrayList<>();
+        if (set == null) return objects;
+
+        try {
+            ResultSetMetaData meta = set.getMetaData();
+            List<String> columns = new ArrayList<>();
+            for (int i = 1; i <= meta.getColumnCount(); i++)
+                columns.add(meta.getColumnName(i));
+
+            RowMapper<T> mapper = of(type, columns);
+            while (set.next())
+                objects.add(mapper.map(set));
+        } catch (SQLException e) {
+            if (db != null) db.logOrThrow("Error mapping results from table '" + table + "' to " + type.getName() + ".", e);
+        } finally {
+            try {
+                set.getStatement().close();
+            } catch (SQLException ignored) {} // Nothing we can do about it anymore.
+        }
+
+        return objects;
+    }
+
+    /**
+     * @return The class rows are mapped to.
+     */
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * @return The columns this mapper maps.
+     */
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * Maps the row the given ResultSet is currently at.
+     * @param set The ResultSet to read the values from, its columns must be the same as those of this mapper
+     * @return The mapped row
+     * @throws SQLException If a value could not be read
+     */
+    public T map(ResultSet set) throws SQLException {
+        Object[] values = new Object[columns.size()];
+        for (int i = 0; i < values.length; i++)
+            values[i] = set.getObject(i + 1);
+
+        return map(values);
+    }
+
+    /**
+     * Maps the given row.
+     * @param row The row to map, its columns must be the same as those of this mapper
+     * @return The mapped row
+     */
+    public T map(SelectResults.SelectResultRow row) {
+        Object[] values = new Object[columns.size()];
+        for (int i = 0; i < values.length; i++)
+            values[i] = row.get(i);
+
+        return map(values);
+    }
+
+    private T map(Object[] values) {
+        // NULL becomes the default value for primitives, e.g. 0 for an int.
+        for (int i = 0; i < values.length; i++)
+            if (converters[i] != null) values[i] = values[i] == null ? defaults[i] : converters[i].apply(values[i]);
+
+        try {
+            if (spread) return type.cast((Object) constructor.invokeExact(values));
+
+            Object o = (Object) constructor.invokeExact();
+            for (int i = 0; i < values.length; i++)
+                if (setters[i] != null) setters[i].invokeExact(o, values[i]);
+
+            return type.cast(o);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException("Could not map row to " + type.getName() + ".", t);
+        }
+    }
+
+    private MethodHandle findSetter(Class<?> type, String column, int index) throws IllegalAccessException {
+        String name = normalise(column);
+        for (Method method : type.getMethods())
+            if (!Modifier.isStatic(method.getModifiers()) && method.getParameterCount() == 1 && method.getName().startsWith("set") &&
+                    normalise(method.getName().substring(3)).equals(name)) {
+                // The method itself is public, but the class declaring it may not be.
+                method.setAccessible(true);
+                bindType(index, method.getParameterTypes()[0]);
+                return MethodHandles.lookup().unreflect(method);
+            }
+
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass())
+            for (Field field : c.getDeclaredFields())
+                if (!Modifier.isStatic(field.getModifiers()) && !Modifier.isFinal(field.getModifiers()) && normalise(field.getName()).equals(name)) {
+                    field.setAccessible(true);
+                    bindType(index, field.getType());
+                    return MethodHandles.lookup().unreflectSetter(field);
+                }
+
+        return null;
+    }
+
+    private void bindType(int index, Class<?> type) {
+        converters[index] = converter(type);
+        if (type.isPrimitive()) defaults[index] = Array.get(Array.newInstance(type, 1), 0);
+    }
+
+    private static Constructor<?> findConstructor(Class<?> type, List<String> columns) {
+        for (Constructor<?> ctor : type.getDeclaredConstructors()) {
+            if (ctor.getParameterCount() != columns.size() || ctor.getParameterCount() == 0) continue;
+
+            boolean matches = true;
+            Set<Integer> bound = new HashSet<>();
+            for (Parameter parameter : ctor.getParameters())
+                if (!parameter.isNamePresent() || !bound.add(indexOf(columns, parameter.getName()))) {
+                    matches = false;
+                    break;
+                }
+
+            if (matches && !bound.contains(-1)) return ctor;
+        }
+
+        return null;
+    }
+
+    private static int indexOf(List<String> columns, String name) {
+        name = normalise(name);
+        for (int i = 0; i < columns.size(); i++)
+            if (normalise(columns.get(i)).equals(name)) return i;
+
+        return -1;
+    }
+
+    private static String normalise(String name) {
+        return name.replace("_", "").toLowerCase(Locale.ROOT);
+    }
+
+    private static Function<Object, Object> converter(Class<?> type) {
+        Class<?> boxed = box(type);
+        if (boxed == Integer.class) return o -> o instanceof Number ? ((Number) o).intValue() : Integer.parseInt(o.toString());
+        if (boxed == Long.class) return o -> o instanceof Number ? ((Number) o).longValue() : Long.parseLong(o.toString());
+        if (boxed == Double.class) return o -> o instanceof Number ? ((Number) o).doubleValue() : Double.parseDouble(o.toString());
+        if (boxed == Float.class) return o -> o instanceof Number ? ((Number) o).floatValue() : Float.parseFloat(o.toString());
+        if (boxed == Short.class) return o -> o instanceof Number ? ((Number) o).shortValue() : Short.parseShort(o.toString());
+        if (boxed == Byte.class) return o -> o instanceof Number ? ((Number) o).byteValue() : Byte.parseByte(o.toString());
+        // SQLite has no booleans, they're stored as integers instead.
+        if (boxed == Boolean.class) return o -> o instanceof Boolean ? o : o instanceof Number ? ((Number) o).intValue() != 0 : Boolean.parseBoolean(o.toString());
+        if (boxed == Character.class) return o -> o instanceof Character ? o : o.toString().charAt(0);
+        if (type == BigDecimal.class) return o -> o instanceof BigDecimal ? o : new BigDecimal(o.toString());
+        if (type == BigInteger.class) return o -> o instanceof BigInteger ? o : new BigInteger(o.toString());
+        if (type == String.class) return o -> o instanceof byte[] ? new String((byte[]) o) : o.toString();
+        if (type == UUID.class) return o -> o instanceof UUID ? o : UUID.fromString(o.toString());
+        if (type == Timestamp.class) return o -> o instanceof Timestamp ? o : Timestamp.valueOf(o.toString());
+        if (type == Date.class) return o -> o instanceof Date ? o : Date.valueOf(o.toString());
+        if (type == Time.class) return o -> o instanceof Time ? o : Time.valueOf(o.toString());
+        if (type.isEnum()) return o -> type.isInstance(o) ? o : toEnum(type, o.toString());
+
+        return o -> type.isInstance(o) ? o : Database.getFromString(o.toString(), type);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object toEnum(Class<?> type, String name) {
+        return Enum.valueOf((Class<? extends Enum>) type, name);
+    }
+
+    private static Class<?> box(Class<?> type) {
+        if (!type.isPrimitive()) return type;
+
+        return MethodType.methodType(type).wrap().returnType();
+    }
+}
@@ -6,8 +6,10 @@ import org.jetbrains.annotations.NotNull;
 import java.sql.Date;
 import java.sql.*;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Returned when you use any of the select methods in {@link Database}.
@@ -21,7 +23,10 @@ public class SelectResults extends AbstractList<SelectResults.SelectResultRow> {
     private final QueryOrder order;
     private final QueryLimit limit;
     private final List<String> columns;
-    private final List<SelectResultRow> data;
+    private final Map<String, Integer> ordinals;
+    // Stored per column rather than per row, so a row is nothing more than an index into these arrays.
+    private final Object[][] data;
+    private final int size;
 
     /**
      * Parse a ResultSet into a SelectResults object.
@@ -45,35 +50,189 @@ public class SelectResults extends AbstractList<SelectResults.SelectResultRow> {
      */
     public static SelectResults parse(Database db, String table, ResultSet set, QueryCondition condition, QueryOrder order, QueryLimit limit) {
         List<String> columns = new ArrayList<>();
-        boolean columnsFilled = false;
-        List<Map<String, Object>> result = new ArrayList<>();
+        Object[][] data = new Object[0][];
+        int size = 0;
         if (set != null)
             try {
+                ResultSetMetaData meta = set.getMetaData();
+                int columnCount = meta.getColumnCount();
+                ValueExtractor[] extractors = new ValueExtractor[columnCount];
+                for (int i = 0; i < columnCount; i++) {
+                    columns.add(meta.getColumnName(i + 1));
+                    extractors[i] = ValueExtractor.of(db, meta, i + 1);
+                }
+
+                data = new Object[columnCount][16];
                 while (set.next()) {
-                    Map<String, Object> row = new LinkedHashMap<>();
-                    for (int i = 1; i <= set.getMetaData().getColumnCount(); i++) {
-                        row.put(set.getMetaData().getColumnName(i), set.getObject(i));
-                        if (!columnsFilled) columns.add(set.getMetaData().getColumnName(i));
-                    }
-                    columnsFilled = true;
-                    result.add(row);
+                    if (size == data[0].length)
+                        for (int i = 0; i < columnCount; i++)
+                            data[i] = Arrays.copyOf(data[i], size * 2);
+
+                    for (int i = 0; i < columnCount; i++)
+                        data[i][size] = extractors[i].extract(set, i + 1);
+                    size++;
                 }
+
+                for (int i = 0; i < columnCount; i++)
+                    data[i] = Arrays.copyOf(data[i], size);
                 set.getStatement().close();
             } catch (SQLException e) {
                 if (db != null)
                     db.logOrThrow("Error iterating through results from table '" + table + "'.", e);
             }
-        return new SelectResults(db, table, columns, condition, order, limit, result);
+        return new SelectResults(db, table, columns, condition, order, limit, data, size);
     }
 
-    private SelectResults(Database db, String table, List<String> columns, QueryCondition condition, QueryOrder order, QueryLimit limit, List<Map<String, Object>> data) {
+    /**
+     * Lazily parse a ResultSet into a stream of rows.<br>
+     * Rows are only read from the ResultSet as the stream is consumed, so memory usage does not depend on the amount of rows.
+     * The statement of the ResultSet is closed once all rows have been read or once the stream is closed,
+     * so streams that may not be fully consumed should be closed, e.g. using try-with-resources.
+     * @param db The Database this ResultSet was created with.
+     * @param table The table this ResultSet contains rows of.
+     * @param set The ResultSet to parse.
+     * @param condition The condition used when getting this ResultSet.
+     * @param order The order in which the rows of this ResultSet are sorted.
+     * @param limit The maximum amount of rows this ResultSet can contain.
+     * @return A stream of the rows in this set.
+     */
+    public static Stream<SelectResultRow> parseStream(Database db, String table, ResultSet set, QueryCondition condition, QueryOrder order, QueryLimit limit) {
+        if (set == null) return Stream.empty();
+
+        List<String> columns = new ArrayList<>();
+        ValueExtractor[] extractors;
+        try {
+            ResultSetMetaData meta = set.getMetaData();
+            extractors = new ValueExtractor[meta.getColumnCount()];
+            for (int i = 0; i < extractors.length; i++) {
+                columns.add(meta.getColumnName(i + 1));
+                extractors[i] = ValueExtractor.of(db, meta, i + 1);
+            }
+        } catch (SQLException e) {
+            closeStatement(set);
+            if (db != null) db.logOrThrow("Error reading metadata of results from table '" + table + "'.", e);
+            return Stream.empty();
+        }
+
+        // Rows are created by an instance without any data so they all still share the same columns.
+        SelectResults results = new SelectResults(db, table, columns, condition, order, limit, new Object[columns.size()][0], 0);
+        class RowSpliterator extends Spliterators.AbstractSpliterator<SelectResultRow> {
+            private boolean done;
+
+            private RowSpliterator() {
+                super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            }
+
+            @Override
+            public boolean tryAdvance(Consumer<? super SelectResultRow> action) {
+                if (done) return false;
+
+                Object[] row = new Object[columns.size()];
+                try {
+                    if (!set.next()) {
+                        close();
+                        return false;
+                    }
+
+                    for (int i = 0; i < row.length; i++)
+                        row[i] = extractors[i].extract(set, i + 1);
+                } catch (SQLException e) {
+                    close();
+                    if (db != null) db.logOrThrow("Error iterating through results from table '" + table + "'.", e);
+                    return false;
+                }
+
+                action.accept(results.new SelectResultRow(row));
+                return true;
+            }
+
+            private void close() {
+                if (done) return;
+
+                done = true;
+                closeStatement(set);
+            }
+        }
+
+        RowSpliterator spliterator = new RowSpliterator();
+        return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
+    }
+
+    private static void closeStatement(ResultSet set) {
+        try {
+            set.getStatement().close();
+        } catch (SQLException ignored) {} // Nothing we can do about it anymore.
+    }
+
+    /**
+     * Reads the value of a single column, chosen once per column rather than once per value.
+     */
+    @FunctionalInterface
+    private interface ValueExtractor {
+        ValueExtractor OBJECT = ResultSet::getObject;
+        ValueExtractor STRING = ResultSet::getString;
+        ValueExtractor BYTES = ResultSet::getBytes;
+        // The primitive getters return 0 or false for NULL, so wasNull is only worth checking in that case.
+        ValueExtractor INT = (set, column) -> {
+            int value = set.getInt(column);
+            return value == 0 && set.wasNull() ? null : value;
+        };
+        ValueExtractor LONG = (set, column) -> {
+            long value = set.getLong(column);
+            return value == 0 && set.wasNull() ? null : value;
+        };
+        ValueExtractor DOUBLE = (set, column) -> {
+            double value = set.getDouble(column);
+            return value == 0 && set.wasNull() ? null : value;
+        };
+        ValueExtractor FLOAT = (set, column) -> {
+            float value = set.getFloat(column);
+            return value == 0 && set.wasNull() ? null : value;
+        };
+        ValueExtractor BOOLEAN = (set, column) -> {
+            boolean value = set.getBoolean(column);
+            return !value && set.wasNull() ? null : value;
+        };
+
+        Object extract(ResultSet set, int column) throws SQLException;
+
+        static ValueExtractor of(Database db, ResultSetMetaData meta, int column) throws SQLException {
+            switch (ValueType.of(db, meta, column)) {
+                case STRING:
+                    return STRING;
+                case BYTES:
+                    return BYTES;
+                case INT:
+                    return INT;
+                case LONG:
+                    return LONG;
+                case DOUBLE:
+                    return DOUBLE;
+                case FLOAT:
+                    return FLOAT;
+                case BOOLEAN:
+                    return BOOLEAN;
+                default:
+                    return OBJECT;
+            }
+        }
+    }
+
+    private SelectResults(Database db, String table, List<String> columns, QueryCondition condition, QueryOrder order, QueryLimit limit, Object[][] data, int size) {
         this.db = db;
         this.table = table;
         this.condition = condition;
         this.order = order;
         this.limit = limit;
         this.columns = Collections.unmodifiableList(columns);
-        this.data = Collections.unmodifiableList(data.stream().map(SelectResultRow::new).collect(Collectors.toList()));
+        this.data = data;
+        this.size = size;
+
+        // When multiple columns share a name, the last one wins, just like it would when putting them in a map.
+        Map<String, Integer> ordinals = new LinkedHashMap<>();
+        for (int i = 0; i < columns.size(); i++)
+            ordinals.put(columns.get(i), i);
+        this.ordinals = Collections.unmodifiableMap(ordinals);
     }
 
     /**
@@ -97,6 +256,19 @@ public class SelectResults extends AbstractList<SelectResults.SelectResultRow> {
         return columns;
     }
 
+    /**
+     * Returns the ordinal of the given column, which can be used to get values
+     * from rows without having to look up the column for every row.
+     * @param column The name of the column
+     * @return The (zero-based) ordinal of the given column
+     * @throws IllegalArgumentException If no column by that name exists
+     */
+    public int getOrdinal(String column) {
+        Integer ordinal = ordinals.get(column);
+        if (ordinal == null) throw new IllegalArgumentException("No column by that name exists.");
+        return ordinal;
+    }
+
     /**
      * @return The condition all rows in these results meet.
      */
@@ -123,17 +295,29 @@ public class SelectResults extends AbstractList<SelectResults.SelectResultRow> {
      * @see #get(int)
      */
     public List<SelectResultRow> getRows() {
-        return data;
+        return this;
     }
 
-    @Override
-    public int size() {
-        return data.size();
+    /**
+     * Maps all rows in these results to instances of the given class.
+     * @param type The class to map rows to
+     * @param <T> The type rows are mapped to
+     * @return The mapped rows
+     * @throws IllegalArgumentException If the given class cannot be mapped to
+     * @see RowMapper
+     */
+    public <T> List<T> mapTo(Class<T> type) {
+        RowMapper<T> mapper = RowMapper.of(type, columns);
+        List<T> objects = new ArrayList<>(size);
+        for (SelectResultRow row : this)
+            objects.add(mapper.map(row));
+
+        return objects;
     }
 
     @Override
-    public boolean contains(Object o) {
-        return data.contains(o);
+    public int size() {
+        return size;
     }
 
     @Override
@@ -141,17 +325,18 @@ public class SelectResults extends AbstractList<SelectResults.SelectResultRow> {
         if (this == o) return true;
         if (!(o instanceof SelectResults)) return false;
         SelectResults that = (SelectResults) o;
-        return getDb().equals(that.getDb()) && getTable().equals(that.getTable()) && getColumns().equals(that.getColumns()) && getRows().equals(that.getRows());
+        return getDb().equals(that.getDb()) && getTable().equals(that.getTable()) && getColumns().equals(that.getColumns()) && super.equals(that);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(getDb(), getTable(), getColumns(), getRows());
+        return Objects.hash(getDb(), getTable(), getColumns(), super.hashCode());
     }
 
     @Override
     public SelectResultRow get(int index) {
-        return data.get(index);
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        return new SelectResultRow(index);
     }
 
     @Override
@@ -162,19 +347,27 @@ public class SelectResults extends AbstractList<SelectResults.SelectResultRow> {
                 ", condition='" + condition + '\'' +
                 ", order='" + order + '\'' +
                 ", columns=" + columns +
-                ", data=" + data +
+                ", data=" + super.toString() +
                 ']';
     }
 
     /**
-     * A row in {@link SelectResults}
+     * A row in {@link SelectResults}.<br>
+     * Rows do not hold any data themselves, they merely point at their values in the results they belong to.
      */
     public class SelectResultRow extends AbstractMap<String, Object> {
+        private final int row;
+        // Only used by rows that were streamed, as they do not belong to any stored results.
+        private final Object[] values;
 
-        private final Map<String, Object> data;
+        private SelectResultRow(int row) {
+            this.row = row;
+            values = null;
+        }
 
-        private SelectResultRow(Map<String, Object> data) {
-            this.data = Collections.unmodifiableMap(data);
+        private SelectResultRow(Object[] values) {
+            row = -1;
+            this.values = values;
         }
 
         /**
@@ -187,86 +380,157 @@ public class SelectResults extends AbstractList<SelectResults.SelectResultRow> {
         @Override
         public String toString() {
             return "SelectResultRow[" +
-                    "data=" + data +
+                    "data=" + super.toString() +
                     ']';
         }
 
         @Override
         public boolean containsKey(Object key) {
-            return key instanceof String && columns.contains(key);
+            return key instanceof String && ordinals.containsKey(key);
         }
 
         @Override
         public Object get(Object column) {
-            if (!(column instanceof String) || !getColumns().contains(column))
-                throw new IllegalArgumentException("No column by that name exists.");
+            if (!(column instanceof String)) throw new IllegalArgumentException("No column by that name exists.");
 
-            return data.get(column);
+            return get(getOrdinal((String) column));
+        }
+
+        /**
+         * @param ordinal The (zero-based) ordinal of the column to get the value of
+         * @return The value in the given column
+         * @see SelectResults#getOrdinal(String)
+         */
+        public Object get(int ordinal) {
+            return values == null ? data[ordinal][row] : values[ordinal];
         }
 
         public String getString(String column) {
-            return (String) get(column);
+            return getString(getOrdinal(column));
+        }
+
+        public String getString(int ordinal) {
+            return (String) get(ordinal);
         }
 
         public UUID getUUID(String column) {
-            return get(column) == null ? null : UUID.fromString(getString(column));
+            return getUUID(getOrdinal(column));
+        }
+
+        public UUID getUUID(int ordinal) {
+            return get(ordinal) == null ? null : UUID.fromString(getString(ordinal));
         }
 
         public Number getNumber(String column) {
-            return (Number) get(column);
+            return getNumber(getOrdinal(column));
+        }
+
+        public Number getNumber(int ordinal) {
+            return (Number) get(ordinal);
         }
 
         public boolean getBoolean(String column) {
-            return (Boolean) get(column);
+            return getBoolean(getOrdinal(column));
+        }
+
+        public boolean getBoolean(int ordinal) {
+            return (Boolean) get(ordinal);
         }
 
         public byte getByte(String column) {
-            return getNumber(column).byteValue();
+            return getByte(getOrdinal(column));
+        }
+
+        public byte getByte(int ordinal) {
+            return getNumber(ordinal).byteValue();
         }
 
         public short getShort(String column) {
-            return getNumber(column).shortValue();
+            return getShort(getOrdinal(column));
+        }
+
+        public short getShort(int ordinal) {
+            return getNumber(ordinal).shortValue();
         }
 
         public int getInt(String column) {
-            return getNumber(column).intValue();
+            return getInt(getOrdinal(column));
+        }
+
+        public int getInt(int ordinal) {
+            return getNumber(ordinal).intValue();
         }
 
         public long getLong(String column) {
-            return getNumber(column).longValue();
+            return getLong(getOrdinal(column));
+        }
+
+        public long getLong(int ordinal) {
+            return getNumber(ordinal).longValue();
         }
 
         public float getFloat(String column) {
-            return getNumber(column).floatValue();
+            return getFloat(getOrdinal(column));
+        }
+
+        public float getFloat(int ordinal) {
+            return getNumber(ordinal).floatValue();
         }
 
         public double getDouble(String column) {
-            return getNumber(column).doubleValue();
+            return getDouble(getOrdinal(column));
+        }
+
+        public double getDouble(int ordinal) {
+            return getNumber(ordinal).doubleValue();
         }
 
         public Timestamp getTimestamp(String column) {
+            return getTimestamp(getOrdinal(column));
+        }
+
+        public Timestamp getTimestamp(int ordinal) {
             // If it's not a Timestamp or String, you're probably doing something wrong.
             // (SQLite likes to send these as a String instead, and I'm assuming that goes for the following types too)
-            return get(column) instanceof Timestamp || get(column) == null ? (Timestamp) get(column) : Timestamp.valueOf(getString(column));
+            Object value = get(ordinal);
+            return value instanceof Timestamp || value == null ? (Timestamp) value : Timestamp.valueOf((String) value);
         }
 
         public Date getDate(String column) {
-            return get(column) instanceof Date || get(column) == null ? (Date) get(column) : Date.valueOf(getString(column));
+            return getDate(getOrdinal(column));
+        }
+
+        public Date getDate(int ordinal) {
+            Object value = get(ordinal);
+            return value instanceof Date || value == null ? (Date) value : Date.valueOf((String) value);
         }
 
         public Time getTime(String column) {
-            return get(column) instanceof Time || get(column) == null ? (Time) get(column) : Time.valueOf(getString(column));
+            return getTime(getOrdinal(column));
+        }
+
+        public Time getTime(int ordinal) {
+            Object value = get(ordinal);
+            return value instanceof Time || value == null ? (Time) value : Time.valueOf((String) value);
         }
 
         public byte[] getByteArray(String column) {
+            return getByteArray(getOrdinal(column));
+        }
+
+        public byte[] getByteArray(int ordinal) {
             // I believe BLOB type columns are returned this way.
             // And I know geometry types are.
-            return (byte[]) get(column);
+            return (byte[]) get(ordinal);
         }
 
         public Blob getBlob(String column) {
+            return getBlob(getOrdinal(column));
+        }
+
+        public Blob getBlob(int ordinal) {
             // Don't actually know if MySQL or SQLite uses this, but in case they do, here you go.
-            return (Blob) get(column);
+            return (Blob) get(ordinal);
         }
 
         /**
@@ -277,15 +541,48 @@ public class SelectResults extends AbstractList<SelectResults.SelectResultRow> {
          * @return The object in this column.
          */
         public <T> T get(String column, Class<T> type) {
-            Object val = get(column);
+            return get(getOrdinal(column), type);
+        }
+
+        /**
+         * Returns a type registered using {@link Database#registerTypeConverter(Class, Function, Function)}.
+         * @param ordinal The (zero-based) ordinal of the column to get the object from.
+         * @param type The class of the object.
+         * @param <T> The generic type of the object.
+         * @return The object in this column.
+         */
+        public <T> T get(int ordinal, Class<T> type) {
+            Object val = get(ordinal);
 
-            return val == null ? null : type.isInstance(val) ? type.cast(val) : Database.getFromString(getString(column), type);
+            return val == null ? null : type.isInstance(val) ? type.cast(val) : Database.getFromString(getString(ordinal), type);
         }
 
         @NotNull
         @Override
         public Set<Entry<String, Object>> entrySet() {
-            return data.entrySet();
+            return new AbstractSet<Entry<String, Object>>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    Iterator<Entry<String, Integer>> iterator = ordinals.entrySet().iterator();
+                    return new Iterator<Entry<String, Object>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return iterator.hasNext();
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+                            Entry<String, Integer> entry = iterator.next();
+                            return new SimpleImmutableEntry<>(entry.getKey(), get((int) entry.getValue()));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return ordinals.size();
+                }
+            };
         }
     }
 }
@@ -0,0 +1,107 @@
+package com.ptsmods.mysqlw.query;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Makes sure a call is only running once per key at a time.<br>
+ * Callers that call with a key while a call with that key is still running wait for that call
+ * and get its result rather than making the call themselves. Once a call has finished, the next call with
+ * its key runs again, results are never cached.
+ * @param <K> The type of the keys calls are identified by
+ * @param <V> The type of the results of calls, these are shared between callers and should thus be immutable
+ * @see com.ptsmods.mysqlw.Database#setSingleFlight(boolean)
+ */
+public class SingleFlight<K, V> {
+    private final Map<K, CompletableFuture<V>> calls = new ConcurrentHashMap<>();
+    private final LongAdder shared = new LongAdder();
+
+    /**
+     * Runs the given call, unless a call with the same key is already running, in which case its result is returned instead.
+     * @param key The key identifying the call
+     * @param call The call to run
+     * @return The result of either the given call or the call that was already running
+     */
+    public V execute(K key, Supplier<V> call) {
+        return execute(key, call, Long.MAX_VALUE, () -> false);
+    }
+
+    /**
+     * Runs the given call, unless a call with the same key is already running, in which case its result is returned instead.<br>
+     * Waiting for a running call takes at most the given amount of time. If the running call turns out to have been abandoned,
+     * e.g. because whoever made it cancelled it, its result is not shared and the given call is run instead.
+     * @param key The key identifying the call
+     * @param call The call to run
+     * @param timeout The maximum amount of nanoseconds to wait for a call that is already running, {@link Long#MAX_VALUE} to wait indefinitely
+     * @param abandoned Checked once the given call has finished, whether it was abandoned and its result should thus not be shared
+     * @return The result of either the given call or the call that was already running
+     * @throws CompletionException With a {@link TimeoutException} as cause if the running call took longer than the given timeout
+     */
+    public V execute(K key, Supplier<V> call, long timeout, BooleanSupplier abandoned) {
+        long deadline = System.nanoTime() + timeout;
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> running;
+        while ((running = calls.putIfAbsent(key, future)) != null) {
+            shared.increment();
+            try {
+                if (timeout == Long.MAX_VALUE) return running.join();
+                return running.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (CompletionException | ExecutionException e) {
+                // The call that was running was abandoned, the next caller runs it again.
+                if (e.getCause() instanceof AbandonedException) continue;
+
+                // Rethrow whatever the call threw, as if it was called by this caller too.
+                if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+                if (e.getCause() instanceof Error) throw (Error) e.getCause();
+                throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(e.getCause());
+            } catch (TimeoutException e) {
+                throw new CompletionException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+        }
+
+        try {
+            V result = call.get();
+            if (abandoned.getAsBoolean()) future.completeExceptionally(AbandonedException.INSTANCE);
+            else future.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(abandoned.getAsBoolean() ? AbandonedException.INSTANCE : e);
+            throw e;
+        } finally {
+            calls.remove(key, future);
+        }
+    }
+
+    /**
+     * @return The amount of calls currently running
+     */
+    public int getRunningCount() {
+        return calls.size();
+    }
+
+    /**
+     * @return The amount of times a caller got the result of a call that was already running instead of running it themselves
+     */
+    public long getSharedCount() {
+        return shared.sum();
+    }
+
+    private static final class AbandonedException extends RuntimeException {
+        private static final AbandonedException INSTANCE = new AbandonedException();
+
+        private AbandonedException() {
+            super(null, null, false, false);
+        }
+    }
+}
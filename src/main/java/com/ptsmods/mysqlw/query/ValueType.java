@@ -0,0 +1,43 @@
+package com.ptsmods.mysqlw.query;
+
+import com.ptsmods.mysqlw.Database;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * How the values of a column of a {@link java.sql.ResultSet} are read, chosen once per column rather than once per value.
+ * Shared by {@link SelectResults}, which boxes the values it reads, and {@link ResultExporter}, which writes them straight away.
+ */
+enum ValueType {
+    OBJECT, STRING, BYTES, INT, LONG, DOUBLE, FLOAT, BOOLEAN;
+
+    static ValueType of(Database db, ResultSetMetaData meta, int column) throws SQLException {
+        // SQLite is dynamically typed, any value in a column can be of any type.
+        // Getting them as objects is the only way to get them as they were stored.
+        if (db == null || db.getType() != Database.RDBMS.MySQL) return OBJECT;
+
+        // The class of the objects getObject would return, so the exact same values are read, only faster.
+        String className = meta.getColumnClassName(column);
+        if (className == null) return OBJECT;
+
+        switch (className) {
+            case "java.lang.String":
+                return STRING;
+            case "[B":
+                return BYTES;
+            case "java.lang.Integer":
+                return INT;
+            case "java.lang.Long":
+                return LONG;
+            case "java.lang.Double":
+                return DOUBLE;
+            case "java.lang.Float":
+                return FLOAT;
+            case "java.lang.Boolean":
+                return BOOLEAN;
+            default:
+                return OBJECT;
+        }
+    }
+}
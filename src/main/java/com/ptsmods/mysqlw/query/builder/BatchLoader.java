@@ -0,0 +1,191 @@
+package com.ptsmods.mysqlw.query.builder;
+
+import com.ptsmods.mysqlw.Database;
+import com.ptsmods.mysqlw.query.QueryCondition;
+import com.ptsmods.mysqlw.query.SelectResults;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Batches lookups of rows by key that happen around the same time into a single {@code SELECT ... WHERE key IN (...)} query.<br>
+ * Each lookup waits at most {@link BatchLoaderOptions#getMaxDelay() maxDelay} milliseconds for other lookups to join it,
+ * after which all pending keys are looked up at once and the found rows are handed back to the lookups that asked for them.
+ * Under load, this turns many round trips into a single one.
+ * @see com.ptsmods.mysqlw.Database#batchLoader(String, String, CharSequence...)
+ */
+public class BatchLoader {
+    private final Database db;
+    private final String table;
+    private final String keyColumn;
+    private final CharSequence[] columns;
+    private final BatchLoaderOptions options;
+    private Map<Object, PendingKey> pending = new LinkedHashMap<>();
+    private boolean dispatchScheduled;
+
+    /**
+     * @param db The database to look rows up in
+     * @param table The table to look rows up in
+     * @param keyColumn The column to look rows up by
+     * @param columns The columns to select, the key column is added if it is not among them
+     * @param options The options determining when batches are sent
+     */
+    public BatchLoader(Database db, String table, String keyColumn, CharSequence[] columns, BatchLoaderOptions options) {
+        if (options.getMaxBatchSize() < 1) throw new IllegalArgumentException("The maximum batch size must be at least 1.");
+
+        this.db = db;
+        this.table = table;
+        this.keyColumn = keyColumn;
+        this.options = options;
+
+        // The key column is required to know which rows belong to which lookup.
+        boolean selectsKey = false;
+        for (CharSequence column : columns)
+            if ("*".contentEquals(column) || keyColumn.contentEquals(column)) selectsKey = true;
+
+        if (selectsKey) this.columns = columns.clone();
+        else {
+            this.columns = Arrays.copyOf(columns, columns.length + 1);
+            this.columns[columns.length] = keyColumn;
+        }
+    }
+
+    /**
+     * Looks up the row with the given key.
+     * @param key The value of the key column of the row to look up
+     * @return A {@link CompletableFuture} containing the first row found with the given key, or null if none was found
+     */
+    public CompletableFuture<SelectResults.SelectResultRow> load(Object key) {
+        return loadAll(key).thenApply(rows -> rows.isEmpty() ? null : rows.get(0));
+    }
+
+    /**
+     * Looks up all rows with the given key.
+     * @param key The value of the key column of the rows to look up
+     * @return A {@link CompletableFuture} containing all rows found with the given key
+     */
+    public CompletableFuture<List<SelectResults.SelectResultRow>> loadAll(Object key) {
+        if (key == null) throw new IllegalArgumentException("Rows cannot be looked up by a null key.");
+
+        CompletableFuture<List<SelectResults.SelectResultRow>> future = new CompletableFuture<>();
+        Map<Object, PendingKey> batch = null;
+        synchronized (this) {
+            // Lookups of the same key share their place in the batch.
+            pending.computeIfAbsent(normalise(key), k -> new PendingKey(key)).futures.add(future);
+
+            if (pending.size() >= options.getMaxBatchSize()) {
+                batch = pending;
+                pending = new LinkedHashMap<>();
+            } else if (!dispatchScheduled) {
+                dispatchScheduled = true;
+                Scheduler.schedule(this::dispatch, options.getMaxDelay());
+            }
+        }
+
+        if (batch != null) send(batch);
+        return future;
+    }
+
+    /**
+     * Looks up the rows with the given keys.
+     * @param keys The keys to look up
+     * @return A {@link CompletableFuture} containing the first row found for each key, or null for keys without rows, in the order of the given keys
+     */
+    public CompletableFuture<List<SelectResults.SelectResultRow>> loadMany(Collection<?> keys) {
+        List<CompletableFuture<SelectResults.SelectResultRow>> futures = new ArrayList<>();
+        for (Object key : keys) futures.add(load(key));
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(v -> {
+            List<SelectResults.SelectResultRow> rows = new ArrayList<>(futures.size());
+            for (CompletableFuture<SelectResults.SelectResultRow> future : futures) rows.add(future.join());
+            return rows;
+        });
+    }
+
+    /**
+     * @return The amount of distinct keys waiting to be looked up
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Immediately sends all pending lookups rather than waiting for more to join them.
+     */
+    public void dispatch() {
+        Map<Object, PendingKey> batch;
+        synchronized (this) {
+            dispatchScheduled = false;
+            if (pending.isEmpty()) return;
+
+            batch = pending;
+            pending = new LinkedHashMap<>();
+        }
+
+        send(batch);
+    }
+
+    private void send(Map<Object, PendingKey> batch) {
+        try {
+            db.runReadAsync(() -> execute(batch));
+        } catch (RejectedExecutionException e) {
+            batch.values().forEach(key -> key.fail(e));
+        }
+    }
+
+    private void execute(Map<Object, PendingKey> batch) {
+        try {
+            Object[] keys = batch.values().stream().map(key -> key.key).toArray();
+            SelectResults results = db.selectBuilder(table)
+                    .select(columns)
+                    .where(QueryCondition.in(keyColumn, keys))
+                    .execute();
+
+            Map<Object, List<SelectResults.SelectResultRow>> rows = new HashMap<>();
+            if (!results.isEmpty()) {
+                int ordinal = results.getOrdinal(keyColumn);
+                for (SelectResults.SelectResultRow row : results)
+                    rows.computeIfAbsent(normalise(row.get(ordinal)), k -> new ArrayList<>()).add(row);
+            }
+
+            batch.forEach((key, pendingKey) -> {
+                List<SelectResults.SelectResultRow> found = Collections.unmodifiableList(rows.getOrDefault(key, Collections.emptyList()));
+                pendingKey.futures.forEach(future -> future.complete(found));
+            });
+        } catch (RuntimeException e) {
+            batch.values().forEach(key -> key.fail(e));
+        }
+    }
+
+    // Databases do not necessarily return keys as the same type they were looked up with, e.g. a Long for an Integer.
+    private static Object normalise(Object key) {
+        if (key instanceof Number) {
+            try {
+                return new BigDecimal(key.toString()).stripTrailingZeros();
+            } catch (NumberFormatException e) {
+                return key; // NaN or infinity
+            }
+        }
+        if (key instanceof byte[]) return ByteBuffer.wrap((byte[]) key);
+        if (key instanceof Boolean) return (Boolean) key ? BigDecimal.ONE : BigDecimal.ZERO;
+        if (key instanceof Character || key instanceof UUID) return key.toString();
+
+        return key;
+    }
+
+    private static final class PendingKey {
+        private final Object key;
+        private final List<CompletableFuture<List<SelectResults.SelectResultRow>>> futures = new ArrayList<>(1);
+
+        private PendingKey(Object key) {
+            this.key = key;
+        }
+
+        private void fail(Throwable t) {
+            futures.forEach(future -> future.completeExceptionally(t));
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.ptsmods.mysqlw.query.builder;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Settings used to configure a {@link BatchLoader}.<br>
+ * A batch is sent as soon as either of its limits is reached.
+ * @see com.ptsmods.mysqlw.Database#batchLoader(String, String, CharSequence...)
+ */
+@Getter
+@Builder(builderClassName = "Builder")
+public class BatchLoaderOptions {
+    /**
+     * The maximum amount of keys looked up in a single query.
+     */
+    @lombok.Builder.Default
+    private final int maxBatchSize = 500;
+    /**
+     * The maximum amount of milliseconds a lookup may wait for other lookups to be batched with.
+     */
+    @lombok.Builder.Default
+    private final long maxDelay = 2;
+
+    /**
+     * @return BatchLoaderOptions with all default values
+     */
+    public static BatchLoaderOptions defaults() {
+        return builder().build();
+    }
+}
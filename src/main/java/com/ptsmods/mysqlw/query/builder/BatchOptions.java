@@ -0,0 +1,38 @@
+package com.ptsmods.mysqlw.query.builder;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Settings used to configure how rows are split into chunks when executing in batch mode.<br>
+ * A chunk is closed as soon as either of its limits is reached, but always contains at least one row.
+ * @see InsertBuilder#executeBatch(BatchOptions)
+ */
+@Getter
+@Builder(builderClassName = "Builder")
+public class BatchOptions {
+    /**
+     * The maximum amount of rows in a single chunk.
+     */
+    @lombok.Builder.Default
+    private final int maxRows = 1000;
+    /**
+     * The (estimated) maximum amount of bytes the values of a single chunk may take up.
+     * Should stay well below MySQL's {@code max_allowed_packet}.
+     */
+    @lombok.Builder.Default
+    private final long maxBytes = 1024 * 1024;
+    /**
+     * Whether all chunks should be executed in a single transaction, so either all rows are inserted or none are.
+     * This also greatly speeds up inserting on SQLite.
+     */
+    @lombok.Builder.Default
+    private final boolean transactional = true;
+
+    /**
+     * @return BatchOptions with all default values
+     */
+    public static BatchOptions defaults() {
+        return builder().build();
+    }
+}
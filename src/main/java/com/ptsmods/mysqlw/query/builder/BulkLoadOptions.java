@@ -0,0 +1,108 @@
+package com.ptsmods.mysqlw.query.builder;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Settings used to configure a {@link BulkLoader}.<br>
+ * Rows are loaded in chunks, a chunk is closed as soon as either of its limits is reached, but always contains at least one row.
+ * Only a single chunk is kept in memory at a time.
+ * @see com.ptsmods.mysqlw.Database#bulkLoader(String, BulkLoadOptions, String...)
+ */
+@Getter
+@Builder(builderClassName = "Builder")
+public class BulkLoadOptions {
+    /**
+     * The maximum amount of rows in a single chunk.
+     */
+    @lombok.Builder.Default
+    private final int maxRows = 10_000;
+    /**
+     * The (estimated) maximum amount of bytes the values of a single chunk may take up.
+     * Should stay well below MySQL's {@code max_allowed_packet}.
+     */
+    @lombok.Builder.Default
+    private final long maxBytes = 8 * 1024 * 1024;
+    /**
+     * Whether to load chunks into MySQL with {@code LOAD DATA LOCAL INFILE} rather than with batched inserts.
+     * This requires MySQL Connector/J and {@code local_infile} to be enabled on both the client and the server,
+     * if either is not the case, batched inserts are used instead.<br>
+     * Connections are not made with {@code allowLoadLocalInfile=true} by default, as it allows the server to read any file
+     * the client can read. To enable it, set it on {@link com.ptsmods.mysqlw.Database.RDBMS#getConnectionProperties()}
+     * of {@link com.ptsmods.mysqlw.Database.RDBMS#MySQL MySQL} before connecting.
+     */
+    @lombok.Builder.Default
+    private final boolean loadData = true;
+    /**
+     * What to do with rows that have the same primary or unique key as a row that already exists.
+     */
+    @lombok.Builder.Default
+    private final Duplicates duplicates = Duplicates.FAIL;
+    /**
+     * The format of delimited text loaded with {@link BulkLoader#load(java.io.InputStream)}.
+     */
+    @lombok.Builder.Default
+    private final Format format = Format.CSV;
+    /**
+     * The charset of delimited text loaded with {@link BulkLoader#load(java.io.InputStream)}.
+     */
+    @lombok.Builder.Default
+    private final Charset charset = StandardCharsets.UTF_8;
+    /**
+     * Whether the first line of delimited text is a header to skip.
+     */
+    @lombok.Builder.Default
+    private final boolean skipHeader = false;
+    /**
+     * Called after every chunk that has been loaded, may be null.
+     */
+    @lombok.Builder.Default
+    private final Consumer<BulkLoadProgress> progressListener = null;
+
+    /**
+     * @return BulkLoadOptions with all default values
+     */
+    public static BulkLoadOptions defaults() {
+        return builder().build();
+    }
+
+    /**
+     * The ways rows with a key that already exists can be handled.
+     */
+    public enum Duplicates {
+        /**
+         * Fails the chunk the row is in, which is then rolled back.
+         */
+        FAIL,
+        /**
+         * Skips the row.
+         */
+        IGNORE,
+        /**
+         * Replaces the existing row with it.
+         */
+        REPLACE
+    }
+
+    /**
+     * The formats of delimited text that can be loaded.
+     */
+    public enum Format {
+        /**
+         * Comma-separated values as described in RFC 4180.
+         * Values may be quoted with double quotes, in which case they may contain commas, line breaks and
+         * doubled double quotes. Empty values that are not quoted are loaded as null.
+         */
+        CSV,
+        /**
+         * Tab-separated values.
+         * Tabs, line breaks and backslashes in values are escaped with a backslash ({@code \t}, {@code \n}, {@code \r}, {@code \\})
+         * and {@code \N} represents null, as written by MySQL's {@code SELECT ... INTO OUTFILE}.
+         */
+        TSV
+    }
+}
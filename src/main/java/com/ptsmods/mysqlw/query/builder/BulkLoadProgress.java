@@ -0,0 +1,57 @@
+package com.ptsmods.mysqlw.query.builder;
+
+/**
+ * The progress of a {@link BulkLoader}, passed to its {@link BulkLoadOptions#getProgressListener() progress listener}
+ * after every chunk and returned once all rows have been loaded.
+ */
+public class BulkLoadProgress {
+    private final String table;
+    private final long rows, chunks, elapsedNanos;
+
+    BulkLoadProgress(String table, long rows, long chunks, long elapsedNanos) {
+        this.table = table;
+        this.rows = rows;
+        this.chunks = chunks;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return The table rows are loaded into
+     */
+    public String getTable() {
+        return table;
+    }
+
+    /**
+     * @return The amount of rows loaded so far
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * @return The amount of chunks loaded so far
+     */
+    public long getChunks() {
+        return chunks;
+    }
+
+    /**
+     * @return The amount of milliseconds that have passed since loading started
+     */
+    public long getElapsed() {
+        return elapsedNanos / 1_000_000;
+    }
+
+    /**
+     * @return The average amount of rows loaded per second so far
+     */
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : rows * 1_000_000_000d / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BulkLoadProgress{table=%s, rows=%d, chunks=%d, elapsed=%dms, rowsPerSecond=%.1f}", table, rows, chunks, getElapsed(), getRowsPerSecond());
+    }
+}
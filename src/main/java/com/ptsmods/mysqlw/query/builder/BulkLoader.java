@@ -0,0 +1,388 @@
+package com.ptsmods.mysqlw.query.builder;
+
+import com.ptsmods.mysqlw.Database;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/**
+ * Streams large amounts of rows into a single table.<br>
+ * Unlike {@link Database#insert(String, String[], List)}, rows are never all held in memory at once. They are read
+ * chunk by chunk (see {@link BulkLoadOptions}) and each chunk is loaded and committed before the next is read.
+ * On MySQL, chunks are sent with {@code LOAD DATA LOCAL INFILE} from memory where possible,
+ * anywhere else they are sent as batches of prepared inserts. Rows with a key that already exists are handled
+ * as {@link BulkLoadOptions#getDuplicates() configured} either way.<br>
+ * Every chunk is loaded in a {@link Database#transaction(java.util.function.Function) transaction} of its own. If a chunk fails to load,
+ * it is rolled back, but chunks loaded before it stay committed. If loading is started within a transaction,
+ * every chunk is a nested transaction and committing is left to the transaction loading was started in.
+ * @see Database#bulkLoader(String, BulkLoadOptions, String...)
+ */
+public class BulkLoader {
+    private final Database db;
+    private final String table;
+    private final String[] columns;
+    private final BulkLoadOptions options;
+    private final InsertBuilder inserter;
+    private final BatchOptions batchOptions;
+    private volatile boolean loadDataAvailable;
+
+    /**
+     * @param db The database to load rows into
+     * @param table The table to load rows into
+     * @param columns The columns values are loaded into, in the order they appear in each row
+     * @param options The options determining the size of chunks and how they are loaded
+     */
+    public BulkLoader(Database db, String table, String[] columns, BulkLoadOptions options) {
+        if (columns.length == 0) throw new IllegalArgumentException("Cannot load rows without any columns.");
+        if (options.getMaxRows() < 1) throw new IllegalArgumentException("The maximum amount of rows per chunk must be at least 1.");
+
+        this.db = db;
+        this.table = table;
+        this.columns = columns.clone();
+        this.options = options;
+        inserter = InsertBuilder.create(db, table, columns);
+        // Chunks are already limited by the options of this loader and each is loaded in a transaction of its own.
+        batchOptions = BatchOptions.builder().maxRows(Integer.MAX_VALUE).maxBytes(Long.MAX_VALUE).transactional(false).build();
+        loadDataAvailable = options.isLoadData() && db.getType() == Database.RDBMS.MySQL;
+    }
+
+    /**
+     * Loads all rows the given iterator returns.
+     * @param rows The rows to load, each containing a value for every column of this loader
+     * @return The progress after loading the last row
+     * @throws IllegalArgumentException If a row does not have a value for every column
+     */
+    public BulkLoadProgress load(Iterator<Object[]> rows) {
+        long start = System.nanoTime();
+        long loaded = 0, chunks = 0;
+
+        List<Object[]> chunk = new ArrayList<>();
+        try {
+            while (rows.hasNext()) {
+                readChunk(rows, chunk);
+
+                Integer count = Transactions.run(db, true, connection -> loadChunk(connection, chunk));
+                if (count == null) break; // Error has already been logged.
+
+                loaded += count;
+                chunks++;
+                db.invalidateCache(table);
+                if (options.getProgressListener() != null)
+                    options.getProgressListener().accept(new BulkLoadProgress(table, loaded, chunks, System.nanoTime() - start));
+            }
+        } catch (SQLException e) {
+            db.logOrThrow("Error bulk loading into table " + table + " after " + loaded + " rows.", e);
+        }
+
+        return new BulkLoadProgress(table, loaded, chunks, System.nanoTime() - start);
+    }
+
+    /**
+     * Loads all rows in the given stream and closes it afterwards.
+     * @param rows The rows to load, each containing a value for every column of this loader
+     * @return The progress after loading the last row
+     * @see #load(Iterator)
+     */
+    public BulkLoadProgress load(Stream<Object[]> rows) {
+        try (Stream<Object[]> stream = rows) {
+            return load(stream.iterator());
+        }
+    }
+
+    /**
+     * Parses the given stream as delimited text in the {@link BulkLoadOptions#getFormat() configured format}
+     * and loads every line as a row. Values are loaded as Strings and converted by the database.
+     * The stream is read as rows are loaded and closed afterwards.
+     * @param in The stream of delimited text to load
+     * @return The progress after loading the last row
+     * @throws IllegalArgumentException If a line does not have a value for every column
+     * @throws UncheckedIOException If the stream could not be read
+     * @see #load(Iterator)
+     */
+    public BulkLoadProgress load(InputStream in) {
+        try (DelimitedReader reader = new DelimitedReader(new BufferedReader(new InputStreamReader(in, options.getCharset())), options.getFormat())) {
+            if (options.isSkipHeader() && reader.hasNext()) reader.next();
+            return load(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * {@link #load(Iterator)} but asynchronous.
+     * @param rows The rows to load, each containing a value for every column of this loader
+     * @return A {@link CompletableFuture} containing the progress after loading the last row
+     */
+    public CompletableFuture<BulkLoadProgress> loadAsync(Iterator<Object[]> rows) {
+        return db.runAsync(() -> load(rows));
+    }
+
+    /**
+     * {@link #load(Stream)} but asynchronous.
+     * @param rows The rows to load, each containing a value for every column of this loader
+     * @return A {@link CompletableFuture} containing the progress after loading the last row
+     */
+    public CompletableFuture<BulkLoadProgress> loadAsync(Stream<Object[]> rows) {
+        return db.runAsync(() -> load(rows));
+    }
+
+    /**
+     * {@link #load(InputStream)} but asynchronous.
+     * @param in The stream of delimited text to load
+     * @return A {@link CompletableFuture} containing the progress after loading the last row
+     */
+    public CompletableFuture<BulkLoadProgress> loadAsync(InputStream in) {
+        return db.runAsync(() -> load(in));
+    }
+
+    /**
+     * @return The table rows are loaded into
+     */
+    public String getTable() {
+        return table;
+    }
+
+    /**
+     * @return The options this loader was created with
+     */
+    public BulkLoadOptions getOptions() {
+        return options;
+    }
+
+    private void readChunk(Iterator<Object[]> rows, List<Object[]> chunk) {
+        chunk.clear();
+        long bytes = 0;
+        while (rows.hasNext() && chunk.size() < options.getMaxRows() && (chunk.isEmpty() || bytes < options.getMaxBytes())) {
+            Object[] row = rows.next();
+            if (row.length != columns.length)
+                throw new IllegalArgumentException("Row " + Arrays.toString(row) + " has " + row.length + " values, but " + columns.length + " columns are being loaded.");
+
+            chunk.add(row);
+            bytes += InsertBuilder.estimateSize(row);
+        }
+    }
+
+    private int loadChunk(Connection connection, List<Object[]> chunk) throws SQLException {
+        if (loadDataAvailable && chunk.stream().allMatch(BulkLoader::isPlain))
+            try {
+                return loadData(connection, chunk);
+            } catch (SQLException e) {
+                if (!isLocalInfileDisabled(e)) throw e;
+                // Not allowed by either the client or the server, there's no point in trying again.
+                loadDataAvailable = false;
+            } catch (ReflectiveOperationException e) {
+                loadDataAvailable = false; // Not using Connector/J.
+            }
+
+        return insert(connection, chunk);
+    }
+
+    private int loadData(Connection connection, List<Object[]> chunk) throws SQLException, ReflectiveOperationException {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        for (Object[] row : chunk) {
+            for (int i = 0; i < row.length; i++) {
+                if (i > 0) data.write('\t');
+                writeLoadDataValue(data, row[i]);
+            }
+            data.write('\n');
+        }
+
+        try (Statement statement = db.applyTimeout(connection.createStatement())) {
+            // The file name is ignored when an input stream is set.
+            Object mysqlStatement = statement.unwrap(Class.forName("com.mysql.cj.jdbc.JdbcStatement"));
+            mysqlStatement.getClass().getMethod("setLocalInfileInputStream", InputStream.class)
+                    .invoke(mysqlStatement, new ByteArrayInputStream(data.toByteArray()));
+
+            int count = statement.executeUpdate("LOAD DATA LOCAL INFILE 'stream' " + (options.getDuplicates() == BulkLoadOptions.Duplicates.REPLACE ? "REPLACE" : "IGNORE") +
+                    " INTO TABLE " + Database.engrave(table) + " CHARACTER SET utf8mb4 FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\' LINES TERMINATED BY '\\n' (`" +
+                    String.join("`, `", columns) + "`);");
+
+            // Unless REPLACE is given, LOCAL always skips duplicates and merely reports them as warnings.
+            if (options.getDuplicates() == BulkLoadOptions.Duplicates.FAIL)
+                for (SQLWarning warning = statement.getWarnings(); warning != null; warning = warning.getNextWarning())
+                    if (warning.getErrorCode() == 1062) throw new SQLIntegrityConstraintViolationException(warning.getMessage(), warning.getSQLState(), warning.getErrorCode());
+
+            return count;
+        }
+    }
+
+    private static void writeLoadDataValue(ByteArrayOutputStream data, Object value) {
+        if (value == null) {
+            data.write('\\');
+            data.write('N');
+            return;
+        }
+
+        String s = value instanceof Boolean ? (Boolean) value ? "1" : "0" : value.toString();
+        StringBuilder escaped = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '\\': escaped.append("\\\\"); break;
+                case '\t': escaped.append("\\t"); break;
+                case '\n': escaped.append("\\n"); break;
+                case '\r': escaped.append("\\r"); break;
+                case '\0': escaped.append("\\0"); break;
+                default: escaped.append(c);
+            }
+        }
+
+        byte[] bytes = escaped.toString().getBytes(StandardCharsets.UTF_8);
+        data.write(bytes, 0, bytes.length);
+    }
+
+    // Values that are inlined into queries or are binary cannot be represented in the text sent with LOAD DATA.
+    private static boolean isPlain(Object[] row) {
+        List<Object> parameters = new ArrayList<>(1);
+        for (Object value : row)
+            if (value instanceof byte[] || !"?".equals(Database.getAsParameter(value, parameters))) return false;
+
+        return true;
+    }
+
+    private static boolean isLocalInfileDisabled(SQLException e) {
+        // 1148 is returned by older servers, 3948 by newer ones, Connector/J itself returns a message without a code.
+        return e.getErrorCode() == 1148 || e.getErrorCode() == 3948 ||
+                e.getMessage() != null && e.getMessage().toLowerCase(Locale.ROOT).contains("local data is disabled");
+    }
+
+    private int insert(Connection connection, List<Object[]> chunk) throws SQLException {
+        switch (options.getDuplicates()) {
+            case IGNORE:
+                return InsertBuilder.sum(inserter.executeChunks(connection, "INSERT", inserter.buildIgnoreClause(), chunk, batchOptions));
+            case REPLACE:
+                return InsertBuilder.sum(inserter.executeChunks(connection, "REPLACE", "", chunk, batchOptions));
+            default:
+                return InsertBuilder.sum(inserter.executeChunks(connection, "INSERT", "", chunk, batchOptions));
+        }
+    }
+
+    /**
+     * Lazily parses delimited text into rows, one line (or quoted multi-line value) at a time.
+     */
+    private static final class DelimitedReader implements Iterator<Object[]>, Closeable {
+        private final Reader reader;
+        private final BulkLoadOptions.Format format;
+        private final List<Object> values = new ArrayList<>();
+        private final StringBuilder value = new StringBuilder();
+        private Object[] next;
+        private long line = 1;
+
+        private DelimitedReader(Reader reader, BulkLoadOptions.Format format) {
+            this.reader = reader;
+            this.format = format;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null)
+                try {
+                    next = format == BulkLoadOptions.Format.CSV ? readCsv() : readTsv();
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Error reading line " + line + ".", e);
+                }
+
+            return next != null;
+        }
+
+        @Override
+        public Object[] next() {
+            if (!hasNext()) throw new NoSuchElementException();
+
+            Object[] row = next;
+            next = null;
+            return row;
+        }
+
+        private Object[] readCsv() throws IOException {
+            int c = reader.read();
+            if (c == -1) return null;
+
+            values.clear();
+            boolean quoted = false;
+            while (true) {
+                if (c == '"') {
+                    // A quoted value, which ends at the first quote that is not followed by another quote.
+                    quoted = true;
+                    while (true) {
+                        c = reader.read();
+                        if (c == -1) throw new IllegalArgumentException("Unterminated quoted value on line " + line + ".");
+                        if (c == '"') {
+                            c = reader.read();
+                            if (c != '"') break;
+                        } else if (c == '\n') line++;
+                        value.append((char) c);
+                    }
+                    continue;
+                }
+
+                if (c == ',' || c == '\n' || c == '\r' || c == -1) {
+                    values.add(value.length() == 0 && !quoted ? null : value.toString());
+                    value.setLength(0);
+                    quoted = false;
+
+                    if (c == ',') {
+                        c = reader.read();
+                        continue;
+                    }
+
+                    if (c == '\r') {
+                        reader.mark(1);
+                        if (reader.read() != '\n') reader.reset();
+                    }
+                    line++;
+                    return values.toArray();
+                }
+
+                value.append((char) c);
+                c = reader.read();
+            }
+        }
+
+        private Object[] readTsv() throws IOException {
+            int c = reader.read();
+            if (c == -1) return null;
+
+            values.clear();
+            boolean isNull = false;
+            while (true) {
+                if (c == '\\') {
+                    c = reader.read();
+                    switch (c) {
+                        case 't': value.append('\t'); break;
+                        case 'n': value.append('\n'); break;
+                        case 'r': value.append('\r'); break;
+                        case '0': value.append('\0'); break;
+                        case 'N': isNull = true; break;
+                        case -1: throw new IllegalArgumentException("Unterminated escape sequence on line " + line + ".");
+                        default: value.append((char) c);
+                    }
+                } else if (c == '\t' || c == '\n' || c == '\r' || c == -1) {
+                    values.add(isNull ? null : value.toString());
+                    value.setLength(0);
+                    isNull = false;
+
+                    if (c != '\t') {
+                        if (c == '\r') {
+                            reader.mark(1);
+                            if (reader.read() != '\n') reader.reset();
+                        }
+                        line++;
+                        return values.toArray();
+                    }
+                } else value.append((char) c);
+
+                c = reader.read();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.ptsmods.mysqlw.query.builder;
+
+import com.ptsmods.mysqlw.Database;
+import com.ptsmods.mysqlw.executor.GatedExecutor;
+import com.ptsmods.mysqlw.query.QueryCondition;
+import com.ptsmods.mysqlw.query.QueryConditions;
+import com.ptsmods.mysqlw.query.SelectResults;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Deletes large amounts of rows in chunks, optionally copying them to an archive table first.<br>
+ * Rows are deleted in ranges of the key column: each chunk looks up the keys of the next {@link DeleteOptions#getChunkSize() chunkSize}
+ * matching rows in key order and then deletes (and archives) the matching rows in that range in a transaction of its own.
+ * This keeps locks short and undo logs small on MySQL and works the same on SQLite, which does not support {@code DELETE ... LIMIT}.
+ * The key column should be unique and indexed, generally the primary key.<br>
+ * As every chunk is committed separately, a delete that is interrupted, e.g. by a crash, leaves no half-archived rows behind and
+ * can be resumed by passing the {@link DeleteProgress#getLastKey() last key} reported to {@link #startAfter(Object)}.
+ * @see Database#deleteBuilder(String, String)
+ */
+public class DeleteBuilder {
+    private final Database db;
+    private final String table;
+    private final String keyColumn;
+    private QueryCondition condition;
+    private String archiveTable;
+    private Object startAfter;
+
+    private DeleteBuilder(Database db, String table, String keyColumn) {
+        this.db = db;
+        this.table = table;
+        this.keyColumn = keyColumn;
+    }
+
+    public static DeleteBuilder create(Database db, String table, String keyColumn) {
+        return new DeleteBuilder(db, table, keyColumn);
+    }
+
+    /**
+     * Only deletes rows meeting the given condition.
+     * @param condition The condition rows must meet in order to be deleted, or null to delete all rows
+     * @return This DeleteBuilder
+     */
+    public DeleteBuilder where(@Nullable QueryCondition condition) {
+        this.condition = condition;
+        return this;
+    }
+
+    /**
+     * Copies rows to the given table before deleting them, in the same transaction.
+     * The archive table must have the same columns in the same order as the table rows are deleted from.
+     * @param archiveTable The table to copy rows to, or null to not archive rows
+     * @return This DeleteBuilder
+     */
+    public DeleteBuilder archiveTo(@Nullable String archiveTable) {
+        this.archiveTable = archiveTable;
+        return this;
+    }
+
+    /**
+     * Only deletes rows with a key greater than the given key, used to resume an interrupted delete.
+     * @param key The {@link DeleteProgress#getLastKey() last key} of the delete to resume, or null to start from the first row
+     * @return This DeleteBuilder
+     */
+    public DeleteBuilder startAfter(@Nullable Object key) {
+        startAfter = key;
+        return this;
+    }
+
+    /**
+     * Deletes all matching rows in chunks with the {@link DeleteOptions#defaults() default options}.
+     * @return The progress once all rows have been deleted or deleting stopped early
+     * @see #execute(DeleteOptions)
+     */
+    public DeleteProgress execute() {
+        return execute(DeleteOptions.defaults());
+    }
+
+    /**
+     * Deletes all matching rows in chunks on the calling thread, sleeping between chunks if a delay is configured.
+     * If a chunk fails, it is rolled back and no further chunks are deleted.
+     * @param options The options determining the size of chunks and the delay between them
+     * @return The progress once all rows have been deleted or deleting stopped early
+     */
+    public DeleteProgress execute(DeleteOptions options) {
+        Job job = new Job(options);
+        try {
+            while (job.runChunk())
+                if (options.getDelay() > 0) Thread.sleep(options.getDelay());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        return job.getProgress();
+    }
+
+    public CompletableFuture<DeleteProgress> executeAsync() {
+        return executeAsync(DeleteOptions.defaults());
+    }
+
+    /**
+     * {@link #execute(DeleteOptions)} but asynchronous.<br>
+     * Each chunk runs as a separate task and the delay between chunks is waited out without occupying a thread.
+     * Cancelling the returned future stops deleting once the chunk that is currently running has finished.
+     * @param options The options determining the size of chunks and the delay between them
+     * @return A {@link CompletableFuture} containing the progress once all rows have been deleted or deleting stopped early
+     */
+    public CompletableFuture<DeleteProgress> executeAsync(DeleteOptions options) {
+        CompletableFuture<DeleteProgress> future = new CompletableFuture<>();
+        runAsync(new Job(options), future, false);
+        return future;
+    }
+
+    private void runAsync(Job job, CompletableFuture<DeleteProgress> future, boolean scheduled) {
+        if (future.isCancelled()) return;
+
+        try {
+            db.runAsync(job::runChunk).whenComplete((more, t) -> {
+                if (t != null) future.completeExceptionally(t);
+                // Null if the chunk threw and its error was passed to the error handler, no further chunks are deleted then.
+                else if (Boolean.TRUE.equals(more)) Scheduler.schedule(() -> runAsync(job, future, true), job.options.getDelay());
+                else future.complete(job.getProgress());
+            });
+        } catch (RejectedExecutionException e) {
+            // Chunks after the first are handed off by the scheduler, which is rejected rather than running them itself
+            // when the executor is saturated. The job can simply continue later on in that case, unless the executor was shut down.
+            if (scheduled && !GatedExecutor.isShutdown(db.getExecutor()))
+                Scheduler.schedule(() -> runAsync(job, future, true), Math.max(job.options.getDelay(), 1));
+            else future.completeExceptionally(e);
+        }
+    }
+
+    private QueryCondition buildCondition(QueryCondition range) {
+        return condition == null ? range : QueryConditions.create(range).and(condition);
+    }
+
+    private final class Job {
+        private final DeleteOptions options;
+        private final long start = System.nanoTime();
+        private Object lastKey = startAfter;
+        private long deleted, archived, chunks;
+        private boolean complete;
+
+        private Job(DeleteOptions options) {
+            if (options.getChunkSize() < 1) throw new IllegalArgumentException("The chunk size must be at least 1.");
+            this.options = options;
+        }
+
+        // Returns whether there may be more rows to delete.
+        private boolean runChunk() {
+            SelectBuilder select = db.selectBuilder(table)
+                    .select(keyColumn)
+                    .where(condition)
+                    .order(keyColumn)
+                    .limit(options.getChunkSize());
+            if (lastKey != null) select.seekAfter(keyColumn, lastKey);
+
+            SelectResults keys = select.execute();
+            if (keys.getColumns().isEmpty()) return false; // The query failed, error has already been logged.
+            if (keys.isEmpty()) {
+                complete = true;
+                return false;
+            }
+
+            Object first = keys.get(0).get(0), last = keys.get(keys.size() - 1).get(0);
+            QueryCondition range = buildCondition(QueryConditions.create(QueryCondition.greaterEqual(keyColumn, first))
+                    .and(QueryCondition.lessEqual(keyColumn, last)));
+
+            long[] counts;
+            try {
+                counts = db.transaction(db -> {
+                    long archived = 0;
+                    if (archiveTable != null) {
+                        List<Object> parameters = new ArrayList<>();
+                        archived = db.executeUpdate("INSERT INTO " + Database.engrave(archiveTable) + " SELECT * FROM " + Database.engrave(table) +
+                                " WHERE " + range.toPreparedString(parameters) + ";", parameters);
+                        if (archived < 0) throw new ChunkFailedException(); // Error has already been logged.
+                        db.invalidateCache(archiveTable);
+                    }
+
+                    long deleted = db.delete(table, range);
+                    if (deleted < 0) throw new ChunkFailedException();
+                    if (archiveTable != null && archived != deleted)
+                        throw new IllegalStateException("Archived " + archived + " rows, but deleted " + deleted + " rows from table " + table + ", the chunk has been rolled back.");
+
+                    return new long[] {deleted, archived};
+                });
+            } catch (ChunkFailedException e) {
+                return false;
+            }
+            if (counts == null) return false; // Could not be committed, error has already been logged.
+
+            deleted += counts[0];
+            archived += counts[1];
+            chunks++;
+            lastKey = last;
+            if (options.getProgressListener() != null) options.getProgressListener().accept(getProgress());
+
+            complete = keys.size() < options.getChunkSize();
+            return !complete;
+        }
+
+        private DeleteProgress getProgress() {
+            return new DeleteProgress(table, deleted, archived, chunks, System.nanoTime() - start, lastKey, complete);
+        }
+    }
+
+    // Thrown to roll back a chunk of which a statement failed and logged its error.
+    private static final class ChunkFailedException extends RuntimeException {
+        private ChunkFailedException() {
+            super(null, null, false, false);
+        }
+    }
+}
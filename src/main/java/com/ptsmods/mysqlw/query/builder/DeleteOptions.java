@@ -0,0 +1,38 @@
+package com.ptsmods.mysqlw.query.builder;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.function.Consumer;
+
+/**
+ * Settings used to configure how a {@link DeleteBuilder} deletes rows in chunks.
+ * @see DeleteBuilder#execute(DeleteOptions)
+ */
+@Getter
+@Builder(builderClassName = "Builder")
+public class DeleteOptions {
+    /**
+     * The maximum amount of rows deleted (and archived) in a single transaction.
+     */
+    @lombok.Builder.Default
+    private final int chunkSize = 1000;
+    /**
+     * The amount of milliseconds to wait between chunks, giving other queries and replicas room to catch up.
+     */
+    @lombok.Builder.Default
+    private final long delay = 0;
+    /**
+     * Called after every chunk that has been committed, may be null.
+     * Storing the {@link DeleteProgress#getLastKey() last key} allows resuming with {@link DeleteBuilder#startAfter(Object)}.
+     */
+    @lombok.Builder.Default
+    private final Consumer<DeleteProgress> progressListener = null;
+
+    /**
+     * @return DeleteOptions with all default values
+     */
+    public static DeleteOptions defaults() {
+        return builder().build();
+    }
+}
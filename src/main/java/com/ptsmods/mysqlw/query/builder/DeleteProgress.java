@@ -0,0 +1,80 @@
+package com.ptsmods.mysqlw.query.builder;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The progress of a chunked delete, passed to its {@link DeleteOptions#getProgressListener() progress listener}
+ * after every chunk and returned once the delete has stopped.
+ */
+public class DeleteProgress {
+    private final String table;
+    private final long deleted, archived, chunks, elapsedNanos;
+    private final Object lastKey;
+    private final boolean complete;
+
+    DeleteProgress(String table, long deleted, long archived, long chunks, long elapsedNanos, @Nullable Object lastKey, boolean complete) {
+        this.table = table;
+        this.deleted = deleted;
+        this.archived = archived;
+        this.chunks = chunks;
+        this.elapsedNanos = elapsedNanos;
+        this.lastKey = lastKey;
+        this.complete = complete;
+    }
+
+    /**
+     * @return The table rows are deleted from
+     */
+    public String getTable() {
+        return table;
+    }
+
+    /**
+     * @return The amount of rows deleted so far
+     */
+    public long getDeleted() {
+        return deleted;
+    }
+
+    /**
+     * @return The amount of rows copied to the archive table so far
+     */
+    public long getArchived() {
+        return archived;
+    }
+
+    /**
+     * @return The amount of chunks committed so far
+     */
+    public long getChunks() {
+        return chunks;
+    }
+
+    /**
+     * @return The amount of milliseconds that have passed since deleting started
+     */
+    public long getElapsed() {
+        return elapsedNanos / 1_000_000;
+    }
+
+    /**
+     * @return The key of the last row of the last committed chunk, or null if no chunk has been committed yet.
+     * Pass this to {@link DeleteBuilder#startAfter(Object)} to resume from here.
+     */
+    public @Nullable Object getLastKey() {
+        return lastKey;
+    }
+
+    /**
+     * @return Whether all matching rows have been deleted, false if deleting stopped early because of an error or an interrupt
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("DeleteProgress{table=%s, deleted=%d, archived=%d, chunks=%d, elapsed=%dms, lastKey=%s, complete=%s}",
+                table, deleted, archived, chunks, getElapsed(), lastKey, complete);
+    }
+}
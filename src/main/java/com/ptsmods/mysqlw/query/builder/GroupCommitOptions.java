@@ -0,0 +1,31 @@
+package com.ptsmods.mysqlw.query.builder;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Settings used to configure a {@link GroupCommitter}.<br>
+ * A group is committed as soon as either of its limits is reached.
+ * @see com.ptsmods.mysqlw.Database#enableGroupCommit(GroupCommitOptions)
+ */
+@Getter
+@Builder(builderClassName = "Builder")
+public class GroupCommitOptions {
+    /**
+     * The amount of queued writes at which the group is committed right away.
+     */
+    @lombok.Builder.Default
+    private final int maxWrites = 200;
+    /**
+     * The maximum amount of milliseconds a write may wait for other writes to be committed with.
+     */
+    @lombok.Builder.Default
+    private final long maxDelay = 5;
+
+    /**
+     * @return GroupCommitOptions with all default values
+     */
+    public static GroupCommitOptions defaults() {
+        return builder().build();
+    }
+}
@@ -0,0 +1,168 @@
+package com.ptsmods.mysqlw.query.builder;
+
+import com.ptsmods.mysqlw.Database;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Runs writes queued around the same time in a single transaction, so they share a single commit.<br>
+ * On SQLite, each commit waits for the data to be written to disk, so committing many writes at once is
+ * a lot faster than committing them one by one. Writes are queued until either {@link GroupCommitOptions#getMaxWrites() maxWrites}
+ * writes are queued or the oldest write has been queued for {@link GroupCommitOptions#getMaxDelay() maxDelay} milliseconds.
+ * The future returned for each write completes once the transaction it was run in has been committed.
+ * If the transaction fails, each write is run again on its own, so a single failing write does not make the others fail.
+ * Writes whose future is cancelled before their group runs are skipped.
+ * @see Database#enableGroupCommit(GroupCommitOptions)
+ */
+public class GroupCommitter implements AutoCloseable {
+    private final Database db;
+    private final GroupCommitOptions options;
+    private List<PendingWrite<?>> pending = new ArrayList<>();
+    private final Object flushLock = new Object();
+    private boolean flushScheduled, closed;
+
+    /**
+     * @param db The database to run writes on
+     * @param options The options determining when writes are committed
+     */
+    public GroupCommitter(Database db, GroupCommitOptions options) {
+        if (options.getMaxWrites() < 1) throw new IllegalArgumentException("The maximum amount of queued writes must be at least 1.");
+
+        this.db = db;
+        this.options = options;
+    }
+
+    /**
+     * Queues a write to be run with the next group.
+     * @param write The write to run, it should only use the database synchronously
+     * @param <T> The type the write returns
+     * @return A {@link CompletableFuture} containing the result of the write, completed once it has been committed
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> write) {
+        PendingWrite<T> pendingWrite = new PendingWrite<>(write);
+        boolean flush = false;
+        synchronized (this) {
+            if (closed) throw new IllegalStateException("This group committer has been closed.");
+
+            pending.add(pendingWrite);
+            if (pending.size() >= options.getMaxWrites()) {
+                flush = true;
+                flushScheduled = true;
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                Scheduler.schedule(this::flushAsync, options.getMaxDelay());
+            }
+        }
+
+        if (flush) flushAsync();
+        return pendingWrite.future;
+    }
+
+    private void flushAsync() {
+        try {
+            db.runAsync(this::flush);
+        } catch (RejectedExecutionException e) {
+            List<PendingWrite<?>> writes = take();
+            writes.forEach(write -> write.future.completeExceptionally(e));
+        }
+    }
+
+    /**
+     * @return The amount of writes currently queued
+     */
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    /**
+     * @return The options this committer was created with
+     */
+    public GroupCommitOptions getOptions() {
+        return options;
+    }
+
+    private synchronized List<PendingWrite<?>> take() {
+        List<PendingWrite<?>> writes = pending;
+        pending = new ArrayList<>();
+        flushScheduled = false;
+        return writes;
+    }
+
+    /**
+     * Runs and commits all queued writes on the calling thread.
+     * @return The amount of writes run
+     */
+    public int flush() {
+        // Flushes run one at a time, so closing waits for a flush that has already taken its writes out of the buffer.
+        synchronized (flushLock) {
+            return flushTaken(take());
+        }
+    }
+
+    private int flushTaken(List<PendingWrite<?>> writes) {
+        if (writes.isEmpty()) return 0;
+        if (writes.size() == 1) {
+            writes.get(0).runAlone();
+            return 1;
+        }
+
+        boolean committed = false;
+        try {
+            committed = db.transaction(d -> {
+                writes.forEach(PendingWrite::run);
+                return true;
+            }) != null;
+        } catch (RuntimeException | Error ignored) {} // Handled below.
+
+        if (committed) writes.forEach(PendingWrite::complete);
+        // Everything was rolled back, so each write is retried without the others.
+        else writes.forEach(PendingWrite::runAlone);
+
+        return writes.size();
+    }
+
+    /**
+     * Stops accepting writes and runs all writes that are still queued, after any group that is already running has been committed.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+        }
+
+        flush();
+    }
+
+    private static final class PendingWrite<T> {
+        private final Supplier<T> write;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private T result;
+
+        private PendingWrite(Supplier<T> write) {
+            this.write = write;
+        }
+
+        private void run() {
+            if (!future.isCancelled()) result = write.get();
+        }
+
+        private void complete() {
+            future.complete(result);
+        }
+
+        private void runAlone() {
+            if (future.isCancelled()) return;
+
+            try {
+                future.complete(write.get());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }
+    }
+}
@@ -1,17 +1,24 @@
 package com.ptsmods.mysqlw.query.builder;
 
 import com.ptsmods.mysqlw.Database;
+import com.ptsmods.mysqlw.query.QueryFunction;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 public class InsertBuilder {
     private final Database db;
     private final String table;
     private final String[] columns;
     private final List<Object[]> values = new ArrayList<>();
+    private String[] keyColumns;
+    private long timeout;
 
     private InsertBuilder(Database db, String table, String[] columns) {
         this.db = db;
@@ -52,67 +59,428 @@ public class InsertBuilder {
         return this;
     }
 
+    /**
+     * Sets the columns of the {@code PRIMARY KEY} or {@code UNIQUE} index whose conflicts are handled by
+     * {@link #executeUpsert(String...) upserts} and {@link #executeInsertIgnore() ignoring inserts}.<br>
+     * Only has to be set when the type of the database is {@link Database.RDBMS#SQLite SQLite},
+     * MySQL handles conflicts on any unique index.
+     * @param keyColumns The columns of the key whose conflicts to handle
+     * @return This InsertBuilder
+     */
+    public InsertBuilder keyColumns(String... keyColumns) {
+        this.keyColumns = keyColumns.length == 0 ? null : keyColumns.clone();
+        return this;
+    }
+
+    /**
+     * Sets the amount of time executing this insert may take, including the time async executions spend waiting for a thread.
+     * Once it has passed, the driver cancels the insert, see {@link Database#withTimeout(long, TimeUnit, Supplier)}.
+     * Async inserts with a timeout are never {@link Database#enableGroupCommit(GroupCommitOptions) committed in groups}.
+     * @param timeout The amount of time executing this insert may take, or {@code 0} to only use the {@link Database#setQueryTimeout(int) default query timeout}
+     * @param unit The unit of the given timeout
+     * @return This InsertBuilder
+     */
+    public InsertBuilder timeout(long timeout, TimeUnit unit) {
+        this.timeout = unit.toNanos(timeout);
+        return this;
+    }
+
     public String buildQuery() {
-        return buildQuery(new StringBuilder("INSERT"));
+        return buildQuery((List<Object>) null);
+    }
+
+    public String buildQuery(List<Object> parameters) {
+        return buildQuery(new StringBuilder("INSERT"), parameters);
     }
 
     public String buildReplaceQuery() {
-        return buildQuery(new StringBuilder("REPLACE"));
+        return buildReplaceQuery(null);
+    }
+
+    public String buildReplaceQuery(List<Object> parameters) {
+        return buildQuery(new StringBuilder("REPLACE"), parameters);
     }
 
     public String buildReplaceUpdateQuery() {
+        return buildReplaceUpdateQuery(null);
+    }
+
+    public String buildReplaceUpdateQuery(List<Object> parameters) {
         if (values.size() != 1) throw new IllegalStateException("One set of values must be passed to build a replace update query.");
 
         StringBuilder query = new StringBuilder("REPLACE INTO ").append(table).append(" SET ");
         for (int i = 0; i < columns.length; i++)
-            query.append(columns[i]).append(" = ").append(Database.getAsString(values.get(0)[i])).append(", ");
+            query.append(columns[i]).append(" = ").append(Database.getAsParameter(values.get(0)[i], parameters)).append(", ");
         query.delete(query.length()-2, query.length()).append(';');
 
         return query.toString();
     }
 
+    /**
+     * Builds a query that inserts all rows and updates the given columns of rows that already exist with the values of the inserted row instead.
+     * @param updateColumns The columns to update when a row already exists
+     * @param parameters The list to add the values to in the order they must be bound in, or null to inline them
+     * @return The built query
+     * @see #executeUpsert(String...)
+     */
+    public String buildUpsertQuery(String[] updateColumns, List<Object> parameters) {
+        return buildQuery(new StringBuilder("INSERT"), values, parameters, buildUpsertClause(updateColumns));
+    }
+
+    /**
+     * Builds a query that inserts all rows, skipping rows that already exist.
+     * @param parameters The list to add the values to in the order they must be bound in, or null to inline them
+     * @return The built query
+     * @see #executeInsertIgnore()
+     */
+    public String buildInsertIgnoreQuery(List<Object> parameters) {
+        return buildQuery(new StringBuilder("INSERT"), values, parameters, buildIgnoreClause());
+    }
+
+    private String buildUpsertClause(String[] updateColumns) {
+        if (updateColumns.length == 0) throw new IllegalArgumentException("At least one column to update must be given.");
+
+        // VALUES(col) rather than the row alias introduced in MySQL 8.0.19, as MariaDB and older versions of MySQL do not support the latter.
+        boolean sqlite = getType() == Database.RDBMS.SQLite;
+        StringBuilder clause = new StringBuilder(sqlite ? " ON CONFLICT(" + getConflictTarget() + ") DO UPDATE SET " : " ON DUPLICATE KEY UPDATE ");
+        for (String column : updateColumns)
+            clause.append('`').append(column).append("` = ").append(sqlite ? "excluded.`" + column + "`" : "VALUES(`" + column + "`)").append(", ");
+
+        return clause.delete(clause.length()-2, clause.length()).toString();
+    }
+
+    String buildIgnoreClause() {
+        if (getType() == Database.RDBMS.SQLite) return keyColumns == null ? " ON CONFLICT DO NOTHING" : " ON CONFLICT(" + getConflictTarget() + ") DO NOTHING";
+
+        // Setting a column to itself changes nothing, but unlike INSERT IGNORE, does not ignore any errors other than duplicate keys.
+        String column = keyColumns == null ? columns[0] : keyColumns[0];
+        return " ON DUPLICATE KEY UPDATE `" + column + "` = `" + column + "`";
+    }
+
+    private String getConflictTarget() {
+        if (keyColumns == null) throw new IllegalStateException("The key columns must be set to handle conflicts on SQLite.");
+        return "`" + String.join("`, `", keyColumns) + "`";
+    }
+
+    private Database.RDBMS getType() {
+        return db == null ? Database.RDBMS.UNKNOWN : db.getType();
+    }
+
     public String buildQuery(StringBuilder query) {
+        return buildQuery(query, null);
+    }
+
+    /**
+     * Appends the {@code INTO} and {@code VALUES} part of the query to the given keyword.
+     * @param query The builder containing the keyword to start the query with, e.g. {@code INSERT}
+     * @param parameters The list to add the values to in the order they must be bound in, or null to inline them
+     * @return The built query
+     */
+    public String buildQuery(StringBuilder query, List<Object> parameters) {
+        return buildQuery(query, values, parameters, "");
+    }
+
+    private String buildQuery(StringBuilder query, List<Object[]> values, List<Object> parameters, String suffix) {
         if (values.isEmpty()) throw new IllegalStateException("No values were specified.");
 
         query.append(" INTO ").append(Database.engrave(table)).append(" (`").append(String.join("`, `", columns)).append("`) VALUES ");
         for (Object[] valuesArray : values) {
             query.append("(");
             for (Object value : valuesArray)
-                query.append(Database.getAsString(value)).append(", ");
+                query.append(Database.getAsParameter(value, parameters)).append(", ");
             query.delete(query.length()-2, query.length()).append("), ");
         }
 
-        return query.delete(query.length()-2, query.length()).append(';').toString();
+        return query.delete(query.length()-2, query.length()).append(suffix).append(';').toString();
     }
 
     public int execute() {
-        return db.executeUpdate(buildQuery());
+        List<Object> parameters = createParameters();
+        return executeUpdate(buildQuery(parameters), parameters);
     }
 
     public CompletableFuture<Integer> executeAsync() {
-        return db.executeUpdateAsync(buildQuery());
+        List<Object> parameters = createParameters();
+        return executeUpdateAsync(buildQuery(parameters), parameters);
     }
 
     public int executeReplace() {
-        return db.executeUpdate(buildReplaceQuery());
+        List<Object> parameters = createParameters();
+        return executeUpdate(buildReplaceQuery(parameters), parameters);
     }
 
     public CompletableFuture<Integer> executeReplaceAsync() {
-        return db.executeUpdateAsync(buildReplaceQuery());
+        List<Object> parameters = createParameters();
+        return executeUpdateAsync(buildReplaceQuery(parameters), parameters);
+    }
+
+    /**
+     * Inserts all rows and updates the given columns of rows that already exist with the values of the inserted row instead.<br>
+     * On MySQL, this renders {@code ON DUPLICATE KEY UPDATE col = VALUES(col)}, on SQLite, this renders
+     * {@code ON CONFLICT(key) DO UPDATE SET col = excluded.col}, which requires the {@link #keyColumns(String...) key columns} to be set.
+     * @param updateColumns The columns to update when a row already exists
+     * @return The amount of rows affected. MySQL counts updated rows twice.
+     * @see #executeUpsertBatch(BatchOptions, String...)
+     */
+    public int executeUpsert(String... updateColumns) {
+        List<Object> parameters = createParameters();
+        return executeUpdate(buildUpsertQuery(updateColumns, parameters), parameters);
+    }
+
+    public CompletableFuture<Integer> executeUpsertAsync(String... updateColumns) {
+        List<Object> parameters = createParameters();
+        return executeUpdateAsync(buildUpsertQuery(updateColumns, parameters), parameters);
+    }
+
+    /**
+     * Inserts all rows, skipping rows that already exist.<br>
+     * Unlike {@code INSERT IGNORE}, errors other than duplicate keys are not ignored.
+     * @return The amount of rows inserted
+     * @see #executeInsertIgnoreBatch(BatchOptions)
+     */
+    public int executeInsertIgnore() {
+        List<Object> parameters = createParameters();
+        return executeUpdate(buildInsertIgnoreQuery(parameters), parameters);
+    }
+
+    public CompletableFuture<Integer> executeInsertIgnoreAsync() {
+        List<Object> parameters = createParameters();
+        return executeUpdateAsync(buildInsertIgnoreQuery(parameters), parameters);
     }
 
     public int executeReplaceUpdate() {
-        return db.executeUpdate(buildReplaceUpdateQuery());
+        List<Object> parameters = createParameters();
+        return executeUpdate(buildReplaceUpdateQuery(parameters), parameters);
     }
 
     public CompletableFuture<Integer> executeReplaceUpdateAsync() {
-        return db.executeUpdateAsync(buildReplaceUpdateQuery());
+        List<Object> parameters = createParameters();
+        return executeUpdateAsync(buildReplaceUpdateQuery(parameters), parameters);
+    }
+
+    /**
+     * Executes this insert in batch mode with the {@link BatchOptions#defaults() default options}.
+     * @return The amount of rows affected per chunk
+     * @see #executeBatch(BatchOptions)
+     */
+    public int[] executeBatch() {
+        return executeBatch(BatchOptions.defaults());
+    }
+
+    /**
+     * Executes this insert in batch mode.<br>
+     * Rather than sending all rows in one giant query, the rows are split into chunks according to the given options.
+     * Each row is added to a prepared statement with {@link PreparedStatement#addBatch()} and each chunk is
+     * sent with {@link PreparedStatement#executeBatch()}.
+     * @param options The options determining the size of chunks and whether to use a transaction
+     * @return The amount of rows affected per chunk. Rows for which the driver does not report a count are counted as one.
+     * On MySQL, batches are sent as multi-row inserts which report no count per row, so every row is counted as one there.
+     */
+    public int[] executeBatch(BatchOptions options) {
+        return withTimeout(() -> executeBatch("INSERT", "", new ArrayList<>(values), options));
+    }
+
+    public CompletableFuture<int[]> executeBatchAsync() {
+        return executeBatchAsync(BatchOptions.defaults());
+    }
+
+    public CompletableFuture<int[]> executeBatchAsync(BatchOptions options) {
+        List<Object[]> values = new ArrayList<>(this.values);
+        return runAsync(() -> executeBatch("INSERT", "", values, options));
+    }
+
+    /**
+     * Executes this replace in batch mode with the {@link BatchOptions#defaults() default options}.
+     * @return The amount of rows affected per chunk
+     * @see #executeBatch(BatchOptions)
+     */
+    public int[] executeReplaceBatch() {
+        return executeReplaceBatch(BatchOptions.defaults());
+    }
+
+    /**
+     * Executes this replace in batch mode.
+     * @param options The options determining the size of chunks and whether to use a transaction
+     * @return The amount of rows affected per chunk
+     * @see #executeBatch(BatchOptions)
+     */
+    public int[] executeReplaceBatch(BatchOptions options) {
+        return withTimeout(() -> executeBatch("REPLACE", "", new ArrayList<>(values), options));
+    }
+
+    public CompletableFuture<int[]> executeReplaceBatchAsync() {
+        return executeReplaceBatchAsync(BatchOptions.defaults());
+    }
+
+    public CompletableFuture<int[]> executeReplaceBatchAsync(BatchOptions options) {
+        List<Object[]> values = new ArrayList<>(this.values);
+        return runAsync(() -> executeBatch("REPLACE", "", values, options));
+    }
+
+    /**
+     * Executes this upsert in batch mode.
+     * @param options The options determining the size of chunks and whether to use a transaction
+     * @param updateColumns The columns to update when a row already exists
+     * @return The amount of rows affected per chunk. Approximate on MySQL, where every row is counted as one, whether it was inserted or updated.
+     * @see #executeUpsert(String...)
+     * @see #executeBatch(BatchOptions)
+     */
+    public int[] executeUpsertBatch(BatchOptions options, String... updateColumns) {
+        return withTimeout(() -> executeBatch("INSERT", buildUpsertClause(updateColumns), new ArrayList<>(values), options));
+    }
+
+    public CompletableFuture<int[]> executeUpsertBatchAsync(BatchOptions options, String... updateColumns) {
+        String clause = buildUpsertClause(updateColumns);
+        List<Object[]> values = new ArrayList<>(this.values);
+        return runAsync(() -> executeBatch("INSERT", clause, values, options));
+    }
+
+    /**
+     * Executes this ignoring insert in batch mode.
+     * @param options The options determining the size of chunks and whether to use a transaction
+     * @return The amount of rows inserted per chunk. Approximate on MySQL, where skipped rows are counted as well.
+     * @see #executeInsertIgnore()
+     * @see #executeBatch(BatchOptions)
+     */
+    public int[] executeInsertIgnoreBatch(BatchOptions options) {
+        return withTimeout(() -> executeBatch("INSERT", buildIgnoreClause(), new ArrayList<>(values), options));
+    }
+
+    public CompletableFuture<int[]> executeInsertIgnoreBatchAsync(BatchOptions options) {
+        String clause = buildIgnoreClause();
+        List<Object[]> values = new ArrayList<>(this.values);
+        return runAsync(() -> executeBatch("INSERT", clause, values, options));
+    }
+
+    private int invalidated(int affected) {
+        db.invalidateCache(table);
+        return affected;
+    }
+
+    private int executeUpdate(String query, List<Object> parameters) {
+        return invalidated(withTimeout(() -> db.executeUpdate(query, parameters)));
+    }
+
+    // A single task rather than a derived future, so cancelling the returned future cancels the statement.
+    private CompletableFuture<Integer> executeUpdateAsync(String query, List<Object> parameters) {
+        return withTimeout(() -> db.runWriteAsync(() -> executeUpdate(query, parameters)));
+    }
+
+    private <T> T withTimeout(Supplier<T> sup) {
+        return timeout == 0 ? sup.get() : db.withTimeout(timeout, TimeUnit.NANOSECONDS, sup);
+    }
+
+    // The deadline starts when the call is made, so it is set before the call is handed to the executor.
+    private <T> CompletableFuture<T> runAsync(Supplier<T> sup) {
+        return withTimeout(() -> db.runAsync(sup));
+    }
+
+    private int[] executeBatch(String keyword, String suffix, List<Object[]> values, BatchOptions options) {
+        if (values.isEmpty()) throw new IllegalStateException("No values were specified.");
+
+        try {
+            int[] counts = Transactions.run(db, options.isTransactional(), connection -> executeChunks(connection, keyword, suffix, values, options));
+            if (counts == null) return new int[0]; // Error has already been logged.
+
+            db.invalidateCache(table);
+            return counts;
+        } catch (SQLException e) {
+            db.logOrThrow("Error executing batch " + keyword.toLowerCase(Locale.ROOT) + " into table " + table + ".", e);
+            return new int[0];
+        }
+    }
+
+    int[] executeChunks(Connection connection, String keyword, String suffix, List<Object[]> values, BatchOptions options) throws SQLException {
+        List<Integer> counts = new ArrayList<>();
+        // The query used for rows of which all values can be bound, which should be nearly all of them.
+        String boundQuery = null;
+        String currentQuery = null;
+        PreparedStatement statement = null;
+        int rows = 0, count = 0;
+        long bytes = 0;
+
+        try {
+            for (Object[] row : values) {
+                long size = estimateSize(row);
+                if (rows > 0 && (rows >= options.getMaxRows() || bytes + size > options.getMaxBytes())) {
+                    counts.add(count + sum(statement.executeBatch()));
+                    rows = count = 0;
+                    bytes = 0;
+                }
+
+                List<Object> parameters = new ArrayList<>(columns.length);
+                for (Object value : row) Database.getAsParameter(value, parameters);
+
+                String query;
+                if (parameters.size() == columns.length) {
+                    if (boundQuery == null) boundQuery = buildQuery(new StringBuilder(keyword), Collections.singletonList(row), new ArrayList<>(), suffix);
+                    query = boundQuery;
+                } else query = buildQuery(new StringBuilder(keyword), Collections.singletonList(row), new ArrayList<>(), suffix);
+
+                // Rows with values that have to be inlined need a statement of their own.
+                if (!query.equals(currentQuery)) {
+                    if (statement != null) {
+                        count += sum(statement.executeBatch());
+                        statement.close();
+                    }
+
+                    statement = db.applyTimeout(connection.prepareStatement(query));
+                    currentQuery = query;
+                }
+
+                Database.bindParameters(statement, parameters);
+                statement.addBatch();
+                rows++;
+                bytes += size;
+            }
+
+            counts.add(count + sum(statement.executeBatch()));
+        } finally {
+            if (statement != null) statement.close();
+        }
+
+        return counts.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // Batches rewritten into multi-row inserts report SUCCESS_NO_INFO for every row, as MySQL only reports a total for such a statement.
+    // Getting real counts would require sending every row separately, which is exactly what batches are meant to avoid.
+    static int sum(int[] counts) {
+        int sum = 0;
+        for (int count : counts)
+            sum += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(count, 0);
+        return sum;
+    }
+
+    static long estimateSize(Object[] row) {
+        long size = 0;
+        for (Object value : row) {
+            size += 4; // Separators, quotes and the likes.
+            if (value == null) size += 4;
+            else if (value instanceof byte[]) size += ((byte[]) value).length;
+            else if (value instanceof Number || value instanceof Boolean) size += 8;
+            else {
+                String s = value instanceof QueryFunction ? ((QueryFunction) value).getFunction() : String.valueOf(value);
+                for (int i = 0; i < s.length(); i++) {
+                    char c = s.charAt(i);
+                    size += c < 0x80 ? 1 : c < 0x800 ? 2 : 3; // Length when encoded as UTF-8.
+                }
+            }
+        }
+
+        return size;
+    }
+
+    // Statements with more values than the database accepts parameters are sent with their values inlined instead.
+    private List<Object> createParameters() {
+        return (long) values.size() * columns.length > db.getType().getMaxParameters() ? null : new ArrayList<>();
     }
 
     @Override
     public InsertBuilder clone() {
         InsertBuilder builder = create(db, table, columns);
         builder.insert(values);
+        builder.keyColumns = keyColumns;
+        builder.timeout = timeout;
         return builder;
     }
 }
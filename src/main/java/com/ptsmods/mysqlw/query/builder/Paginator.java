@@ -0,0 +1,253 @@
+package com.ptsmods.mysqlw.query.builder;
+
+import com.ptsmods.mysqlw.query.QueryOrder;
+import com.ptsmods.mysqlw.query.SelectResults;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Walks through the results of a query page by page using keyset pagination.<br>
+ * Rather than skipping the rows of all previous pages with an offset, each page starts right after the last row
+ * of the previous one (see {@link SelectBuilder#seekAfter(String[], Object[])}), so fetching a page costs the same
+ * no matter how far in the results it is, and rows inserted or deleted in the meantime do not shift pages.
+ * The columns of the order should be backed by an index and together uniquely identify a row.<br>
+ * Pages are identified by opaque tokens which can be handed to clients and passed back to {@link #fetch(String)} later.
+ */
+public class Paginator {
+    private static final Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder decoder = Base64.getUrlDecoder();
+    // Tokens may be forged, a number like 1E2147483647 would otherwise be written out in full when bound. MySQL's DECIMAL has at most 65 digits.
+    private static final int MAX_DIGITS = 65;
+    private final SelectBuilder query;
+    private final QueryOrder order;
+    private final int pageSize;
+
+    /**
+     * @param query The query to page through, its order and limit are overridden
+     * @param order The order to page in, its columns must be selected by the query
+     * @param pageSize The maximum amount of rows per page
+     */
+    public Paginator(SelectBuilder query, QueryOrder order, int pageSize) {
+        if (pageSize < 1) throw new IllegalArgumentException("The page size must be at least 1.");
+
+        this.query = query.clone();
+        this.order = order;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Fetches the page identified by the given token.
+     * @param token The token of the page to fetch as returned by {@link Page#getNextToken()}, or null to fetch the first page
+     * @return The fetched page
+     * @throws IllegalArgumentException If the given token is not a valid token for this paginator
+     */
+    public Page fetch(@Nullable String token) {
+        SelectBuilder query = this.query.clone()
+                .order(order)
+                .limit(pageSize);
+        if (token != null) query.seekAfter(order.getColumns().toArray(new String[0]), decode(token));
+
+        SelectResults results = query.execute();
+        return new Page(results, results.size() < pageSize ? null : encode(getLastValues(results)));
+    }
+
+    /**
+     * {@link #fetch(String)} but asynchronous.
+     * @param token The token of the page to fetch as returned by {@link Page#getNextToken()}, or null to fetch the first page
+     * @return A {@link CompletableFuture} containing the fetched page
+     */
+    public CompletableFuture<Page> fetchAsync(@Nullable String token) {
+        return query.getDb().runReadAsync(() -> fetch(token));
+    }
+
+    /**
+     * @return The order this paginator pages in
+     */
+    public QueryOrder getOrder() {
+        return order;
+    }
+
+    /**
+     * @return The maximum amount of rows per page
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    private Object[] getLastValues(SelectResults results) {
+        SelectResults.SelectResultRow last = results.get(results.size() - 1);
+        List<String> columns = order.getColumns();
+        Object[] values = new Object[columns.size()];
+
+        for (int i = 0; i < values.length; i++) {
+            String column = columns.get(i);
+            // Results are keyed by column name without the table it belongs to.
+            String name = column.substring(column.lastIndexOf('.') + 1).replace("`", "");
+            if (!results.getColumns().contains(name))
+                throw new IllegalArgumentException("Column " + column + " of the order must be selected to page by it.");
+
+            values[i] = last.get(results.getOrdinal(name));
+            if (values[i] == null) throw new IllegalArgumentException("Cannot page by column " + column + " as the last row of the page has no value for it.");
+        }
+
+        return values;
+    }
+
+    // Values are written with a type tag rather than with Java serialization, as tokens may come from untrusted clients.
+    private static String encode(Object[] values) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(values.length);
+            for (Object value : values) writeValue(out, value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Cannot happen when writing to a byte array.
+        }
+
+        return encoder.encodeToString(bytes.toByteArray());
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value instanceof String) {
+            out.writeByte('S');
+            writeBytes(out, ((String) value).getBytes(StandardCharsets.UTF_8));
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            out.writeByte('I');
+            out.writeInt(((Number) value).intValue());
+        } else if (value instanceof Long) {
+            out.writeByte('J');
+            out.writeLong((Long) value);
+        } else if (value instanceof Double || value instanceof Float) {
+            out.writeByte('D');
+            out.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof BigDecimal) {
+            out.writeByte('M');
+            out.writeUTF(value.toString());
+        } else if (value instanceof BigInteger) {
+            out.writeByte('N');
+            out.writeUTF(value.toString());
+        } else if (value instanceof Boolean) {
+            out.writeByte('Z');
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof byte[]) {
+            out.writeByte('B');
+            writeBytes(out, (byte[]) value);
+        } else if (value instanceof Timestamp) {
+            out.writeByte('T');
+            out.writeLong(((Timestamp) value).getTime());
+            out.writeInt(((Timestamp) value).getNanos());
+        } else {
+            // Anything else is compared as a string by the RDBMS anyway.
+            out.writeByte('S');
+            writeBytes(out, value.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private Object[] decode(String token) {
+        Object[] values;
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(decoder.decode(token)))) {
+            values = new Object[in.readUnsignedByte()];
+            for (int i = 0; i < values.length; i++) values[i] = readValue(in);
+            if (in.available() > 0) throw new IOException("Trailing bytes after the last value.");
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid page token.", e);
+        }
+
+        if (values.length != order.getColumns().size()) throw new IllegalArgumentException("Page token does not match the order of this paginator.");
+        return values;
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        char type = (char) in.readUnsignedByte();
+        switch (type) {
+            case 'S':
+                return new String(readBytes(in), StandardCharsets.UTF_8);
+            case 'I':
+                return in.readInt();
+            case 'J':
+                return in.readLong();
+            case 'D':
+                return in.readDouble();
+            case 'M':
+                BigDecimal decimal = new BigDecimal(readNumber(in));
+                if (decimal.precision() > MAX_DIGITS || Math.abs(decimal.scale()) > MAX_DIGITS) throw new IOException("Decimal value out of range.");
+                return decimal;
+            case 'N':
+                BigInteger integer = new BigInteger(readNumber(in));
+                if (new BigDecimal(integer).precision() > MAX_DIGITS) throw new IOException("Integer value out of range.");
+                return integer;
+            case 'Z':
+                return in.readBoolean();
+            case 'B':
+                return readBytes(in);
+            case 'T':
+                Timestamp timestamp = new Timestamp(in.readLong());
+                timestamp.setNanos(in.readInt());
+                return timestamp;
+            default:
+                throw new IOException("Unknown value type " + type + ".");
+        }
+    }
+
+    private static String readNumber(DataInputStream in) throws IOException {
+        String number = in.readUTF();
+        // Room for a sign, a decimal point and an exponent.
+        if (number.length() > MAX_DIGITS + 16) throw new IOException("Number value too long.");
+        return number;
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) throw new IOException("Invalid value length " + length + ".");
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * A single page of results.
+     */
+    public static class Page {
+        private final SelectResults results;
+        private final String nextToken;
+
+        private Page(SelectResults results, @Nullable String nextToken) {
+            this.results = results;
+            this.nextToken = nextToken;
+        }
+
+        /**
+         * @return The rows on this page
+         */
+        public SelectResults getResults() {
+            return results;
+        }
+
+        /**
+         * @return The token of the next page, or null if this is the last page
+         */
+        public @Nullable String getNextToken() {
+            return nextToken;
+        }
+
+        /**
+         * @return Whether there may be another page after this one
+         */
+        public boolean hasNext() {
+            return nextToken != null;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.ptsmods.mysqlw.query.builder;
+
+import com.ptsmods.mysqlw.executor.BoundedExecutor;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds the single daemon thread used to delay flushes of buffers and batches.
+ * Scheduled tasks must only hand work off to an executor, they should never block this thread.
+ * A saturated {@link BoundedExecutor} rejects tasks handed off by this thread rather than running them on it,
+ * so scheduled tasks must handle {@link java.util.concurrent.RejectedExecutionException}s.
+ */
+final class Scheduler {
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(() -> {
+            BoundedExecutor.markHandOffOnly();
+            r.run();
+        }, "MySQLw Scheduler");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private Scheduler() {}
+
+    static void schedule(Runnable task, long delay) {
+        scheduler.schedule(task, delay, TimeUnit.MILLISECONDS);
+    }
+}
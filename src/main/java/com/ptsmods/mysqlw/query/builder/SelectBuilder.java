@@ -5,12 +5,28 @@ import com.ptsmods.mysqlw.Pair;
 import com.ptsmods.mysqlw.query.*;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.sql.ResultSet;
+import java.sql.SQLTimeoutException;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class SelectBuilder implements CharSequence {
+    /**
+     * The fetch size used by {@link #stream()}, {@link #forEachCursor(RowCursor.Visitor)} and {@link #export(Writer, ExportOptions)} if none was set.
+     */
+    public static final int DEFAULT_STREAM_FETCH_SIZE = 1000;
     private final Database db;
     private final String selectionTarget;
     private final List<Pair<CharSequence, String>> columns = new ArrayList<>();
@@ -21,6 +37,10 @@ public class SelectBuilder implements CharSequence {
     private GroupBy groupBy;
     private QueryOrder order;
     private QueryLimit limit;
+    private int fetchSize;
+    private long timeout;
+    private String[] seekColumns;
+    private Object[] seekValues;
 
     private SelectBuilder(Database db, String selectionTarget) {
         this.db = db;
@@ -275,11 +295,77 @@ public class SelectBuilder implements CharSequence {
         return limit(QueryLimit.limit(limit, offset));
     }
 
+    /**
+     * Only selects rows that come after the row with the given value in the order of this builder.
+     * @param column The column to seek by, generally the column of the order
+     * @param lastValue The value of the given column of the last row of the previous page
+     * @return This SelectBuilder
+     * @see #seekAfter(String[], Object[])
+     */
+    public SelectBuilder seekAfter(String column, Object lastValue) {
+        return seekAfter(new String[] {column}, new Object[] {lastValue});
+    }
+
+    /**
+     * Only selects rows that come after the row with the given values in the order of this builder, also known as keyset pagination.<br>
+     * Unlike skipping rows with an offset, this lets the RDBMS jump straight to the first row of a page using an index
+     * on the given columns, so every page is as fast as the first one. Together, the given columns must uniquely identify a row,
+     * otherwise rows sharing their values with the last row are skipped. The direction of each column is taken from the
+     * {@link #order(QueryOrder) order}, if no order is set, the rows are ordered by the given columns in ascending direction.
+     * @param columns The columns to seek by, generally the columns of the order
+     * @param lastValues The values of the given columns of the last row of the previous page
+     * @return This SelectBuilder
+     * @see Paginator
+     */
+    public SelectBuilder seekAfter(String[] columns, Object[] lastValues) {
+        if (columns.length == 0) throw new IllegalArgumentException("Cannot seek without any columns.");
+        if (columns.length != lastValues.length) throw new IllegalArgumentException("Amount of values passed not equal to columns to seek by.");
+        for (Object value : lastValues)
+            if (value == null) throw new IllegalArgumentException("Cannot seek past null values.");
+
+        seekColumns = columns.clone();
+        seekValues = lastValues.clone();
+        return this;
+    }
+
+    /**
+     * Sets the amount of rows the driver should fetch at once when executing this query.<br>
+     * {@link #stream()} uses {@value #DEFAULT_STREAM_FETCH_SIZE} unless set otherwise.
+     * @param fetchSize The amount of rows to fetch at once, {@link Integer#MIN_VALUE} to stream rows one by one on MySQL or {@code 0} to use the driver's default
+     * @return This SelectBuilder
+     * @see Database#executeQuery(String, List, int)
+     */
+    public SelectBuilder fetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
+    /**
+     * Sets the amount of time executing this query may take, including the time async executions spend waiting for a thread.
+     * Once it has passed, the driver cancels the query, see {@link Database#withTimeout(long, TimeUnit, Supplier)}.
+     * @param timeout The amount of time executing this query may take, or {@code 0} to only use the {@link Database#setQueryTimeout(int) default query timeout}
+     * @param unit The unit of the given timeout
+     * @return This SelectBuilder
+     */
+    public SelectBuilder timeout(long timeout, TimeUnit unit) {
+        this.timeout = unit.toNanos(timeout);
+        return this;
+    }
+
     /**
      * Builds a {@code SELECT} query from this builder.
      * @return The built query
      */
     public String buildQuery() {
+        return buildQuery(null);
+    }
+
+    /**
+     * Builds a {@code SELECT} query from this builder with question marks in place of any values.
+     * @param parameters The list to add the values to in the order they must be bound in, or null to inline them
+     * @return The built query
+     */
+    public String buildQuery(List<Object> parameters) {
         StringBuilder query = new StringBuilder("SELECT ");
 
         if (columns.isEmpty())
@@ -293,23 +379,58 @@ public class SelectBuilder implements CharSequence {
                 .append(selectionTarget == null ? "" : " FROM " + Database.engrave(selectionTarget))
                 .append(alias == null ? "" : " AS " + Database.engrave(alias))
                 .append(joins.isEmpty() ? "" : " " + joins.stream()
-                        .map(Join::toString)
-                        .collect(Collectors.joining(" ")))
-                .append(condition == null ? "" : " WHERE " + condition)
-                .append(groupBy == null ? "" : " " + groupBy.toString(db == null ? Database.RDBMS.UNKNOWN : db.getType()))
+                        .map(join -> join.toPreparedString(parameters))
+                        .collect(Collectors.joining(" ")));
+
+        QueryCondition condition = buildCondition();
+        QueryOrder order = buildOrder();
+        query.append(condition == null ? "" : " WHERE " + condition.toPreparedString(parameters))
+                .append(groupBy == null ? "" : " " + groupBy.toPreparedString(db == null ? Database.RDBMS.UNKNOWN : db.getType(), parameters))
                 .append(order == null ? "" : " ORDER BY " + order)
                 .append(limit == null ? "" : " " + limit);
 
         return query.toString();
     }
 
+    private QueryCondition buildCondition() {
+        if (seekColumns == null) return condition;
+
+        // Rows come after the last row if their first column comes after it, or if it is equal, their second column does, and so on.
+        QueryConditions seek = QueryConditions.create();
+        for (int i = 0; i < seekColumns.length; i++) {
+            QueryConditions columnSeek = QueryConditions.create();
+            for (int j = 0; j < i; j++)
+                columnSeek.and(QueryCondition.equals(seekColumns[j], seekValues[j]));
+
+            boolean descending = getDirection(seekColumns[i]) == QueryOrder.OrderDirection.DESC;
+            columnSeek.and(descending ? QueryCondition.less(seekColumns[i], seekValues[i]) : QueryCondition.greater(seekColumns[i], seekValues[i]));
+            seek.or(columnSeek);
+        }
+
+        return condition == null ? seek : QueryConditions.create(condition).and(seek);
+    }
+
+    private QueryOrder.OrderDirection getDirection(String column) {
+        int index = order == null ? -1 : order.getColumns().indexOf(column);
+        return index == -1 ? QueryOrder.OrderDirection.ASC : order.getDirections().get(index);
+    }
+
+    private QueryOrder buildOrder() {
+        if (order != null || seekColumns == null) return order;
+
+        QueryOrder order = QueryOrder.by(seekColumns[0]);
+        for (int i = 1; i < seekColumns.length; i++) order = order.then(seekColumns[i]);
+        return order;
+    }
+
     /**
      * Executes the built query and returns the raw {@link ResultSet}.
      * @return The raw {@link ResultSet}
      */
     public ResultSet executeRaw() {
         if (db == null) throw new IllegalStateException("Cannot execute a query built for use in BlockBuilders.");
-        return db.executeQuery(buildQuery());
+        List<Object> parameters = new ArrayList<>();
+        return executeQuery(buildQuery(parameters), parameters, fetchSize);
     }
 
     /**
@@ -317,15 +438,78 @@ public class SelectBuilder implements CharSequence {
      * @return A {@link CompletableFuture} containing the raw {@link ResultSet}
      */
     public CompletableFuture<ResultSet> executeRawAsync() {
-        return db.executeQueryAsync(buildQuery());
+        return runReadAsync(this::executeRaw);
     }
 
     /**
-     * Executes the built query and parses it into an instance of {@link SelectResults}.
+     * Executes the built query and parses it into an instance of {@link SelectResults}.<br>
+     * If {@link Database#setSingleFlight(boolean) single-flight} is enabled and the exact same query with the same
+     * values is already being executed, this waits for and returns its results instead.
+     * If a {@link Database#setResultCache(com.ptsmods.mysqlw.cache.ResultCache) result cache} is set,
+     * cached results are returned if there are any.
      * @return The parsed results
      */
     public SelectResults execute() {
-        return SelectResults.parse(db, selectionTarget, executeRaw(), condition, order, limit);
+        if (db == null) throw new IllegalStateException("Cannot execute a query built for use in BlockBuilders.");
+
+        List<Object> parameters = new ArrayList<>();
+        String query = buildQuery(parameters);
+        List<Object> key = Arrays.asList(query, parameters);
+        Supplier<SelectResults> call = () -> {
+            ResultSet set = db.executeQuery(query, parameters, fetchSize);
+            // A null set means the query failed and the error was logged, its empty results must not be cached.
+            return set == null ? null : SelectResults.parse(db, selectionTarget, set, condition, order, limit);
+        };
+
+        // Transactions may see changes others cannot, so they cannot share results.
+        SingleFlight<List<Object>, SelectResults> singleFlight = db.isInTransaction() ? null : db.getSingleFlight();
+        Supplier<SelectResults> shared = singleFlight == null ? call : () -> executeShared(singleFlight, key, call);
+        List<String> tables = db.getResultCache() == null ? null : getTables();
+        SelectResults results = withTimeout(() -> tables == null ? shared.get() : db.executeCached(key, tables, shared));
+
+        return results == null ? SelectResults.parse(db, selectionTarget, null, condition, order, limit) : results;
+    }
+
+    // Callers waiting for another caller's query stick to their own deadline and run the query themselves if the other caller cancelled it.
+    private SelectResults executeShared(SingleFlight<List<Object>, SelectResults> singleFlight, List<Object> key, Supplier<SelectResults> call) {
+        try {
+            return singleFlight.execute(key, call, db.getTimeLeft(TimeUnit.NANOSECONDS), db::isCancelled);
+        } catch (CompletionException e) {
+            if (!(e.getCause() instanceof TimeoutException)) throw e;
+
+            db.logOrThrow("Timed out waiting for the results of an identical query on table " + selectionTarget + ".",
+                    new SQLTimeoutException("The deadline of the call passed while waiting for an identical query.", "HYT00"));
+            return null;
+        }
+    }
+
+    private ResultSet executeQuery(String query, List<Object> parameters, int fetchSize) {
+        return withTimeout(() -> db.executeQuery(query, parameters, fetchSize));
+    }
+
+    private <T> T withTimeout(Supplier<T> sup) {
+        return timeout == 0 ? sup.get() : db.withTimeout(timeout, TimeUnit.NANOSECONDS, sup);
+    }
+
+    // The deadline starts when the call is made, so it is set before the call is handed to the executor.
+    private <T> CompletableFuture<T> runReadAsync(Supplier<T> sup) {
+        return withTimeout(() -> db.runReadAsync(sup));
+    }
+
+    private CompletableFuture<Void> runReadAsync(Runnable run) {
+        return withTimeout(() -> db.runReadAsync(run));
+    }
+
+    // Null if any of the tables is a subquery, as it is unknown which tables those select from and thus when to invalidate their results.
+    // Also null without a target, as nothing would ever invalidate the results of such queries.
+    private List<String> getTables() {
+        if (selectionTarget == null) return null;
+
+        List<String> tables = new ArrayList<>(joins.size() + 1);
+        tables.add(selectionTarget);
+        for (Join join : joins) tables.add(join.getTable());
+
+        return tables.stream().anyMatch(table -> table.startsWith("(")) ? null : tables;
     }
 
     /**
@@ -333,7 +517,165 @@ public class SelectBuilder implements CharSequence {
      * @return A {@link CompletableFuture} containing the parsed results
      */
     public CompletableFuture<SelectResults> executeAsync() {
-        return db.runAsync(this::execute);
+        return runReadAsync(this::execute);
+    }
+
+    /**
+     * Executes the built query and maps the selected rows straight to instances of the given class,
+     * without parsing them into {@link SelectResults} first.
+     * @param type The class to map rows to
+     * @param <T> The type rows are mapped to
+     * @return The mapped rows
+     * @throws IllegalArgumentException If the given class cannot be mapped to
+     * @see RowMapper
+     */
+    public <T> List<T> executeAs(Class<T> type) {
+        return RowMapper.mapAll(db, selectionTarget, executeRaw(), type);
+    }
+
+    /**
+     * Asynchronously executes the built query and maps the selected rows straight to instances of the given class.
+     * @param type The class to map rows to
+     * @param <T> The type rows are mapped to
+     * @return A {@link CompletableFuture} containing the mapped rows
+     * @see #executeAs(Class)
+     */
+    public <T> CompletableFuture<List<T>> executeAsAsync(Class<T> type) {
+        return runReadAsync(() -> executeAs(type));
+    }
+
+    /**
+     * Executes the built query and lazily reads its results as the returned stream is consumed.<br>
+     * Unlike {@link #execute()}, rows are not all read into memory at once, making this suitable for huge results.
+     * The underlying statement is closed once all rows have been consumed, streams that may
+     * not be consumed entirely should be closed, e.g. using try-with-resources.
+     * @return A stream of the selected rows
+     * @see #fetchSize(int)
+     */
+    public Stream<SelectResults.SelectResultRow> stream() {
+        if (db == null) throw new IllegalStateException("Cannot execute a query built for use in BlockBuilders.");
+
+        List<Object> parameters = new ArrayList<>();
+        ResultSet set = executeQuery(buildQuery(parameters), parameters, fetchSize == 0 ? DEFAULT_STREAM_FETCH_SIZE : fetchSize);
+        return SelectResults.parseStream(db, selectionTarget, set, condition, order, limit);
+    }
+
+    /**
+     * Executes the built query and passes each selected row to the given action without reading all rows into memory at once.
+     * @param action The action to run for each row
+     * @see #stream()
+     */
+    public void forEachRow(Consumer<SelectResults.SelectResultRow> action) {
+        try (Stream<SelectResults.SelectResultRow> stream = stream()) {
+            stream.forEach(action);
+        }
+    }
+
+    /**
+     * Asynchronously executes the built query and passes each selected row to the given action.
+     * @param action The action to run for each row
+     * @return A {@link CompletableFuture} which completes once all rows have been passed
+     * @see #forEachRow(Consumer)
+     */
+    public CompletableFuture<Void> forEachRowAsync(Consumer<SelectResults.SelectResultRow> action) {
+        return runReadAsync(() -> forEachRow(action));
+    }
+
+    /**
+     * Executes the built query and passes a {@link RowCursor} positioned at each selected row to the given visitor.<br>
+     * Values are read straight from the underlying {@link ResultSet} rather than being copied into rows,
+     * so visiting rows using the cursor's primitive getters does not allocate anything per row.
+     * @param visitor The visitor to pass the cursor to for each row
+     * @return The amount of rows visited
+     */
+    public long forEachCursor(RowCursor.Visitor visitor) {
+        if (db == null) throw new IllegalStateException("Cannot execute a query built for use in BlockBuilders.");
+
+        List<Object> parameters = new ArrayList<>();
+        ResultSet set = executeQuery(buildQuery(parameters), parameters, fetchSize == 0 ? DEFAULT_STREAM_FETCH_SIZE : fetchSize);
+        return RowCursor.visit(db, selectionTarget, set, visitor);
+    }
+
+    /**
+     * Asynchronously executes the built query and passes a {@link RowCursor} positioned at each selected row to the given visitor.
+     * @param visitor The visitor to pass the cursor to for each row
+     * @return A {@link CompletableFuture} containing the amount of rows visited
+     * @see #forEachCursor(RowCursor.Visitor)
+     */
+    public CompletableFuture<Long> forEachCursorAsync(RowCursor.Visitor visitor) {
+        return runReadAsync(() -> forEachCursor(visitor));
+    }
+
+    /**
+     * Executes the built query and writes the selected rows to the given writer as they are read.<br>
+     * Rows are never all held in memory, neither as rows nor as text, making this suitable for exporting entire tables.
+     * The writer is flushed, but not closed.
+     * @param writer The writer to write the rows to
+     * @param options The options determining the format rows are written in
+     * @return The amount of rows written
+     * @throws java.io.UncheckedIOException If the rows could not be written
+     * @see ResultExporter
+     */
+    public long export(Writer writer, ExportOptions options) {
+        if (db == null) throw new IllegalStateException("Cannot execute a query built for use in BlockBuilders.");
+
+        List<Object> parameters = new ArrayList<>();
+        ResultSet set = executeQuery(buildQuery(parameters), parameters, fetchSize == 0 ? DEFAULT_STREAM_FETCH_SIZE : fetchSize);
+        return ResultExporter.export(db, selectionTarget, set, writer, options);
+    }
+
+    /**
+     * Executes the built query and writes the selected rows to the given stream, encoded with the {@link ExportOptions#getCharset() configured charset}.
+     * The stream is flushed, but not closed.
+     * @param out The stream to write the rows to
+     * @param options The options determining the format rows are written in
+     * @return The amount of rows written
+     * @see #export(Writer, ExportOptions)
+     */
+    public long export(OutputStream out, ExportOptions options) {
+        return export(new OutputStreamWriter(out, options.getCharset()), options);
+    }
+
+    /**
+     * Executes the built query and writes the selected rows to the given channel, encoded with the {@link ExportOptions#getCharset() configured charset}.
+     * The channel is not closed.
+     * @param channel The channel to write the rows to
+     * @param options The options determining the format rows are written in
+     * @return The amount of rows written
+     * @see #export(Writer, ExportOptions)
+     */
+    public long export(WritableByteChannel channel, ExportOptions options) {
+        return export(Channels.newWriter(channel, options.getCharset().newEncoder(), options.getBufferSize()), options);
+    }
+
+    /**
+     * {@link #export(Writer, ExportOptions)} but asynchronous.
+     * @param writer The writer to write the rows to
+     * @param options The options determining the format rows are written in
+     * @return A {@link CompletableFuture} containing the amount of rows written
+     */
+    public CompletableFuture<Long> exportAsync(Writer writer, ExportOptions options) {
+        return runReadAsync(() -> export(writer, options));
+    }
+
+    /**
+     * {@link #export(OutputStream, ExportOptions)} but asynchronous.
+     * @param out The stream to write the rows to
+     * @param options The options determining the format rows are written in
+     * @return A {@link CompletableFuture} containing the amount of rows written
+     */
+    public CompletableFuture<Long> exportAsync(OutputStream out, ExportOptions options) {
+        return runReadAsync(() -> export(out, options));
+    }
+
+    /**
+     * {@link #export(WritableByteChannel, ExportOptions)} but asynchronous.
+     * @param channel The channel to write the rows to
+     * @param options The options determining the format rows are written in
+     * @return A {@link CompletableFuture} containing the amount of rows written
+     */
+    public CompletableFuture<Long> exportAsync(WritableByteChannel channel, ExportOptions options) {
+        return runReadAsync(() -> export(channel, options));
     }
 
     /**
@@ -349,7 +691,7 @@ public class SelectBuilder implements CharSequence {
      * @return A {@link CompletableFuture} containing the counted rows
      */
     public CompletableFuture<Long> executeCountAsync() {
-        return db.runAsync(this::executeCount);
+        return runReadAsync(this::executeCount);
     }
 
     /**
@@ -371,7 +713,7 @@ public class SelectBuilder implements CharSequence {
      * @return A {@link CompletableFuture} containing the counted rows
      */
     public <T> CompletableFuture<Map<T, Long>> executeCountMultipleAsync(Class<T> type) {
-        return db.runAsync(() -> executeCountMultiple(type));
+        return runReadAsync(() -> executeCountMultiple(type));
     }
 
     public SelectResults executeCountRaw() {
@@ -385,7 +727,7 @@ public class SelectBuilder implements CharSequence {
     }
 
     public CompletableFuture<SelectResults> executeCountRawAsync() {
-        return db.runAsync(this::executeCountRaw);
+        return runReadAsync(this::executeCountRaw);
     }
 
     /**
@@ -467,6 +809,13 @@ public class SelectBuilder implements CharSequence {
         return groupBy;
     }
 
+    /**
+     * @return The amount of rows the driver should fetch at once when executing this query
+     */
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
     @Override
     public SelectBuilder clone() {
         SelectBuilder builder = create(db, selectionTarget);
@@ -475,6 +824,13 @@ public class SelectBuilder implements CharSequence {
         builder.where(condition);
         builder.limit(limit);
         builder.order(order);
+        builder.fetchSize(fetchSize);
+        builder.timeout = timeout;
+        builder.alias = alias;
+        builder.joins.addAll(joins);
+        builder.groupBy = groupBy;
+        builder.seekColumns = seekColumns;
+        builder.seekValues = seekValues;
 
         return builder;
     }
@@ -0,0 +1,69 @@
+package com.ptsmods.mysqlw.query.builder;
+
+import com.ptsmods.mysqlw.Database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Runs the chunked writes of the builders in this package on a connection of a {@link Database}, in a transaction if requested.<br>
+ * Transactions always go through {@link Database#transaction(java.util.function.Function)} rather than toggling auto-commit by hand,
+ * as a Database that is not pooled shares a single connection between all threads and only its transactions take turns using it.
+ */
+final class Transactions {
+    private Transactions() {}
+
+    /**
+     * Runs the given work on a connection of the given Database.
+     * If the work is transactional and throws, everything it did is rolled back.
+     * Within a transaction that is already running, the work runs in a nested transaction instead.
+     * @param db The Database to run the work on
+     * @param transactional Whether to run the work in a transaction
+     * @param work The work to run
+     * @param <T> The type the work returns
+     * @return What the work returned, or null if no connection could be acquired or the transaction could not be
+     * started or committed, in which case the error has already been logged
+     * @throws SQLException If the work threw
+     */
+    static <T> T run(Database db, boolean transactional, Work<T> work) throws SQLException {
+        if (!transactional) return withConnection(db, work);
+
+        try {
+            return db.transaction(tdb -> {
+                try {
+                    return withConnection(tdb, work);
+                } catch (SQLException e) {
+                    throw new WorkFailedException(e); // Rolls the transaction back.
+                }
+            });
+        } catch (WorkFailedException e) {
+            throw e.cause;
+        }
+    }
+
+    private static <T> T withConnection(Database db, Work<T> work) throws SQLException {
+        Connection connection = db.getConnection();
+        if (connection == null) return null; // Error has already been logged.
+
+        try {
+            return work.run(connection);
+        } finally {
+            // Connections of transactions stay open until the transaction ends.
+            if (db.isPooled()) connection.close();
+        }
+    }
+
+    @FunctionalInterface
+    interface Work<T> {
+        T run(Connection connection) throws SQLException;
+    }
+
+    private static final class WorkFailedException extends RuntimeException {
+        private final SQLException cause;
+
+        private WorkFailedException(SQLException cause) {
+            super(null, null, false, false);
+            this.cause = cause;
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.ptsmods.mysqlw.query.builder;
+
+import com.ptsmods.mysqlw.Database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Builds updates that set different values for every row, identified by a key column.<br>
+ * Rows are updated in chunks (see {@link BatchOptions}), each chunk either as a JDBC batch of prepared updates or
+ * as a single {@code UPDATE ... SET col = CASE key WHEN ... END WHERE key IN (...)} statement, see {@link Strategy}.
+ */
+public class UpdateBuilder {
+    private final Database db;
+    private final String table;
+    private final String keyColumn;
+    private final String[] columns;
+    // Setting a key twice replaces the values set earlier, so both strategies have the same result.
+    private final Map<Object, Object[]> values = new LinkedHashMap<>();
+
+    private UpdateBuilder(Database db, String table, String keyColumn, String[] columns) {
+        if (columns.length == 0) throw new IllegalArgumentException("At least one column to update must be given.");
+        // MySQL assigns columns from left to right, so the CASEs after it would compare the keys to their updated values.
+        for (String column : columns)
+            if (column.equalsIgnoreCase(keyColumn)) throw new IllegalArgumentException("The key column " + keyColumn + " cannot be updated.");
+
+        this.db = db;
+        this.table = table;
+        this.keyColumn = keyColumn;
+        this.columns = Arrays.copyOf(columns, columns.length);
+    }
+
+    public static UpdateBuilder create(Database db, String table, String keyColumn, String... columns) {
+        return new UpdateBuilder(db, table, keyColumn, columns);
+    }
+
+    public static UpdateBuilder create(Database db, String table, String keyColumn, List<String> columns) {
+        return new UpdateBuilder(db, table, keyColumn, columns.toArray(new String[0]));
+    }
+
+    /**
+     * Sets the values of the row with the given key.
+     * @param key The value of the key column of the row to update
+     * @param values The new values of the columns of this builder
+     * @return This UpdateBuilder
+     */
+    public UpdateBuilder set(Object key, Object... values) {
+        if (key == null) throw new IllegalArgumentException("Rows cannot be updated by a null key.");
+        if (values.length != columns.length) throw new IllegalArgumentException("Amount of values passed not equal to columns being updated.");
+
+        this.values.put(key, values);
+        return this;
+    }
+
+    /**
+     * Sets the values of the rows with the given keys.
+     * @param values The new values of the columns of this builder by the key of the row to update
+     * @return This UpdateBuilder
+     */
+    public UpdateBuilder set(Map<?, Object[]> values) {
+        values.forEach(this::set);
+        return this;
+    }
+
+    /**
+     * @return The amount of rows to update
+     */
+    public int size() {
+        return values.size();
+    }
+
+    /**
+     * Updates all rows with the {@link BatchOptions#defaults() default options} and the {@link Strategy#AUTO automatically chosen} strategy.
+     * @return The amount of rows affected per chunk
+     * @see #execute(BatchOptions, Strategy)
+     */
+    public int[] execute() {
+        return execute(BatchOptions.defaults(), Strategy.AUTO);
+    }
+
+    /**
+     * Updates all rows in chunks.
+     * @param options The options determining the size of chunks and whether to use a transaction
+     * @param strategy How to update each chunk
+     * @return The amount of rows affected per chunk. Rows for which the driver does not report a count are counted as one.
+     */
+    public int[] execute(BatchOptions options, Strategy strategy) {
+        return execute(new ArrayList<>(values.entrySet()), options, strategy);
+    }
+
+    public CompletableFuture<int[]> executeAsync() {
+        return executeAsync(BatchOptions.defaults(), Strategy.AUTO);
+    }
+
+    public CompletableFuture<int[]> executeAsync(BatchOptions options, Strategy strategy) {
+        List<Map.Entry<Object, Object[]>> rows = new ArrayList<>(values.entrySet());
+        return db.runAsync(() -> execute(rows, options, strategy));
+    }
+
+    private int[] execute(List<Map.Entry<Object, Object[]>> rows, BatchOptions options, Strategy strategy) {
+        if (rows.isEmpty()) throw new IllegalStateException("No values were specified.");
+
+        try {
+            int[] counts = Transactions.run(db, options.isTransactional(), connection -> executeChunks(connection, rows, options, strategy));
+            if (counts == null) return new int[0]; // Error has already been logged.
+
+            db.invalidateCache(table);
+            return counts;
+        } catch (SQLException e) {
+            db.logOrThrow("Error executing batch update on table " + table + ".", e);
+            return new int[0];
+        }
+    }
+
+    private int[] executeChunks(Connection connection, List<Map.Entry<Object, Object[]>> rows, BatchOptions options, Strategy strategy) throws SQLException {
+        List<Integer> counts = new ArrayList<>();
+        for (List<Map.Entry<Object, Object[]>> chunk : split(rows, options, strategy))
+            counts.add(strategy == Strategy.CASE || strategy == Strategy.AUTO && chooseCase(chunk) ?
+                    executeCase(connection, chunk) : executeBatch(connection, chunk));
+
+        return counts.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private List<List<Map.Entry<Object, Object[]>>> split(List<Map.Entry<Object, Object[]>> rows, BatchOptions options, Strategy strategy) {
+        // A CASE statement binds every key twice and every value once, which must stay below the limit of the database.
+        int maxRows = options.getMaxRows();
+        if (strategy != Strategy.BATCH) maxRows = Math.max(1, Math.min(maxRows, db.getType().getMaxParameters() / (columns.length * 2 + 1)));
+
+        List<List<Map.Entry<Object, Object[]>>> chunks = new ArrayList<>();
+        List<Map.Entry<Object, Object[]>> chunk = new ArrayList<>();
+        long bytes = 0;
+        for (Map.Entry<Object, Object[]> row : rows) {
+            long size = InsertBuilder.estimateSize(row.getValue()) + InsertBuilder.estimateSize(new Object[] {row.getKey()});
+            if (!chunk.isEmpty() && (chunk.size() >= maxRows || bytes + size > options.getMaxBytes())) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>();
+                bytes = 0;
+            }
+
+            chunk.add(row);
+            bytes += size;
+        }
+        chunks.add(chunk);
+
+        return chunks;
+    }
+
+    // MySQL receives a batch of updates in a single round trip as well, as batched statements are rewritten,
+    // but still parses and executes every update in it separately, while a CASE updates all rows in one statement.
+    // SQLite runs in-process, so there is nothing to save there, while it would have to go through every WHEN of a CASE for every row.
+    private boolean chooseCase(List<Map.Entry<Object, Object[]>> chunk) {
+        return chunk.size() > 1 && db.getType() == Database.RDBMS.MySQL;
+    }
+
+    /**
+     * Builds a single query updating all given rows using a {@code CASE} per column.
+     * @param parameters The list to add the values to in the order they must be bound in, or null to inline them
+     * @return The built query
+     */
+    public String buildCaseQuery(List<Object> parameters) {
+        if (values.isEmpty()) throw new IllegalStateException("No values were specified.");
+
+        return buildCaseQuery(new ArrayList<>(values.entrySet()), parameters);
+    }
+
+    private String buildCaseQuery(List<Map.Entry<Object, Object[]>> rows, List<Object> parameters) {
+        StringBuilder query = new StringBuilder("UPDATE ").append(Database.engrave(table)).append(" SET ");
+        for (int i = 0; i < columns.length; i++) {
+            query.append('`').append(columns[i]).append("` = CASE `").append(keyColumn).append('`');
+            for (Map.Entry<Object, Object[]> row : rows)
+                query.append(" WHEN ").append(Database.getAsParameter(row.getKey(), parameters))
+                        .append(" THEN ").append(Database.getAsParameter(row.getValue()[i], parameters));
+            query.append(" END, ");
+        }
+
+        query.delete(query.length()-2, query.length()).append(" WHERE `").append(keyColumn).append("` IN (");
+        for (Map.Entry<Object, Object[]> row : rows)
+            query.append(Database.getAsParameter(row.getKey(), parameters)).append(", ");
+
+        return query.delete(query.length()-2, query.length()).append(");").toString();
+    }
+
+    private String buildRowQuery(Map.Entry<Object, Object[]> row, List<Object> parameters) {
+        StringBuilder query = new StringBuilder("UPDATE ").append(Database.engrave(table)).append(" SET ");
+        for (int i = 0; i < columns.length; i++)
+            query.append('`').append(columns[i]).append("` = ").append(Database.getAsParameter(row.getValue()[i], parameters)).append(", ");
+
+        return query.delete(query.length()-2, query.length()).append(" WHERE `").append(keyColumn).append("` = ")
+                .append(Database.getAsParameter(row.getKey(), parameters)).append(';').toString();
+    }
+
+    private int executeCase(Connection connection, List<Map.Entry<Object, Object[]>> chunk) throws SQLException {
+        List<Object> parameters = new ArrayList<>();
+        try (PreparedStatement statement = db.applyTimeout(connection.prepareStatement(buildCaseQuery(chunk, parameters)))) {
+            Database.bindParameters(statement, parameters);
+            return statement.executeUpdate();
+        }
+    }
+
+    private int executeBatch(Connection connection, List<Map.Entry<Object, Object[]>> chunk) throws SQLException {
+        String currentQuery = null;
+        PreparedStatement statement = null;
+        int count = 0;
+
+        try {
+            for (Map.Entry<Object, Object[]> row : chunk) {
+                List<Object> parameters = new ArrayList<>(columns.length + 1);
+                String query = buildRowQuery(row, parameters);
+
+                // Rows with values that have to be inlined need a statement of their own.
+                if (!query.equals(currentQuery)) {
+                    if (statement != null) {
+                        count += InsertBuilder.sum(statement.executeBatch());
+                        statement.close();
+                    }
+
+                    statement = db.applyTimeout(connection.prepareStatement(query));
+                    currentQuery = query;
+                }
+
+                Database.bindParameters(statement, parameters);
+                statement.addBatch();
+            }
+
+            if (statement != null) count += InsertBuilder.sum(statement.executeBatch());
+        } finally {
+            if (statement != null) statement.close();
+        }
+
+        return count;
+    }
+
+    @Override
+    public UpdateBuilder clone() {
+        UpdateBuilder builder = create(db, table, keyColumn, columns);
+        builder.values.putAll(values);
+        return builder;
+    }
+
+    /**
+     * How each chunk of rows is updated.
+     */
+    public enum Strategy {
+        /**
+         * {@link #CASE} for chunks of multiple rows on MySQL, where a batch is sent at once too, but every update in it is still
+         * parsed and executed as a statement of its own, while a CASE updates all rows in a single statement. {@link #BATCH} anywhere else.
+         */
+        AUTO,
+        /**
+         * A prepared {@code UPDATE ... WHERE key = ?} per row, sent as a single JDBC batch.
+         */
+        BATCH,
+        /**
+         * A single {@code UPDATE ... SET col = CASE key WHEN ? THEN ? ... END WHERE key IN (...)} statement.
+         * Chunks are made smaller if needed to stay below the maximum amount of parameters of the database.
+         */
+        CASE
+    }
+}
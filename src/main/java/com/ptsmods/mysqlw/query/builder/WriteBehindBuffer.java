@@ -0,0 +1,247 @@
+package com.ptsmods.mysqlw.query.builder;
+
+import com.ptsmods.mysqlw.Database;
+import com.ptsmods.mysqlw.SilentSQLException;
+import com.ptsmods.mysqlw.executor.GatedExecutor;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Collects rows inserted into a single table and writes them in batches rather than one by one.<br>
+ * Rows are buffered until either {@link WriteBehindOptions#getMaxRows() maxRows} rows are buffered or the oldest row has been
+ * buffered for {@link WriteBehindOptions#getMaxDelay() maxDelay} milliseconds. All buffered rows are then written
+ * in a single transaction, using one JDBC batch per kind of statement.
+ * The future returned for each row completes once the transaction it was written in has been committed.
+ * Rows whose future is cancelled before they are flushed are not written, rows that are being flushed can no longer be cancelled.
+ * @see Database#enableWriteBehind(String, WriteBehindOptions)
+ */
+public class WriteBehindBuffer implements AutoCloseable {
+    private final Database db;
+    private final String table;
+    private final WriteBehindOptions options;
+    private List<PendingRow> pending = new ArrayList<>();
+    private final Object flushLock = new Object();
+    private boolean flushScheduled, closed;
+
+    /**
+     * @param db The database to write rows to
+     * @param table The table to write rows to
+     * @param options The options determining when rows are flushed
+     */
+    public WriteBehindBuffer(Database db, String table, WriteBehindOptions options) {
+        if (options.getMaxRows() < 1) throw new IllegalArgumentException("The maximum amount of buffered rows must be at least 1.");
+
+        this.db = db;
+        this.table = table;
+        this.options = options;
+    }
+
+    /**
+     * Buffers a row to be inserted.
+     * @param columns The columns to insert values into
+     * @param values The values to insert into the columns
+     * @return A {@link CompletableFuture} containing the amount of rows affected, completed once the row has been written
+     */
+    public CompletableFuture<Integer> insert(String[] columns, Object[] values) {
+        return add(new PendingRow("INSERT", columns, values, null));
+    }
+
+    /**
+     * Buffers a row to replace any row with the same primary key.
+     * @param columns The columns to insert values into
+     * @param values The values to insert into the columns
+     * @return A {@link CompletableFuture} containing the amount of rows affected, completed once the row has been written
+     */
+    public CompletableFuture<Integer> replace(String[] columns, Object[] values) {
+        return add(new PendingRow("REPLACE", columns, values, null));
+    }
+
+    /**
+     * Buffers a row to be inserted, unless a row with the same key already exists.
+     * @param columns The columns to insert values into
+     * @param values The values to insert into the columns
+     * @param keyColumn The {@code PRIMARY KEY} column used to determine whether to ignore the row
+     * @return A {@link CompletableFuture} containing the amount of rows affected, completed once the row has been written.
+     * On MySQL, this is always 1, even if the row was ignored, as batched rows report no count of their own there.
+     */
+    public CompletableFuture<Integer> insertIgnore(String[] columns, Object[] values, String keyColumn) {
+        return add(new PendingRow("INSERT", columns, values, keyColumn));
+    }
+
+    private CompletableFuture<Integer> add(PendingRow row) {
+        if (row.columns.length != row.values.length) throw new IllegalArgumentException("Amount of values passed not equal to columns being filled.");
+
+        boolean flush = false;
+        synchronized (this) {
+            if (closed) throw new IllegalStateException("This write-behind buffer has been closed.");
+
+            pending.add(row);
+            if (pending.size() >= options.getMaxRows()) {
+                flush = true;
+                flushScheduled = true;
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                Scheduler.schedule(this::flushAsync, options.getMaxDelay());
+            }
+        }
+
+        if (flush) flushAsync();
+        return row.future;
+    }
+
+    private void flushAsync() {
+        try {
+            db.runAsync(this::flush);
+        } catch (RejectedExecutionException e) {
+            synchronized (this) {
+                // Closing writes the rows on the closing thread and anything else has already flushed them.
+                if (closed || pending.isEmpty()) return;
+            }
+
+            // A shut-down executor never accepts the flush, so the rows can never be written.
+            if (GatedExecutor.isShutdown(db.getExecutor())) take().forEach(row -> row.future.completeExceptionally(e));
+            // Otherwise the rows stay buffered, try again once the executor has had some time to catch up.
+            else Scheduler.schedule(this::flushAsync, Math.max(options.getMaxDelay(), 1));
+        }
+    }
+
+    /**
+     * @return The amount of rows currently buffered
+     */
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    /**
+     * @return The table rows are written to
+     */
+    public String getTable() {
+        return table;
+    }
+
+    /**
+     * @return The options this buffer was created with
+     */
+    public WriteBehindOptions getOptions() {
+        return options;
+    }
+
+    private synchronized List<PendingRow> take() {
+        List<PendingRow> rows = pending;
+        pending = new ArrayList<>();
+        flushScheduled = false;
+        return rows;
+    }
+
+    /**
+     * Writes all buffered rows on the calling thread.
+     * @return The amount of rows written
+     */
+    public int flush() {
+        // Flushes run one at a time, so closing waits for a flush that has already taken its rows out of the buffer.
+        synchronized (flushLock) {
+            return flushTaken(take());
+        }
+    }
+
+    private int flushTaken(List<PendingRow> rows) {
+        rows.removeIf(row -> row.future.isCancelled());
+        if (rows.isEmpty()) return 0;
+
+        try {
+            int[] counts = Transactions.run(db, true, connection -> write(connection, rows));
+            // Null if the error has already been logged, so just like a failed insert, nothing was affected.
+            if (counts != null) db.invalidateCache(table);
+
+            for (int i = 0; i < rows.size(); i++)
+                rows.get(i).future.complete(counts == null ? 0 : counts[i]);
+        } catch (SQLException e) {
+            try {
+                db.logOrThrow("Error flushing " + rows.size() + " buffered rows into table " + table + ".", e);
+                // Logged rather than thrown, so just like a failed insert, nothing was affected.
+                rows.forEach(row -> row.future.complete(0));
+            } catch (SilentSQLException e1) {
+                rows.forEach(row -> row.future.completeExceptionally(e1));
+            }
+        } catch (RuntimeException e) {
+            rows.forEach(row -> row.future.completeExceptionally(e));
+        }
+
+        return rows.size();
+    }
+
+    private int[] write(Connection connection, List<PendingRow> rows) throws SQLException {
+        int[] counts = new int[rows.size()];
+        // Rows with the same query are written in a single batch, batches are ordered by the first row buffered for them.
+        Map<String, List<Integer>> groups = new LinkedHashMap<>();
+        List<List<Object>> parameters = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            List<Object> rowParameters = new ArrayList<>();
+            groups.computeIfAbsent(buildQuery(rows.get(i), rowParameters), k -> new ArrayList<>()).add(i);
+            parameters.add(rowParameters);
+        }
+
+        for (Map.Entry<String, List<Integer>> group : groups.entrySet())
+            try (PreparedStatement statement = db.applyTimeout(connection.prepareStatement(group.getKey()))) {
+                for (int i : group.getValue()) {
+                    Database.bindParameters(statement, parameters.get(i));
+                    statement.addBatch();
+                }
+
+                // On MySQL, batches are rewritten into multi-row inserts, which report no count per row, see InsertBuilder#sum.
+                int[] groupCounts = statement.executeBatch();
+                for (int i = 0; i < groupCounts.length; i++)
+                    counts[group.getValue().get(i)] = groupCounts[i] == Statement.SUCCESS_NO_INFO ? 1 : Math.max(groupCounts[i], 0);
+            }
+
+        return counts;
+    }
+
+    private String buildQuery(PendingRow row, List<Object> parameters) {
+        StringBuilder query = new StringBuilder(row.keyword).append(" INTO ").append(Database.engrave(table))
+                .append(" (`").append(String.join("`, `", row.columns)).append("`) VALUES (");
+        for (Object value : row.values)
+            query.append(Database.getAsParameter(value, parameters)).append(", ");
+        query.delete(query.length()-2, query.length()).append(')');
+
+        // Setting the key to itself changes nothing, but does prevent an error being thrown for duplicate keys.
+        if (row.keyColumn != null) query.append(db.getType() == Database.RDBMS.SQLite ? " ON CONFLICT(`" + row.keyColumn + "`) DO UPDATE SET " : " ON DUPLICATE KEY UPDATE ")
+                .append('`').append(row.keyColumn).append("` = `").append(row.keyColumn).append('`');
+
+        return query.append(';').toString();
+    }
+
+    /**
+     * Stops accepting rows and writes all rows that are still buffered, after any flush that is already running has finished.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+        }
+
+        flush();
+    }
+
+    private static final class PendingRow {
+        private final String keyword;
+        private final String[] columns;
+        private final Object[] values;
+        private final String keyColumn;
+        private final CompletableFuture<Integer> future = new CompletableFuture<>();
+
+        private PendingRow(String keyword, String[] columns, Object[] values, String keyColumn) {
+            this.keyword = keyword;
+            this.columns = columns;
+            this.values = values;
+            this.keyColumn = keyColumn;
+        }
+    }
+}
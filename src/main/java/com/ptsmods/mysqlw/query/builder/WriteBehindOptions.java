@@ -0,0 +1,31 @@
+package com.ptsmods.mysqlw.query.builder;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Settings used to configure a {@link WriteBehindBuffer}.<br>
+ * A buffer is flushed as soon as either of its limits is reached.
+ * @see com.ptsmods.mysqlw.Database#enableWriteBehind(String, WriteBehindOptions)
+ */
+@Getter
+@Builder(builderClassName = "Builder")
+public class WriteBehindOptions {
+    /**
+     * The amount of buffered rows at which the buffer is flushed right away.
+     */
+    @lombok.Builder.Default
+    private final int maxRows = 500;
+    /**
+     * The maximum amount of milliseconds a row may stay buffered before it is flushed.
+     */
+    @lombok.Builder.Default
+    private final long maxDelay = 50;
+
+    /**
+     * @return WriteBehindOptions with all default values
+     */
+    public static WriteBehindOptions defaults() {
+        return builder().build();
+    }
+}
@@ -0,0 +1,137 @@
+package com.ptsmods.mysqlw.sqlite;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Settings applied to every SQLite connection a {@link com.ptsmods.mysqlw.Database} opens, in the form of PRAGMAs.<br>
+ * Settings left null keep SQLite's default. Besides the {@link #defaults() defaults}, which change nothing,
+ * there are three presets: {@link #durable()}, {@link #balanced()} and {@link #fastIngest()}.
+ * @see com.ptsmods.mysqlw.Database#connect(java.io.File, SQLiteOptions)
+ */
+@Getter
+@Builder(builderClassName = "Builder", toBuilder = true)
+public class SQLiteOptions {
+    /**
+     * How the database journals changes, {@link JournalMode#WAL WAL} lets readers and a writer work at the same time.
+     */
+    private final JournalMode journalMode;
+    /**
+     * How often SQLite waits for data to be written to disk, lower levels are faster but may lose the latest commits on power loss.
+     */
+    private final Synchronous synchronous;
+    /**
+     * The amount of pages cached per connection, or if negative, the amount of KiB.
+     */
+    private final Integer cacheSize;
+    /**
+     * The maximum amount of bytes of the database file that is memory-mapped, {@code 0} disables memory-mapping.
+     */
+    private final Long mmapSize;
+    /**
+     * Where temporary tables and indices are kept.
+     */
+    private final TempStore tempStore;
+    /**
+     * How many milliseconds to wait for a lock held by another connection before failing.
+     */
+    private final Integer busyTimeout;
+    /**
+     * The amount of pages the write-ahead log may grow to before it is checkpointed into the database, {@code 0} disables automatic checkpoints.
+     */
+    private final Integer walAutocheckpoint;
+
+    /**
+     * @return SQLiteOptions that leave every setting at SQLite's default
+     */
+    public static SQLiteOptions defaults() {
+        return builder().build();
+    }
+
+    /**
+     * Does not lose a single commit, not even on power loss, while still letting readers work alongside the writer.
+     * @return SQLiteOptions using WAL and fully synchronous commits
+     */
+    public static SQLiteOptions durable() {
+        return builder()
+                .journalMode(JournalMode.WAL)
+                .synchronous(Synchronous.FULL)
+                .busyTimeout(5000)
+                .build();
+    }
+
+    /**
+     * Suits most applications. Commits survive application crashes, but the latest ones may be lost on power loss.
+     * @return SQLiteOptions using WAL, normal synchronisation, a larger cache and memory-mapping
+     */
+    public static SQLiteOptions balanced() {
+        return builder()
+                .journalMode(JournalMode.WAL)
+                .synchronous(Synchronous.NORMAL)
+                .cacheSize(-16_000)
+                .mmapSize(256L * 1024 * 1024)
+                .tempStore(TempStore.MEMORY)
+                .busyTimeout(5000)
+                .build();
+    }
+
+    /**
+     * For loading large amounts of data that can be loaded again if anything goes wrong.
+     * Commits never wait for the disk, so they may be lost on power loss or even corrupt the database.
+     * @return SQLiteOptions using WAL, no synchronisation, a large cache, memory-mapping and infrequent checkpoints
+     */
+    public static SQLiteOptions fastIngest() {
+        return builder()
+                .journalMode(JournalMode.WAL)
+                .synchronous(Synchronous.OFF)
+                .cacheSize(-64_000)
+                .mmapSize(256L * 1024 * 1024)
+                .tempStore(TempStore.MEMORY)
+                .busyTimeout(5000)
+                .walAutocheckpoint(10_000)
+                .build();
+    }
+
+    /**
+     * Applies these options to the given connection.
+     * @param connection The SQLite connection to apply these options to
+     * @throws SQLException If any of the PRAGMAs could not be executed
+     */
+    public void apply(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            // The journal mode goes first, as the meaning of some of the other settings depends on it.
+            if (journalMode != null) statement.execute("PRAGMA journal_mode = " + journalMode + ";");
+            if (synchronous != null) statement.execute("PRAGMA synchronous = " + synchronous + ";");
+            if (cacheSize != null) statement.execute("PRAGMA cache_size = " + cacheSize + ";");
+            if (mmapSize != null) statement.execute("PRAGMA mmap_size = " + mmapSize + ";");
+            if (tempStore != null) statement.execute("PRAGMA temp_store = " + tempStore + ";");
+            if (busyTimeout != null) statement.execute("PRAGMA busy_timeout = " + busyTimeout + ";");
+            if (walAutocheckpoint != null) statement.execute("PRAGMA wal_autocheckpoint = " + walAutocheckpoint + ";");
+        }
+    }
+
+    /**
+     * @see <a href="https://www.sqlite.org/pragma.html#pragma_journal_mode">PRAGMA journal_mode</a>
+     */
+    public enum JournalMode {
+        DELETE, TRUNCATE, PERSIST, MEMORY, WAL, OFF
+    }
+
+    /**
+     * @see <a href="https://www.sqlite.org/pragma.html#pragma_synchronous">PRAGMA synchronous</a>
+     */
+    public enum Synchronous {
+        OFF, NORMAL, FULL, EXTRA
+    }
+
+    /**
+     * @see <a href="https://www.sqlite.org/pragma.html#pragma_temp_store">PRAGMA temp_store</a>
+     */
+    public enum TempStore {
+        DEFAULT, FILE, MEMORY
+    }
+}
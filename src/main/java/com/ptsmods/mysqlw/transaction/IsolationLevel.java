@@ -0,0 +1,43 @@
+package com.ptsmods.mysqlw.transaction;
+
+import java.sql.Connection;
+
+/**
+ * The isolation level a transaction runs with, determining which changes made by other transactions it can see.
+ * Not every RDBMS supports every level, SQLite only supports {@link #SERIALIZABLE} and {@link #READ_UNCOMMITTED}.
+ */
+public enum IsolationLevel {
+    /**
+     * Uses whichever level the connection was already using.
+     */
+    DEFAULT(-1),
+    /**
+     * @see Connection#TRANSACTION_READ_UNCOMMITTED
+     */
+    READ_UNCOMMITTED(Connection.TRANSACTION_READ_UNCOMMITTED),
+    /**
+     * @see Connection#TRANSACTION_READ_COMMITTED
+     */
+    READ_COMMITTED(Connection.TRANSACTION_READ_COMMITTED),
+    /**
+     * @see Connection#TRANSACTION_REPEATABLE_READ
+     */
+    REPEATABLE_READ(Connection.TRANSACTION_REPEATABLE_READ),
+    /**
+     * @see Connection#TRANSACTION_SERIALIZABLE
+     */
+    SERIALIZABLE(Connection.TRANSACTION_SERIALIZABLE);
+
+    private final int level;
+
+    IsolationLevel(int level) {
+        this.level = level;
+    }
+
+    /**
+     * @return The JDBC constant of this level, or {@code -1} for {@link #DEFAULT}
+     */
+    public int getLevel() {
+        return level;
+    }
+}
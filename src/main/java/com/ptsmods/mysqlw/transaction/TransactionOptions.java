@@ -0,0 +1,30 @@
+package com.ptsmods.mysqlw.transaction;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Settings used to configure a transaction.
+ * @see com.ptsmods.mysqlw.Database#transaction(TransactionOptions, java.util.function.Function)
+ */
+@Getter
+@Builder(builderClassName = "Builder")
+public class TransactionOptions {
+    /**
+     * The isolation level to run the transaction with.
+     */
+    @lombok.Builder.Default
+    private final IsolationLevel isolation = IsolationLevel.DEFAULT;
+    /**
+     * Whether the transaction only reads, which lets some RDBMSs optimise it. Writing in a read-only transaction fails.
+     */
+    @lombok.Builder.Default
+    private final boolean readOnly = false;
+
+    /**
+     * @return TransactionOptions with all default values
+     */
+    public static TransactionOptions defaults() {
+        return builder().build();
+    }
+}
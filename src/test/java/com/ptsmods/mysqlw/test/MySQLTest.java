@@ -3,6 +3,9 @@ package com.ptsmods.mysqlw.test;
 import com.ptsmods.mysqlw.Database;
 import com.ptsmods.mysqlw.SilentSQLException;
 import com.ptsmods.mysqlw.query.*;
+import com.ptsmods.mysqlw.query.builder.BatchOptions;
+import com.ptsmods.mysqlw.query.builder.BulkLoadOptions;
+import com.ptsmods.mysqlw.query.builder.UpdateBuilder;
 import com.ptsmods.mysqlw.table.ColumnType;
 import com.ptsmods.mysqlw.table.ForeignKey;
 import com.ptsmods.mysqlw.table.TableIndex;
@@ -12,14 +15,18 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestMethodOrder;
 
 import java.io.File;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
 import java.sql.Date;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDate;
 import java.time.Year;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -379,4 +386,135 @@ class MySQLTest {
 
         db.drop("checks_test");
     }
+
+    @Test
+    void testBulkLoad() throws SQLException {
+        Database db = getDb();
+        // Connections are made without allowLoadLocalInfile by default, so the shared Database falls back to batched inserts.
+        Database.RDBMS.MySQL.getConnectionProperties().setProperty("allowLoadLocalInfile", "true");
+        Database loadDataDb;
+        try {
+            loadDataDb = Database.connect("localhost", 3306, "test", "root", null);
+        } finally {
+            Database.RDBMS.MySQL.getConnectionProperties().remove("allowLoadLocalInfile");
+        }
+        loadDataDb.setLogging(false);
+
+        for (Database loader : new Database[] {db, loadDataDb}) {
+            db.drop("bulk_load_test"); // In case it failed last time.
+            TablePreset.create("bulk_load_test")
+                    .putColumn("id", ColumnType.INT.struct()
+                            .setPrimary())
+                    .putColumn("name", ColumnType.TEXT.struct())
+                    .create(db);
+
+            assertEquals(2, loader.bulkLoader("bulk_load_test", "id", "name").load(Stream.of(new Object[] {1, "a"}, new Object[] {2, "tab\tand\nline break"})).getRows());
+            assertEquals("tab\tand\nline break", db.selectBuilder("bulk_load_test").select("name").where(QueryCondition.equals("id", 2)).execute().get(0).getString("name"));
+
+            // LOAD DATA LOCAL skips duplicates on its own, but they should still fail the chunk by default.
+            assertThrows(SilentSQLException.class, () -> loader.bulkLoader("bulk_load_test", "id", "name").load(Stream.of(new Object[] {3, "c"}, new Object[] {2, "x"})));
+            assertEquals(2, db.count("bulk_load_test", "*", null));
+
+            BulkLoadOptions ignore = BulkLoadOptions.builder().duplicates(BulkLoadOptions.Duplicates.IGNORE).build();
+            assertEquals(1, loader.bulkLoader("bulk_load_test", ignore, "id", "name").load(Stream.of(new Object[] {3, "c"}, new Object[] {2, "x"})).getRows());
+            assertEquals("tab\tand\nline break", db.selectBuilder("bulk_load_test").select("name").where(QueryCondition.equals("id", 2)).execute().get(0).getString("name"));
+
+            BulkLoadOptions replace = BulkLoadOptions.builder().duplicates(BulkLoadOptions.Duplicates.REPLACE).build();
+            loader.bulkLoader("bulk_load_test", replace, "id", "name").load(Stream.of(new Object[] {2, "y"}, new Object[] {4, "d"}));
+            assertEquals("y", db.selectBuilder("bulk_load_test").select("name").where(QueryCondition.equals("id", 2)).execute().get(0).getString("name"));
+            assertEquals(4, db.count("bulk_load_test", "*", null));
+
+            db.drop("bulk_load_test");
+        }
+
+        loadDataDb.close();
+    }
+
+    @Test
+    void testUpdateBuilder() throws SQLException {
+        Database db = getDb();
+
+        db.drop("update_builder_test"); // In case it failed last time.
+        TablePreset.create("update_builder_test")
+                .putColumn("id", ColumnType.INT.struct()
+                        .setPrimary())
+                .putColumn("name", ColumnType.VARCHAR.struct()
+                        .configure(sup -> sup.apply(255))
+                        .setNonNull())
+                .putColumn("score", ColumnType.INT.struct())
+                .create(db);
+
+        for (int i = 0; i < 10; i++) db.insert("update_builder_test", new String[] {"id", "name", "score"}, new Object[] {i, "name" + i, 0});
+
+        // Every chunk is a single UPDATE ... CASE statement.
+        UpdateBuilder update = db.updateBuilder("update_builder_test", "id", "name", "score");
+        for (int i = 0; i < 10; i++) update.set(i, "case" + i, i);
+        update.set(42, "missing", 0); // Does not exist, so does not count as affected.
+        assertArrayEquals(new int[] {4, 4, 2}, update.execute(BatchOptions.builder().maxRows(4).build(), UpdateBuilder.Strategy.CASE));
+        assertEquals(45, db.selectBuilder("update_builder_test").select("score").execute().stream().mapToInt(row -> row.getInt("score")).sum());
+        assertEquals("case7", db.selectBuilder("update_builder_test").select("name").where(QueryCondition.equals("id", 7)).execute().get(0).getString("name"));
+
+        // Chunks of multiple rows are updated with CASE automatically on MySQL.
+        UpdateBuilder auto = db.updateBuilder("update_builder_test", "id", "score");
+        for (int i = 0; i < 10; i++) auto.set(i, i * 2);
+        assertArrayEquals(new int[] {10}, auto.executeAsync().join());
+        assertEquals(90, db.selectBuilder("update_builder_test").select("score").execute().stream().mapToInt(row -> row.getInt("score")).sum());
+
+        // A failing chunk rolls back the chunks before it too.
+        UpdateBuilder failing = db.updateBuilder("update_builder_test", "id", "name");
+        failing.set(0, "rolled back");
+        failing.set(1, new Object[] {null});
+        assertThrows(SilentSQLException.class, () -> failing.execute(BatchOptions.builder().maxRows(1).build(), UpdateBuilder.Strategy.CASE));
+        assertEquals("case0", db.selectBuilder("update_builder_test").select("name").where(QueryCondition.equals("id", 0)).execute().get(0).getString("name"));
+
+        db.drop("update_builder_test");
+    }
+
+    @Test
+    void testColumnTypes() throws SQLException {
+        Database db = getDb();
+
+        db.drop("column_types_test"); // In case it failed last time.
+        db.execute("CREATE TABLE column_types_test (id INT PRIMARY KEY, flag TINYINT(1), unsigned_int INT UNSIGNED, big BIGINT UNSIGNED, " +
+                "amount DECIMAL(20, 4), ratio DOUBLE, small_ratio FLOAT, label VARCHAR(255), data VARBINARY(16));");
+        db.execute("INSERT INTO column_types_test VALUES (1, 1, 4294967295, 18446744073709551615, 1234567890.1234, 0.5, 0.25, 'label', X'CAFE'), " +
+                "(2, 0, 0, 0, 0, 0, 0, '', X''), (3, NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL);");
+
+        SelectResults results = db.selectBuilder("column_types_test").select("*").order("id").execute();
+        assertEquals(3, results.size());
+
+        // Values should be exactly what ResultSet#getObject returns, even though they are read with typed getters.
+        ResultSet set = db.executeQuery("SELECT * FROM column_types_test ORDER BY id;");
+        for (SelectResults.SelectResultRow row : results) {
+            assertTrue(set.next());
+            for (int i = 0; i < results.getColumns().size(); i++)
+                if (row.get(i) instanceof byte[]) assertArrayEquals((byte[]) set.getObject(i + 1), (byte[]) row.get(i));
+                else assertEquals(set.getObject(i + 1), row.get(i));
+        }
+        set.getStatement().close();
+
+        SelectResults.SelectResultRow values = results.get(0);
+        assertEquals(Boolean.TRUE, values.get("flag"));
+        assertEquals(4294967295L, values.get("unsigned_int"));
+        assertEquals(new BigInteger("18446744073709551615"), values.get("big"));
+        assertEquals(new BigDecimal("1234567890.1234"), values.get("amount"));
+        assertEquals(0.5, values.get("ratio"));
+        assertEquals(0.25f, values.get("small_ratio"));
+        assertArrayEquals(new byte[] {(byte) 0xCA, (byte) 0xFE}, values.getByteArray("data"));
+
+        // Zeroes must not be mistaken for NULL and NULL must not be read as zero.
+        SelectResults.SelectResultRow zeroes = results.get(1);
+        SelectResults.SelectResultRow nulls = results.get(2);
+        assertEquals(Boolean.FALSE, zeroes.get("flag"));
+        assertEquals(0L, zeroes.get("unsigned_int"));
+        assertEquals(BigInteger.ZERO, zeroes.get("big"));
+        assertEquals(new BigDecimal("0.0000"), zeroes.get("amount"));
+        assertEquals(0.0, zeroes.get("ratio"));
+        assertEquals(0f, zeroes.get("small_ratio"));
+        assertEquals("", zeroes.getString("label"));
+        for (String column : results.getColumns())
+            if (!column.equals("id")) assertNull(nulls.get(column), column);
+
+        db.drop("column_types_test");
+    }
 }
\ No newline at end of file
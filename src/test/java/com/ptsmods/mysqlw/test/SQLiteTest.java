@@ -1,23 +1,81 @@
 package com.ptsmods.mysqlw.test;
 
+import com.ptsmods.mysqlw.AsyncSQLException;
 import com.ptsmods.mysqlw.Database;
 import com.ptsmods.mysqlw.SilentSQLException;
+import com.ptsmods.mysqlw.cache.EvictionPolicy;
+import com.ptsmods.mysqlw.cache.MemoryResultCache;
+import com.ptsmods.mysqlw.cache.ResultCacheOptions;
+import com.ptsmods.mysqlw.executor.BoundedExecutor;
+import com.ptsmods.mysqlw.executor.ExecutorOptions;
+import com.ptsmods.mysqlw.executor.GatedExecutor;
+import com.ptsmods.mysqlw.executor.RejectionPolicy;
+import com.ptsmods.mysqlw.pool.ConnectionPool;
+import com.ptsmods.mysqlw.pool.PoolOptions;
+import com.ptsmods.mysqlw.pool.StatementCache;
 import com.ptsmods.mysqlw.query.*;
+import com.ptsmods.mysqlw.query.ExportOptions;
+import com.ptsmods.mysqlw.query.SingleFlight;
+import com.ptsmods.mysqlw.query.builder.BatchLoader;
+import com.ptsmods.mysqlw.query.builder.BatchLoaderOptions;
+import com.ptsmods.mysqlw.query.builder.BatchOptions;
+import com.ptsmods.mysqlw.query.builder.BulkLoadOptions;
+import com.ptsmods.mysqlw.query.builder.BulkLoadProgress;
+import com.ptsmods.mysqlw.query.builder.DeleteOptions;
+import com.ptsmods.mysqlw.query.builder.DeleteProgress;
+import com.ptsmods.mysqlw.query.builder.GroupCommitOptions;
+import com.ptsmods.mysqlw.query.builder.GroupCommitter;
+import com.ptsmods.mysqlw.query.builder.InsertBuilder;
+import com.ptsmods.mysqlw.query.builder.Paginator;
+import com.ptsmods.mysqlw.query.builder.UpdateBuilder;
+import com.ptsmods.mysqlw.query.builder.WriteBehindBuffer;
+import com.ptsmods.mysqlw.query.builder.WriteBehindOptions;
+import com.ptsmods.mysqlw.sqlite.SQLiteOptions;
 import com.ptsmods.mysqlw.table.ColumnType;
 import com.ptsmods.mysqlw.table.ForeignKey;
 import com.ptsmods.mysqlw.table.TableIndex;
 import com.ptsmods.mysqlw.table.TablePreset;
+import com.ptsmods.mysqlw.transaction.TransactionOptions;
 import org.junit.jupiter.api.MethodOrderer;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestMethodOrder;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
 import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
 import java.time.Year;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -339,4 +397,1193 @@ class SQLiteTest {
 
         db.drop("checks_test");
     }
+
+    @Test
+    void testConnectionPool() throws SQLException {
+        Database pooled = Database.connect(new File("sqlite.db"), PoolOptions.builder()
+                .minSize(1)
+                .maxSize(4)
+                .build());
+        pooled.setLogging(false);
+        ConnectionPool pool = pooled.getConnectionPool();
+
+        try {
+            assertEquals(1, pool.getTotalCount());
+
+            // The connection should only be returned once the statement of a raw select is closed.
+            ResultSet set = pooled.selectRaw("testtable", "*");
+            assertSame(pooled, Database.getDatabase(set));
+            assertEquals(1, pool.getActiveCount());
+            set.getStatement().close();
+            assertEquals(0, pool.getActiveCount());
+
+            pooled.setExecutor(Executors.newFixedThreadPool(4));
+            List<CompletableFuture<Integer>> futures = IntStream.range(0, 16)
+                    .mapToObj(i -> pooled.countAsync("testtable", "*"))
+                    .collect(Collectors.toList());
+            for (CompletableFuture<Integer> future : futures) assertEquals(2, future.join());
+
+            assertEquals(0, pool.getActiveCount());
+            assertTrue(pool.getTotalCount() <= 4);
+        } finally {
+            pooled.close();
+        }
+
+        assertTrue(pool.isClosed());
+    }
+
+    @Test
+    void testPreparedStatements() throws SQLException {
+        Database db = getDb();
+        TablePreset.create("prepared_test")
+                .putColumn("name", ColumnType.TEXT.struct())
+                .putColumn("data", ColumnType.BLOB.struct())
+                .create(db);
+
+        // Values are bound rather than inlined, so neither quotes nor binary data need any escaping.
+        byte[] data = {0, 1, 2, (byte) 0xFF};
+        assertEquals(1, db.insert("prepared_test", new String[] {"name", "data"}, new Object[] {"it's", data}));
+        assertArrayEquals(data, (byte[]) db.select("prepared_test", "data", QueryCondition.equals("name", "it's")).get(0).get("data"));
+        assertEquals("it's", db.select("prepared_test", "name", QueryCondition.equals("data", data)).get(0).get("name"));
+
+        List<Object> parameters = new ArrayList<>();
+        assertEquals("SELECT `name` FROM `prepared_test` WHERE `name` = ?", db.selectBuilder("prepared_test")
+                .select("name")
+                .where(QueryCondition.equals("name", "it's"))
+                .buildQuery(parameters));
+        assertEquals(Collections.singletonList("it's"), parameters);
+
+        // Queries of the same shape reuse the same statement, regardless of the values used.
+        StatementCache cache = db.getStatementCache();
+        long hits = cache.getHits();
+        for (int i = 0; i < 5; i++)
+            assertEquals(i == 0 ? 1 : 0, db.count("prepared_test", "*", QueryCondition.equals("name", i == 0 ? "it's" : "name" + i)));
+        assertTrue(cache.getHits() - hits >= 4);
+
+        db.drop("prepared_test");
+    }
+
+    @Test
+    void testBatchInsert() throws SQLException, InterruptedException {
+        Database db = getDb();
+        TablePreset.create("batch_test")
+                .putColumn("id", ColumnType.INT.struct()
+                        .configure(sup -> sup.apply(null))
+                        .setPrimary())
+                .putColumn("name", ColumnType.TEXT.struct())
+                .create(db);
+
+        InsertBuilder insert = db.insertBuilder("batch_test", "id", "name");
+        for (int i = 0; i < 2500; i++)
+            insert.insert(i, i == 1234 ? new QueryFunction("'function'") : i % 2 == 0 ? null : "name" + i); // One row with a value that cannot be bound.
+        assertArrayEquals(new int[] {1000, 1000, 500}, insert.executeBatch(BatchOptions.builder()
+                .maxRows(1000)
+                .build()));
+        assertEquals(2500, db.count("batch_test", "*"));
+        assertEquals("function", db.select("batch_test", "name", QueryCondition.equals("id", 1234)).get(0).get("name"));
+
+        // Chunks are also split by their estimated size.
+        InsertBuilder replace = db.insertBuilder("batch_test", "id", "name");
+        for (int i = 0; i < 10; i++) replace.insert(i, "replaced" + i);
+        int[] counts = replace.executeReplaceBatch(BatchOptions.builder()
+                .maxBytes(60) // Roughly two rows per chunk.
+                .build());
+        assertEquals(5, counts.length);
+        assertEquals(10, Arrays.stream(counts).sum());
+        assertEquals(2500, db.count("batch_test", "*"));
+        assertEquals("replaced3", db.select("batch_test", "name", QueryCondition.equals("id", 3)).get(0).get("name"));
+
+        // A failing chunk rolls back the entire batch.
+        InsertBuilder failing = db.insertBuilder("batch_test", "id", "name");
+        for (int i = 2500; i < 2510; i++) failing.insert(i, "name" + i);
+        failing.insert(0, "duplicate");
+        assertThrows(SilentSQLException.class, () -> failing.executeBatch(BatchOptions.builder()
+                .maxRows(5)
+                .build()));
+        assertEquals(2500, db.count("batch_test", "*"));
+
+        // Batches wait for transactions running on the shared connection rather than becoming part of them.
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<Void> transaction = CompletableFuture.runAsync(() -> assertThrows(IllegalStateException.class, () -> db.transaction(d -> {
+            d.insert("batch_test", new String[] {"id", "name"}, new Object[] {3000, "transaction"});
+            started.countDown();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ignored) {}
+            throw new IllegalStateException();
+        })));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertArrayEquals(new int[] {1}, db.insertBuilder("batch_test", "id", "name").insert(3001, "batch").executeBatch());
+        transaction.join();
+        assertEquals(0, db.count("batch_test", "*", QueryCondition.equals("id", 3000)));
+        assertEquals(1, db.count("batch_test", "*", QueryCondition.equals("id", 3001)));
+
+        db.drop("batch_test");
+    }
+
+    @Test
+    void testStream() throws SQLException {
+        Database db = getDb();
+        TablePreset.create("stream_test")
+                .putColumn("id", ColumnType.INT.struct()
+                        .configure(sup -> sup.apply(null))
+                        .setPrimary())
+                .create(db);
+        InsertBuilder insert = db.insertBuilder("stream_test", "id");
+        for (int i = 0; i < 2500; i++) insert.insert(i);
+        insert.executeBatch();
+
+        try (Stream<SelectResults.SelectResultRow> stream = db.selectBuilder("stream_test")
+                .select("id")
+                .order("id")
+                .fetchSize(100)
+                .stream()) {
+            assertEquals(IntStream.range(0, 2500).sum(), stream.mapToInt(row -> row.getInt("id")).sum());
+        }
+
+        AtomicLong count = new AtomicLong();
+        db.selectBuilder("stream_test")
+                .select("id")
+                .where(QueryCondition.less("id", 100))
+                .forEachRow(row -> count.incrementAndGet());
+        assertEquals(100, count.get());
+
+        // Closing a partially consumed stream should close its statement too, otherwise the table would still be locked.
+        try (Stream<SelectResults.SelectResultRow> stream = db.selectBuilder("stream_test").select("*").stream()) {
+            assertEquals(10, stream.limit(10).count());
+        }
+
+        db.drop("stream_test");
+        assertFalse(db.tableExists("stream_test"));
+    }
+
+    @Test
+    void testColumnarResults() throws SQLException {
+        SelectResults results = getDb().selectBuilder("testtable")
+                .select(new String[] {"keyword", "value"})
+                .order("keyword")
+                .execute();
+        assertEquals(2, results.size());
+        assertEquals(Arrays.asList("keyword", "value"), results.getColumns());
+
+        int value = results.getOrdinal("value");
+        assertEquals(1, value);
+        assertEquals("val1", results.get(0).getString(value));
+        assertEquals("val2", results.get(1).get(value));
+        assertEquals(results.get(1).getString("value"), results.get(1).getString(value));
+        assertThrows(IllegalArgumentException.class, () -> results.getOrdinal("nonexistent"));
+        assertThrows(IllegalArgumentException.class, () -> results.get(0).get("nonexistent"));
+
+        // Rows are only views, but should still behave like the maps they used to be.
+        assertEquals(results.get(0), results.get(0));
+        assertEquals(2, results.get(0).size());
+        assertEquals("key1", results.get(0).get("keyword"));
+        assertEquals(results, getDb().selectBuilder("testtable").select(new String[] {"keyword", "value"}).order("keyword").execute());
+
+        // Columns should be known even if there are no rows.
+        SelectResults empty = getDb().select("testtable", "*", QueryCondition.equals("keyword", "nonexistent"), null, null);
+        assertTrue(empty.isEmpty());
+        assertEquals(2, empty.getColumns().size());
+    }
+
+    @Test
+    void testRowCursor() throws SQLException {
+        Database db = getDb();
+        TablePreset.create("cursor_test")
+                .putColumn("id", ColumnType.INT.struct()
+                        .configure(sup -> sup.apply(null))
+                        .setPrimary())
+                .putColumn("amount", ColumnType.BIGINT.struct()
+                        .configure(sup -> sup.apply(null)))
+                .create(db);
+        InsertBuilder insert = db.insertBuilder("cursor_test", "id", "amount");
+        for (int i = 0; i < 100; i++) insert.insert(i, i % 10 == 0 ? null : (long) i * 3);
+        insert.executeBatch();
+
+        long[] sum = new long[1];
+        int[] nulls = new int[1];
+        assertEquals(100, db.selectCursor("cursor_test", new String[] {"id", "amount"}, cursor -> {
+            sum[0] += cursor.getLong(1);
+            if (cursor.wasNull()) nulls[0]++;
+        }));
+        assertEquals(IntStream.range(0, 100).filter(i -> i % 10 != 0).mapToLong(i -> i * 3L).sum(), sum[0]);
+        assertEquals(10, nulls[0]);
+
+        // Stopping should skip all remaining rows.
+        assertEquals(5, db.selectBuilder("cursor_test")
+                .select("id")
+                .order("id")
+                .forEachCursor(cursor -> {
+                    assertEquals(cursor.getRow(), cursor.getInt(cursor.getOrdinal("id")));
+                    if (cursor.getRow() == 4) cursor.stop();
+                }));
+
+        db.drop("cursor_test");
+        assertFalse(db.tableExists("cursor_test"));
+    }
+
+    @Test
+    void testRowMapping() throws SQLException {
+        List<KeywordValue> mapped = getDb().selectBuilder("testtable")
+                .select("*")
+                .order("keyword")
+                .executeAs(KeywordValue.class);
+        assertEquals(2, mapped.size());
+        assertEquals("key1", mapped.get(0).keyword);
+        assertEquals("val1", mapped.get(0).value);
+        assertEquals(1, mapped.get(0).setterCalls);
+        assertEquals(mapped, getDb().select("testtable", "*", null, QueryOrder.by("keyword"), null).mapTo(KeywordValue.class));
+
+        // Columns should be matched ignoring case and underscores and values should be converted to the type they're bound to.
+        TablePreset.create("mapping_test")
+                .putColumn("row_id", ColumnType.INT.struct()
+                        .configure(sup -> sup.apply(null))
+                        .setPrimary())
+                .putColumn("amount", ColumnType.INT.struct()
+                        .configure(sup -> sup.apply(null)))
+                .putColumn("enabled", ColumnType.BOOLEAN.struct())
+                .create(getDb());
+        getDb().insert("mapping_test", new String[] {"row_id", "amount", "enabled"}, Arrays.asList(new Object[] {1, 5, true}, new Object[] {2, null, false}));
+
+        List<MappedRow> rows = getDb().selectBuilder("mapping_test").select("*").order("row_id").executeAs(MappedRow.class);
+        assertEquals(2, rows.size());
+        assertEquals(1L, rows.get(0).rowId);
+        assertEquals(5, rows.get(0).amount);
+        assertTrue(rows.get(0).enabled);
+        assertEquals(0, rows.get(1).amount);
+        assertFalse(rows.get(1).enabled);
+
+        getDb().drop("mapping_test");
+        assertThrows(IllegalArgumentException.class, () -> RowMapper.of(NotMappable.class, Collections.singletonList("col")));
+    }
+
+    static class KeywordValue {
+        private String keyword;
+        private String value;
+        private int setterCalls;
+
+        public void setValue(String value) {
+            this.value = value;
+            setterCalls++;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof KeywordValue && keyword.equals(((KeywordValue) o).keyword) && value.equals(((KeywordValue) o).value);
+        }
+
+        @Override
+        public int hashCode() {
+            return keyword.hashCode() * 31 + value.hashCode();
+        }
+    }
+
+    static class MappedRow {
+        private long rowId;
+        private int amount;
+        private boolean enabled;
+    }
+
+    static class NotMappable {
+        NotMappable(String a, String b) {}
+    }
+
+    @Test
+    void testBoundedExecutor() throws SQLException, InterruptedException {
+        BoundedExecutor executor = new BoundedExecutor("test", ExecutorOptions.builder()
+                .threads(1)
+                .queueCapacity(1)
+                .rejectionPolicy(RejectionPolicy.FAIL_FAST)
+                .build());
+        CountDownLatch latch = new CountDownLatch(1);
+        executor.execute(() -> {
+            try {
+                latch.await();
+            } catch (InterruptedException ignored) {}
+        });
+        executor.execute(() -> {});
+        assertEquals(1, executor.getQueueDepth());
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> {}));
+        assertEquals(1, executor.getRejectedCount());
+        latch.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(2, executor.getCompletedTaskCount());
+
+        // Tasks that do not fit in the queue should run on the calling thread instead.
+        BoundedExecutor callerRuns = new BoundedExecutor("test", ExecutorOptions.builder()
+                .threads(1)
+                .queueCapacity(0)
+                .build());
+        CountDownLatch blocker = new CountDownLatch(1);
+        callerRuns.execute(() -> {
+            try {
+                blocker.await();
+            } catch (InterruptedException ignored) {}
+        });
+        Thread[] ranOn = new Thread[1];
+        callerRuns.execute(() -> ranOn[0] = Thread.currentThread());
+        assertSame(Thread.currentThread(), ranOn[0]);
+        // Unless the calling thread only hands tasks off, as it would then hold up everything else it hands off.
+        Throwable[] handOff = new Throwable[1];
+        Thread handOffThread = new Thread(() -> {
+            BoundedExecutor.markHandOffOnly();
+            try {
+                callerRuns.execute(() -> ranOn[0] = Thread.currentThread());
+            } catch (Throwable t) {
+                handOff[0] = t;
+            }
+        });
+        handOffThread.start();
+        handOffThread.join();
+        assertTrue(handOff[0] instanceof RejectedExecutionException);
+        assertSame(Thread.currentThread(), ranOn[0]);
+        blocker.countDown();
+        callerRuns.shutdown();
+
+        Database db = getDb();
+        Executor previous = db.getExecutor();
+        // Executors that were set rather than created by the Database are not shut down when replaced.
+        db.setExecutor(previous);
+        BoundedExecutor configured = db.configureExecutor(ExecutorOptions.builder().threads(1).build());
+        assertSame(configured, db.getExecutor());
+        assertEquals(2, db.countAsync("testtable", "*", null).join());
+        assertTrue(configured.getMaxWaitTime() >= 0);
+        db.setExecutor(previous);
+        configured.shutdown();
+    }
+
+    @Test
+    void testGatedExecutor() throws SQLException, InterruptedException {
+        // Platform threads behave the same as virtual threads here, they're just more expensive.
+        GatedExecutor executor = new GatedExecutor(Thread::new, 2);
+        AtomicInteger running = new AtomicInteger(), maxRunning = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(50);
+        for (int i = 0; i < 50; i++)
+            executor.execute(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException ignored) {}
+                running.decrementAndGet();
+                done.countDown();
+            });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertTrue(maxRunning.get() <= 2);
+
+        // With a single permit, tasks should run one by one in the order they were submitted in.
+        GatedExecutor serial = new GatedExecutor(Thread::new, 1);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch serialDone = new CountDownLatch(100);
+        for (int i = 0; i < 100; i++) {
+            int index = i;
+            serial.execute(() -> {
+                order.add(index);
+                serialDone.countDown();
+            });
+        }
+        assertTrue(serialDone.await(10, TimeUnit.SECONDS));
+        assertEquals(IntStream.range(0, 100).boxed().collect(Collectors.toList()), order);
+
+        serial.shutdown();
+        assertThrows(RejectedExecutionException.class, () -> serial.execute(() -> {}));
+        if (!GatedExecutor.isVirtualSupported()) assertFalse(getDb().useVirtualThreads());
+    }
+
+    @Test
+    void testWriteBehind() throws SQLException {
+        Database db = getDb();
+        TablePreset.create("write_behind_test")
+                .putColumn("id", ColumnType.INT.struct()
+                        .configure(sup -> sup.apply(null))
+                        .setPrimary())
+                .putColumn("value", ColumnType.TEXT.struct())
+                .create(db);
+        WriteBehindBuffer buffer = db.enableWriteBehind("write_behind_test", WriteBehindOptions.builder()
+                .maxRows(50)
+                .maxDelay(10)
+                .build());
+        assertSame(buffer, db.getWriteBehindBuffer("write_behind_test"));
+        assertThrows(IllegalStateException.class, () -> db.enableWriteBehind("write_behind_test", WriteBehindOptions.defaults()));
+
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 120; i++)
+            futures.add(db.insertAsync("write_behind_test", new String[] {"id", "value"}, new Object[] {i, "value" + i}));
+        assertEquals(120, futures.stream().mapToInt(CompletableFuture::join).sum());
+        assertEquals(120, db.count("write_behind_test", "*"));
+
+        db.replaceAsync("write_behind_test", new String[] {"id", "value"}, new Object[] {5, "replaced"}).join();
+        db.insertIgnoreAsync("write_behind_test", new String[] {"id", "value"}, new Object[] {6, "ignored"}, "id").join();
+        assertEquals("replaced", db.select("write_behind_test", "value", QueryCondition.equals("id", 5), null, null).get(0).getString("value"));
+        assertEquals("value6", db.select("write_behind_test", "value", QueryCondition.equals("id", 6), null, null).get(0).getString("value"));
+
+        // Rows still buffered should be written when write-behind is disabled.
+        CompletableFuture<Integer> last = db.insertAsync("write_behind_test", new String[] {"id", "value"}, new Object[] {1000, "last"});
+        db.disableWriteBehind("write_behind_test");
+        assertTrue(last.isDone());
+        assertEquals(121, db.count("write_behind_test", "*"));
+        assertNull(db.getWriteBehindBuffer("write_behind_test"));
+
+        // Rows cancelled before they are flushed are not written.
+        db.enableWriteBehind("write_behind_test", WriteBehindOptions.builder().maxDelay(10_000).build());
+        CompletableFuture<Integer> cancelled = db.insertAsync("write_behind_test", new String[] {"id", "value"}, new Object[] {2000, "cancelled"});
+        assertTrue(cancelled.cancel(true));
+        db.disableWriteBehind("write_behind_test");
+        assertEquals(121, db.count("write_behind_test", "*"));
+
+        // Rows written while write-behind is being disabled are written directly instead.
+        db.enableWriteBehind("write_behind_test", WriteBehindOptions.defaults()).close();
+        assertEquals(1, db.insertAsync("write_behind_test", new String[] {"id", "value"}, new Object[] {3000, "direct"}).join());
+        assertEquals(1, db.replaceAsync("write_behind_test", new String[] {"id", "value"}, new Object[] {3001, "direct"}).join());
+        assertEquals(1, db.insertIgnoreAsync("write_behind_test", new String[] {"id", "value"}, new Object[] {3002, "direct"}, "id").join());
+        db.disableWriteBehind("write_behind_test");
+        assertEquals(124, db.count("write_behind_test", "*"));
+
+        // Closing writes buffered rows and runs queued asynchronous calls before closing the connection.
+        Database closing = Database.connect(new File("sqlite.db"));
+        closing.enableWriteBehind("write_behind_test", WriteBehindOptions.builder().maxDelay(10_000).build());
+        CompletableFuture<Integer> buffered = closing.insertAsync("write_behind_test", new String[] {"id", "value"}, new Object[] {4000, "buffered"});
+        CompletableFuture<Integer> queued = closing.executeUpdateAsync("INSERT INTO write_behind_test (id, value) VALUES (4001, 'queued');");
+        closing.close();
+        assertEquals(1, (int) buffered.getNow(null));
+        assertEquals(1, (int) queued.getNow(null));
+        assertEquals(126, db.count("write_behind_test", "*"));
+
+        db.drop("write_behind_test");
+    }
+
+    @Test
+    void testBatchLoader() throws SQLException {
+        Database db = getDb();
+        TablePreset.create("loader_test")
+                .putColumn("id", ColumnType.INT.struct()
+                        .configure(sup -> sup.apply(null))
+                        .setPrimary())
+                .putColumn("value", ColumnType.TEXT.struct())
+                .create(db);
+        InsertBuilder insert = db.insertBuilder("loader_test", "id", "value");
+        for (int i = 0; i < 100; i++) insert.insert(i, "value" + i);
+        insert.executeBatch();
+
+        BatchLoader loader = new BatchLoader(db, "loader_test", "id", new String[] {"value"}, BatchLoaderOptions.builder()
+                .maxDelay(100)
+                .build());
+        StatementCache cache = db.getStatementCache();
+        long queries = cache.getHits() + cache.getMisses();
+
+        List<CompletableFuture<SelectResults.SelectResultRow>> futures = new ArrayList<>();
+        for (int i = 0; i < 50; i++) futures.add(loader.load(i * 2L)); // Longs should match the Integers SQLite returns.
+        CompletableFuture<SelectResults.SelectResultRow> missing = loader.load(1000);
+        CompletableFuture<SelectResults.SelectResultRow> duplicate = loader.load(4);
+        assertEquals(51, loader.getPendingCount());
+        loader.dispatch();
+
+        for (int i = 0; i < 50; i++) assertEquals("value" + i * 2, futures.get(i).join().getString("value"));
+        assertNull(missing.join());
+        assertEquals("value4", duplicate.join().getString("value"));
+        // All lookups should have been done with a single query.
+        assertEquals(queries + 1, cache.getHits() + cache.getMisses());
+
+        assertEquals(Arrays.asList("value1", null), db.batchLoader("loader_test", "id", "*").loadMany(Arrays.asList(1, -1)).join().stream()
+                .map(row -> row == null ? null : row.getString("value"))
+                .collect(Collectors.toList()));
+        assertSame(db.batchLoader("loader_test", "id", "*"), db.batchLoader("loader_test", "id", "*"));
+
+        db.drop("loader_test");
+    }
+
+    @Test
+    void testSingleFlight() throws SQLException, InterruptedException {
+        SingleFlight<String, Object> flight = new SingleFlight<>();
+        CountDownLatch started = new CountDownLatch(1), release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        Object result = new Object();
+        CompletableFuture<Object> first = CompletableFuture.supplyAsync(() -> flight.execute("key", () -> {
+            calls.incrementAndGet();
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {}
+            return result;
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<Object> second = CompletableFuture.supplyAsync(() -> flight.execute("key", () -> {
+            calls.incrementAndGet();
+            return new Object();
+        }));
+        // Wait for the second call to join the first before letting the first finish.
+        long deadline = System.currentTimeMillis() + 5000;
+        while (flight.getSharedCount() == 0 && System.currentTimeMillis() < deadline) Thread.sleep(1);
+        release.countDown();
+
+        assertSame(result, first.join());
+        assertSame(result, second.join());
+        assertEquals(1, calls.get());
+        assertEquals(0, flight.getRunningCount());
+        // Results should not be cached once the call has finished.
+        assertNotSame(result, flight.execute("key", Object::new));
+
+        // Waiting callers stick to their own timeout and run the call themselves if the running call was abandoned.
+        CountDownLatch abandonedStarted = new CountDownLatch(1), abandonedRelease = new CountDownLatch(1);
+        CompletableFuture<Object> abandoned = CompletableFuture.supplyAsync(() -> flight.execute("key", () -> {
+            abandonedStarted.countDown();
+            try {
+                abandonedRelease.await();
+            } catch (InterruptedException ignored) {}
+            return result;
+        }, Long.MAX_VALUE, () -> true));
+        assertTrue(abandonedStarted.await(5, TimeUnit.SECONDS));
+
+        CompletionException timeout = assertThrows(CompletionException.class, () -> flight.execute("key", Object::new, TimeUnit.MILLISECONDS.toNanos(10), () -> false));
+        assertInstanceOf(TimeoutException.class, timeout.getCause());
+
+        Object own = new Object();
+        long shared = flight.getSharedCount();
+        CompletableFuture<Object> waiting = CompletableFuture.supplyAsync(() -> flight.execute("key", () -> own));
+        deadline = System.currentTimeMillis() + 5000;
+        while (flight.getSharedCount() == shared && System.currentTimeMillis() < deadline) Thread.sleep(1);
+        abandonedRelease.countDown();
+        assertSame(result, abandoned.join());
+        assertSame(own, waiting.join());
+
+        Database db = getDb();
+        db.setSingleFlight(true);
+        assertTrue(db.isSingleFlight());
+        assertEquals(2, db.select("testtable", "*").size());
+        db.setSingleFlight(false);
+        assertNull(db.getSingleFlight());
+    }
+
+    @Test
+    void testResultCache() throws SQLException, InterruptedException {
+        Database db = getDb();
+        MemoryResultCache cache = new MemoryResultCache(ResultCacheOptions.defaults());
+        db.setResultCache(cache);
+        try {
+            SelectResults results = db.select("testtable", "*");
+            assertSame(results, db.select("testtable", "*"));
+            assertEquals(1, cache.getHits());
+            assertEquals(1, cache.size());
+            assertTrue(cache.getEstimatedBytes() > 0);
+
+            // Selects without a table are never cached.
+            assertEquals(2, db.selectBuilder((String) null).select(new QueryFunction("1 + 1"), "two").execute().get(0).get("two"));
+            assertEquals(1, cache.size());
+
+            // Writes should invalidate results selected from the table written to.
+            db.insert("testtable", new String[] {"keyword", "value"}, new Object[] {"key3", "val3"});
+            assertEquals(0, cache.size());
+            assertEquals(3, db.select("testtable", "*").size());
+            db.delete("testtable", QueryCondition.equals("keyword", "key3"));
+            assertEquals(2, db.select("testtable", "*").size());
+
+            // Other threads wait for a transaction on the shared connection, so they never see or cache rows it rolls back.
+            List<CompletableFuture<Integer>> reads = new ArrayList<>();
+            assertThrows(IllegalStateException.class, () -> db.transaction(d -> {
+                d.insert("testtable", new String[] {"keyword", "value"}, new Object[] {"key3", "val3"});
+                reads.add(CompletableFuture.supplyAsync(() -> db.select("testtable", "*").size()));
+                throw new IllegalStateException();
+            }));
+            assertEquals(2, (int) reads.get(0).join());
+            assertEquals(2, db.select("testtable", "*").size());
+        } finally {
+            db.setResultCache(null);
+        }
+
+        MemoryResultCache lfu = new MemoryResultCache(ResultCacheOptions.builder()
+                .evictionPolicy(EvictionPolicy.LFU)
+                .maxEntries(2)
+                .build());
+        SelectResults results = db.select("testtable", "*");
+        lfu.put(Collections.singletonList("a"), Collections.singleton("testtable"), results);
+        lfu.put(Collections.singletonList("b"), Collections.singleton("testtable"), results);
+        lfu.get(Collections.singletonList("a"));
+        lfu.get(Collections.singletonList("a"));
+        lfu.get(Collections.singletonList("b"));
+        lfu.put(Collections.singletonList("c"), Collections.singleton("othertable"), results);
+        // b was used less often than a, so it should be evicted even though it was used more recently.
+        assertNull(lfu.get(Collections.singletonList("b")));
+        assertSame(results, lfu.get(Collections.singletonList("a")));
+        assertEquals(1, lfu.getEvictions());
+
+        lfu.invalidate("testtable");
+        assertEquals(1, lfu.size());
+
+        MemoryResultCache expiring = new MemoryResultCache(ResultCacheOptions.builder().ttl(1).build());
+        expiring.put(Collections.singletonList("a"), Collections.singleton("testtable"), results);
+        Thread.sleep(5);
+        assertNull(expiring.get(Collections.singletonList("a")));
+    }
+
+    @Test
+    void testTransaction() throws SQLException {
+        Database db = getDb();
+        String[] columns = {"keyword", "value"};
+        int inserted = db.transaction(d -> {
+            assertTrue(d.isInTransaction());
+            return d.insert("testtable", columns, new Object[] {"key3", "val3"}) + d.insert("testtable", columns, new Object[] {"key4", "val4"});
+        });
+        assertEquals(2, inserted);
+        assertFalse(db.isInTransaction());
+        assertEquals(4, db.count("testtable", "*", null));
+
+        // Exceptions should roll back everything done in the block.
+        assertThrows(IllegalStateException.class, () -> db.transaction(d -> {
+            d.delete("testtable", QueryCondition.equals("keyword", "key3"));
+            throw new IllegalStateException();
+        }));
+        assertEquals(4, db.count("testtable", "*", null));
+
+        // Nested transactions should only roll back what was done within them.
+        db.transaction(d -> {
+            d.delete("testtable", QueryCondition.equals("keyword", "key3"));
+            assertThrows(IllegalStateException.class, () -> d.transaction(d1 -> {
+                d1.delete("testtable", QueryCondition.equals("keyword", "key4"));
+                throw new IllegalStateException();
+            }));
+            return null;
+        });
+        assertEquals(0, db.count("testtable", "*", QueryCondition.equals("keyword", "key3")));
+        assertEquals(1, db.count("testtable", "*", QueryCondition.equals("keyword", "key4")));
+
+        // Writes from other threads wait for the transaction to end rather than being rolled back with it.
+        List<CompletableFuture<Integer>> writes = new ArrayList<>();
+        assertThrows(IllegalStateException.class, () -> db.transaction(d -> {
+            d.insert("testtable", columns, new Object[] {"key5", "val5"});
+            writes.add(d.insertAsync("testtable", columns, new Object[] {"key6", "val6"}));
+            try {
+                Thread.sleep(100); // Giving the other thread some time to try to write.
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            assertFalse(writes.get(0).isDone());
+            throw new IllegalStateException();
+        }));
+        assertEquals(1, (int) writes.get(0).join());
+        assertEquals(0, db.count("testtable", "*", QueryCondition.equals("keyword", "key5")));
+        assertEquals(1, db.delete("testtable", QueryCondition.equals("keyword", "key6")));
+
+        assertThrows(SilentSQLException.class, () -> db.transaction(TransactionOptions.builder().readOnly(true).build(),
+                d -> d.delete("testtable", QueryCondition.equals("keyword", "key4"))));
+        assertEquals(1, db.delete("testtable", QueryCondition.equals("keyword", "key4")));
+
+        assertEquals(2, (int) db.transactionAsync(d -> d.count("testtable", "*", null)).join());
+
+        // Async calls made within a transaction are not part of it, even if the executor runs them on the calling thread.
+        Executor executor = db.getExecutor();
+        db.setExecutor(Runnable::run);
+        try {
+            db.transaction(d -> {
+                assertFalse(d.runAsync(d::isInTransaction).join());
+                assertTrue(d.isInTransaction());
+                return null;
+            });
+        } finally {
+            db.setExecutor(executor);
+        }
+
+        // Pooled transactions should keep using the same connection, even if it is closed in between.
+        Database pooled = Database.connect(new File("sqlite.db"), PoolOptions.builder().maxSize(2).build());
+        pooled.setLogging(false);
+        try {
+            pooled.transaction(d -> {
+                d.insertBuilder("testtable", columns)
+                        .insert(new Object[] {"key3", "val3"}, new Object[] {"key4", "val4"})
+                        .executeBatch();
+                assertEquals(1, pooled.getConnectionPool().getActiveCount());
+                return d.delete("testtable", QueryCondition.equals("keyword", "key3"));
+            });
+            assertEquals(0, pooled.getConnectionPool().getActiveCount());
+            assertEquals(1, pooled.delete("testtable", QueryCondition.equals("keyword", "key4")));
+        } finally {
+            pooled.close();
+        }
+        // Closing a Database shuts down the executor it created.
+        assertTrue(((ExecutorService) pooled.getExecutor()).isShutdown());
+    }
+
+    @Test
+    void testGroupCommit() throws SQLException {
+        Database db = getDb();
+        String[] columns = {"keyword", "value"};
+        GroupCommitter committer = db.enableGroupCommit(GroupCommitOptions.builder()
+                .maxWrites(2)
+                .maxDelay(10_000)
+                .build());
+        try {
+            assertThrows(IllegalStateException.class, () -> db.enableGroupCommit(GroupCommitOptions.defaults()));
+
+            // The group is only committed once the second write is queued.
+            CompletableFuture<Integer> first = db.insertAsync("testtable", columns, new Object[] {"key3", "val3"});
+            assertEquals(1, committer.size());
+            CompletableFuture<Integer> second = db.insertAsync("testtable", columns, new Object[] {"key4", "val4"});
+            assertEquals(1, first.join());
+            assertEquals(1, second.join());
+
+            // A failing write should not make the other writes in its group fail.
+            CompletableFuture<Integer> failing = db.executeUpdateAsync("INSERT INTO nonexistent_table VALUES (1);", Collections.emptyList());
+            CompletableFuture<Integer> succeeding = db.deleteAsync("testtable", QueryCondition.equals("keyword", "key3"));
+            assertEquals(1, succeeding.join());
+            assertNull(failing.join());
+
+            // Writes cancelled while queued are skipped.
+            CompletableFuture<Integer> cancelled = db.insertAsync("testtable", columns, new Object[] {"key5", "val5"});
+            assertTrue(cancelled.cancel(true));
+            assertEquals(1, committer.flush());
+            assertEquals(0, db.count("testtable", "*", QueryCondition.equals("keyword", "key5")));
+
+            db.deleteAsync("testtable", QueryCondition.equals("keyword", "key4"));
+            assertEquals(1, committer.flush());
+        } finally {
+            db.disableGroupCommit();
+        }
+
+        assertNull(db.getGroupCommitter());
+        assertEquals(2, db.count("testtable", "*", null));
+    }
+
+    @Test
+    void testSQLiteOptions() throws SQLException {
+        File file = new File("sqlite_options.db");
+        Database db = Database.connect(file, SQLiteOptions.balanced());
+        db.setLogging(false);
+        try {
+            assertEquals("wal", pragma(db, "journal_mode"));
+            assertEquals("1", pragma(db, "synchronous")); // NORMAL
+            assertEquals("-16000", pragma(db, "cache_size"));
+            assertEquals("2", pragma(db, "temp_store")); // MEMORY
+            assertEquals("5000", pragma(db, "busy_timeout"));
+        } finally {
+            db.close();
+        }
+
+        // Options should be applied to every connection of a pool.
+        Database pooled = Database.connect(file, PoolOptions.builder().minSize(2).maxSize(2).build(), SQLiteOptions.fastIngest());
+        pooled.setLogging(false);
+        try {
+            assertEquals("0", pooled.transaction(d -> pragma(d, "synchronous")));
+            assertEquals("10000", pragma(pooled, "wal_autocheckpoint"));
+        } finally {
+            pooled.close();
+        }
+
+        for (String suffix : new String[] {"", "-wal", "-shm"})
+            new File(file.getPath() + suffix).delete();
+    }
+
+    private static String pragma(Database db, String pragma) {
+        ResultSet set = db.executeQuery("PRAGMA " + pragma + ";");
+        try {
+            assertTrue(set.next());
+            return set.getString(1);
+        } catch (SQLException e) {
+            throw new SilentSQLException(e);
+        } finally {
+            try {
+                set.getStatement().close();
+            } catch (SQLException ignored) {}
+        }
+    }
+
+    @Test
+    void testSeparateReaders() throws SQLException {
+        File file = new File("sqlite_readers.db");
+        Database db = Database.connect(file, SQLiteOptions.balanced(), 2);
+        db.setLogging(false);
+        ConnectionPool readers = db.getReadPool();
+        try {
+            db.execute("CREATE TABLE reader_test (id INTEGER PRIMARY KEY, value TEXT);");
+
+            // Asynchronous writes all go to the single writer thread, so they stay in order.
+            List<CompletableFuture<Integer>> writes = IntStream.range(0, 50)
+                    .mapToObj(i -> db.insertAsync("reader_test", new String[] {"id", "value"}, new Object[] {i, "value" + i}))
+                    .collect(Collectors.toList());
+            writes.forEach(CompletableFuture::join);
+
+            List<CompletableFuture<Integer>> reads = IntStream.range(0, 16)
+                    .mapToObj(i -> db.countAsync("reader_test", "*"))
+                    .collect(Collectors.toList());
+            for (CompletableFuture<Integer> read : reads) assertEquals(50, read.join());
+            assertEquals("value7", db.selectBuilder("reader_test")
+                    .select("value")
+                    .where(QueryCondition.equals("id", 7))
+                    .execute().get(0).getString("value"));
+            assertTrue(readers.getTotalCount() >= 1 && readers.getTotalCount() <= 2);
+            assertEquals(0, readers.getActiveCount());
+
+            // Readers must not be able to write.
+            try (Connection reader = readers.borrow(); Statement statement = reader.createStatement()) {
+                assertThrows(SQLException.class, () -> statement.executeUpdate("DELETE FROM reader_test;"));
+            }
+
+            // Reads in a transaction should see its own writes.
+            assertEquals(51, (int) db.transaction(d -> {
+                d.insert("reader_test", new String[] {"id", "value"}, new Object[] {50, "value50"});
+                return d.count("reader_test", "*", null);
+            }));
+        } finally {
+            db.close();
+        }
+
+        assertTrue(readers.isClosed());
+        for (String suffix : new String[] {"", "-wal", "-shm"})
+            new File(file.getPath() + suffix).delete();
+    }
+
+    @Test
+    void testKeysetPagination() throws SQLException {
+        Database db = getDb();
+        TablePreset.create("pagetest")
+                .putColumn("grp", ColumnType.INT.struct())
+                .putColumn("name", ColumnType.TEXT.struct())
+                .create(db);
+        try {
+            List<Object[]> rows = new ArrayList<>();
+            for (int i = 0; i < 25; i++) rows.add(new Object[] {i % 3, String.format("name%02d", i)});
+            db.insert("pagetest", new String[] {"grp", "name"}, rows);
+
+            QueryOrder order = QueryOrder.by("grp", QueryOrder.OrderDirection.DESC).then("name");
+            assertEquals("`grp` DESC, `name` ASC", order.toString());
+            Paginator paginator = new Paginator(db.selectBuilder("pagetest").select("grp").select("name"), order, 4);
+
+            // Every row should be on exactly one page, in the order of the paginator.
+            List<String> names = new ArrayList<>();
+            String token = null;
+            int pages = 0;
+            do {
+                Paginator.Page page = pages % 2 == 0 ? paginator.fetch(token) : paginator.fetchAsync(token).join();
+                for (SelectResults.SelectResultRow row : page.getResults()) names.add(row.getString("name"));
+                token = page.getNextToken();
+                pages++;
+            } while (token != null);
+
+            assertEquals(7, pages);
+            assertEquals(db.selectBuilder("pagetest").select("name").order(order).execute().stream()
+                    .map(row -> row.getString("name"))
+                    .collect(Collectors.toList()), names);
+
+            assertThrows(IllegalArgumentException.class, () -> paginator.fetch("not a token"));
+            // Forged numbers too large to bind safely, 1E2147483647 and a number of 100 digits.
+            for (String forged : new String[] {"\u0002M\u0000\u000c1E2147483647I\u0000\u0000\u0000\u0000",
+                    "\u0002N\u0000\u0064" + String.join("", Collections.nCopies(100, "9")) + "I\u0000\u0000\u0000\u0000"})
+                assertThrows(IllegalArgumentException.class, () -> paginator.fetch(Base64.getUrlEncoder().encodeToString(forged.getBytes(StandardCharsets.ISO_8859_1))));
+            assertThrows(IllegalArgumentException.class, () -> new Paginator(db.selectBuilder("pagetest").select("name"), order, 4).fetch(null));
+        } finally {
+            db.drop("pagetest");
+        }
+    }
+
+    @Test
+    void testBulkLoad() throws SQLException {
+        Database db = getDb();
+        TablePreset.create("bulktest")
+                .putColumn("id", ColumnType.INT.struct())
+                .putColumn("name", ColumnType.TEXT.struct())
+                .create(db);
+        try {
+            List<BulkLoadProgress> progress = new ArrayList<>();
+            BulkLoadOptions options = BulkLoadOptions.builder()
+                    .maxRows(100)
+                    .progressListener(progress::add)
+                    .build();
+
+            // Rows are loaded in chunks of at most 100 rows, reporting progress after each.
+            BulkLoadProgress result = db.bulkLoader("bulktest", options, "id", "name")
+                    .load(IntStream.range(0, 250).mapToObj(i -> new Object[] {i, "name" + i}));
+            assertEquals(250, result.getRows());
+            assertEquals(3, result.getChunks());
+            assertEquals(Arrays.asList(100L, 200L, 250L), progress.stream().map(BulkLoadProgress::getRows).collect(Collectors.toList()));
+            assertEquals(250, db.count("bulktest", "*", null));
+            assertThrows(IllegalArgumentException.class, () -> db.bulkLoader("bulktest", "id", "name").load(Collections.singletonList(new Object[] {1}).iterator()));
+
+            String csv = "id,name\r\n1000,\"quoted, with \"\"quotes\"\"\nand a line break\"\n1001,\n1002,\"\"\n";
+            BulkLoadOptions csvOptions = BulkLoadOptions.builder().skipHeader(true).build();
+            assertEquals(3, db.bulkLoader("bulktest", csvOptions, "id", "name")
+                    .load(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))).getRows());
+            assertEquals("quoted, with \"quotes\"\nand a line break", db.selectBuilder("bulktest").select("name").where(QueryCondition.equals("id", 1000)).execute().get(0).getString("name"));
+            assertEquals(252, db.count("bulktest", "name", null)); // COUNT skips nulls
+            assertEquals(1, db.count("bulktest", "*", QueryCondition.equals("name", "")));
+
+            String tsv = "2000\ttab\\there\n2001\t\\N\n";
+            BulkLoadOptions tsvOptions = BulkLoadOptions.builder().format(BulkLoadOptions.Format.TSV).build();
+            assertEquals(2, db.bulkLoader("bulktest", tsvOptions, "id", "name")
+                    .loadAsync(new ByteArrayInputStream(tsv.getBytes(StandardCharsets.UTF_8))).join().getRows());
+            assertEquals("tab\there", db.selectBuilder("bulktest").select("name").where(QueryCondition.equals("id", 2000)).execute().get(0).getString("name"));
+            assertEquals(253, db.count("bulktest", "name", null));
+        } finally {
+            db.drop("bulktest");
+        }
+
+        TablePreset.create("bulkkeys")
+                .putColumn("id", ColumnType.INT.struct().setPrimary())
+                .putColumn("name", ColumnType.TEXT.struct())
+                .create(db);
+        try {
+            db.bulkLoader("bulkkeys", "id", "name").load(Stream.of(new Object[] {1, "a"}, new Object[] {2, "b"}));
+            // Duplicates fail the entire chunk by default.
+            assertThrows(SilentSQLException.class, () -> db.bulkLoader("bulkkeys", "id", "name").load(Stream.of(new Object[] {3, "c"}, new Object[] {2, "x"})));
+            assertEquals(2, db.count("bulkkeys", "*", null));
+
+            BulkLoadOptions ignore = BulkLoadOptions.builder().duplicates(BulkLoadOptions.Duplicates.IGNORE).build();
+            assertEquals(1, db.bulkLoader("bulkkeys", ignore, "id", "name").load(Stream.of(new Object[] {3, "c"}, new Object[] {2, "x"})).getRows());
+            assertEquals("b", db.selectBuilder("bulkkeys").select("name").where(QueryCondition.equals("id", 2)).execute().get(0).getString("name"));
+
+            BulkLoadOptions replace = BulkLoadOptions.builder().duplicates(BulkLoadOptions.Duplicates.REPLACE).build();
+            db.bulkLoader("bulkkeys", replace, "id", "name").load(Stream.of(new Object[] {2, "y"}, new Object[] {4, "d"}));
+            assertEquals("y", db.selectBuilder("bulkkeys").select("name").where(QueryCondition.equals("id", 2)).execute().get(0).getString("name"));
+            assertEquals(4, db.count("bulkkeys", "*", null));
+        } finally {
+            db.drop("bulkkeys");
+        }
+    }
+
+    @Test
+    void testExport() throws SQLException {
+        Database db = getDb();
+        TablePreset.create("exporttest")
+                .putColumn("id", ColumnType.INT.struct())
+                .putColumn("name", ColumnType.TEXT.struct())
+                .create(db);
+        try {
+            db.insert("exporttest", new String[] {"id", "name"}, Arrays.asList(
+                    new Object[] {1, "plain"},
+                    new Object[] {2, "comma, \"quote\""},
+                    new Object[] {3, "tab\tline\nbreak"},
+                    new Object[] {4, null}));
+
+            StringWriter csv = new StringWriter();
+            assertEquals(4, db.selectBuilder("exporttest").select("*").order("id").export(csv, ExportOptions.defaults()));
+            assertEquals("id,name\n1,plain\n2,\"comma, \"\"quote\"\"\"\n3,\"tab\tline\nbreak\"\n4,\n", csv.toString());
+
+            ByteArrayOutputStream tsv = new ByteArrayOutputStream();
+            db.selectBuilder("exporttest").select("*").order("id").exportAsync(tsv, ExportOptions.builder()
+                    .format(ExportOptions.Format.TSV)
+                    .header(false)
+                    .build()).join();
+            assertEquals("1\tplain\n2\tcomma, \"quote\"\n3\ttab\\tline\\nbreak\n4\t\\N\n", new String(tsv.toByteArray(), StandardCharsets.UTF_8));
+
+            // A buffer smaller than a row makes sure rows are written as they are read.
+            ByteArrayOutputStream ndjson = new ByteArrayOutputStream();
+            db.selectBuilder("exporttest").select("*").order("id").export(Channels.newChannel(ndjson), ExportOptions.builder()
+                    .format(ExportOptions.Format.NDJSON)
+                    .bufferSize(1)
+                    .build());
+            assertEquals("{\"id\":1,\"name\":\"plain\"}\n{\"id\":2,\"name\":\"comma, \\\"quote\\\"\"}\n" +
+                    "{\"id\":3,\"name\":\"tab\\tline\\nbreak\"}\n{\"id\":4,\"name\":null}\n", new String(ndjson.toByteArray(), StandardCharsets.UTF_8));
+
+            // Exported CSV can be loaded again as is.
+            db.delete("exporttest", null);
+            assertEquals(4, db.bulkLoader("exporttest", BulkLoadOptions.builder().skipHeader(true).build(), "id", "name")
+                    .load(new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8))).getRows());
+            StringWriter reexported = new StringWriter();
+            db.selectBuilder("exporttest").select("*").order("id").export(reexported, ExportOptions.defaults());
+            assertEquals(csv.toString(), reexported.toString());
+        } finally {
+            db.drop("exporttest");
+        }
+    }
+
+    @Test
+    void testMultiRowUpsert() throws SQLException {
+        Database db = getDb();
+        TablePreset.create("upsert_test")
+                .putColumn("id", ColumnType.INT.struct()
+                        .configure(sup -> sup.apply(null))
+                        .setPrimary())
+                .putColumn("name", ColumnType.TEXT.struct())
+                .putColumn("score", ColumnType.INT.struct())
+                .create(db);
+        try {
+            assertEquals(2, db.insertBuilder("upsert_test", "id", "name", "score")
+                    .insert(1, "one", 10)
+                    .insert(2, "two", 20)
+                    .execute());
+
+            // Existing rows only get their score updated, new rows are inserted.
+            InsertBuilder upsert = db.insertBuilder("upsert_test", "id", "name", "score")
+                    .keyColumns("id")
+                    .insert(1, "uno", 11)
+                    .insert(3, "three", 30);
+            assertEquals("INSERT INTO `upsert_test` (`id`, `name`, `score`) VALUES (?, ?, ?), (?, ?, ?) ON CONFLICT(`id`) DO UPDATE SET `score` = excluded.`score`;",
+                    upsert.buildUpsertQuery(new String[] {"score"}, new ArrayList<>()));
+            assertEquals(2, upsert.executeUpsert("score"));
+            assertEquals(3, db.count("upsert_test", "*"));
+            SelectResults.SelectResultRow first = db.selectBuilder("upsert_test").select("*").where(QueryCondition.equals("id", 1)).execute().get(0);
+            assertEquals("one", first.getString("name"));
+            assertEquals(11, first.getInt("score"));
+            assertThrows(IllegalStateException.class, () -> db.insertBuilder("upsert_test", "id", "score").insert(1, 1).executeUpsert("score"));
+
+            // Rows that already exist are skipped, in chunks.
+            InsertBuilder ignore = db.insertBuilder("upsert_test", "id", "name", "score");
+            for (int i = 1; i <= 5; i++) ignore.insert(i, "new" + i, 0);
+            assertArrayEquals(new int[] {0, 1, 1}, ignore.executeInsertIgnoreBatch(BatchOptions.builder().maxRows(2).build()));
+            assertEquals(5, db.count("upsert_test", "*"));
+            assertEquals(11, db.selectBuilder("upsert_test").select("score").where(QueryCondition.equals("id", 1)).execute().get(0).getInt("score"));
+
+            InsertBuilder batchUpsert = db.insertBuilder("upsert_test", "id", "name", "score").keyColumns("id");
+            for (int i = 1; i <= 6; i++) batchUpsert.insert(i, "name" + i, i * 100);
+            assertArrayEquals(new int[] {4, 2}, batchUpsert.executeUpsertBatchAsync(BatchOptions.builder().maxRows(4).build(), "name", "score").join());
+            assertEquals(2100, db.selectBuilder("upsert_test").select("score").execute().stream().mapToInt(row -> row.getInt("score")).sum());
+        } finally {
+            db.drop("upsert_test");
+        }
+    }
+
+    @Test
+    void testUpdateBuilder() throws SQLException {
+        Database db = getDb();
+        TablePreset.create("update_test")
+                .putColumn("id", ColumnType.INT.struct()
+                        .configure(sup -> sup.apply(null))
+                        .setPrimary())
+                .putColumn("name", ColumnType.TEXT.struct())
+                .putColumn("score", ColumnType.INT.struct())
+                .create(db);
+        try {
+            InsertBuilder insert = db.insertBuilder("update_test", "id", "name", "score");
+            for (int i = 0; i < 10; i++) insert.insert(i, "name" + i, 0);
+            insert.execute();
+
+            UpdateBuilder update = db.updateBuilder("update_test", "id", "name", "score");
+            for (int i = 0; i < 5; i++) update.set(i, "updated" + i, i * 10);
+            update.set(42, "missing", 0); // Does not exist, so does not count as affected.
+            assertEquals("UPDATE `update_test` SET `name` = CASE `id` WHEN 0 THEN 'updated0' WHEN 1 THEN 'updated1' END, `score` = CASE `id` WHEN 0 THEN 0 WHEN 1 THEN 10 END WHERE `id` IN (0, 1);",
+                    db.updateBuilder("update_test", "id", "name", "score").set(0, "updated0", 0).set(1, "updated1", 10).buildCaseQuery(null));
+
+            assertArrayEquals(new int[] {2, 2, 1}, update.execute(BatchOptions.builder().maxRows(2).build(), UpdateBuilder.Strategy.BATCH));
+            assertEquals(100, db.selectBuilder("update_test").select("score").execute().stream().mapToInt(row -> row.getInt("score")).sum());
+
+            UpdateBuilder all = db.updateBuilder("update_test", "id", "name", "score");
+            for (int i = 0; i < 10; i++) all.set(i, "case" + i, i);
+            assertArrayEquals(new int[] {4, 4, 2}, all.executeAsync(BatchOptions.builder().maxRows(4).build(), UpdateBuilder.Strategy.CASE).join());
+            assertEquals(45, db.selectBuilder("update_test").select("score").execute().stream().mapToInt(row -> row.getInt("score")).sum());
+            assertEquals("case7", db.selectBuilder("update_test").select("name").where(QueryCondition.equals("id", 7)).execute().get(0).getString("name"));
+
+            assertArrayEquals(new int[] {10}, all.execute());
+            assertThrows(IllegalArgumentException.class, () -> update.set(1, "too few"));
+            assertThrows(IllegalArgumentException.class, () -> db.updateBuilder("update_test", "id", "name", "ID"));
+        } finally {
+            db.drop("update_test");
+        }
+    }
+
+    @Test
+    void testChunkedDelete() throws SQLException, InterruptedException, ExecutionException, TimeoutException {
+        Database db = getDb();
+        for (String table : new String[] {"delete_test", "delete_archive"})
+            TablePreset.create(table)
+                    .putColumn("id", ColumnType.INT.struct()
+                            .configure(sup -> sup.apply(null))
+                            .setPrimary())
+                    .putColumn("kind", ColumnType.INT.struct())
+                    .create(db);
+        try {
+            InsertBuilder insert = db.insertBuilder("delete_test", "id", "kind");
+            for (int i = 0; i < 25; i++) insert.insert(i, i % 2);
+            insert.execute();
+
+            // Rows are archived and deleted in chunks of 5 matching rows.
+            List<DeleteProgress> progress = new ArrayList<>();
+            DeleteProgress result = db.deleteBuilder("delete_test", "id")
+                    .where(QueryCondition.equals("kind", 1))
+                    .archiveTo("delete_archive")
+                    .execute(DeleteOptions.builder()
+                            .chunkSize(5)
+                            .progressListener(progress::add)
+                            .build());
+            assertTrue(result.isComplete());
+            assertEquals(12, result.getDeleted());
+            assertEquals(12, result.getArchived());
+            assertEquals(3, result.getChunks());
+            assertEquals(Arrays.asList(9, 19, 23), progress.stream().map(p -> ((Number) p.getLastKey()).intValue()).collect(Collectors.toList()));
+            assertEquals(13, db.count("delete_test", "*"));
+            assertEquals(12, db.count("delete_archive", "*", QueryCondition.equals("kind", 1)));
+
+            // A failing chunk stops an asynchronous delete with the progress made so far.
+            List<Throwable> errors = new CopyOnWriteArrayList<>();
+            Consumer<Throwable> errorHandler = db.getErrorHandler();
+            db.setErrorHandler(errors::add);
+            try {
+                result = db.deleteBuilder("delete_test", "id")
+                        .archiveTo("nonexistent_archive")
+                        .executeAsync(DeleteOptions.builder().chunkSize(5).build())
+                        .get(5, TimeUnit.SECONDS);
+                assertFalse(result.isComplete());
+                assertEquals(0, result.getDeleted());
+                assertEquals(1, errors.size());
+                assertEquals(13, db.count("delete_test", "*"));
+            } finally {
+                db.setErrorHandler(errorHandler);
+            }
+
+            // Resuming only deletes rows after the given key.
+            result = db.deleteBuilder("delete_test", "id")
+                    .startAfter(10)
+                    .executeAsync(DeleteOptions.builder()
+                            .chunkSize(3)
+                            .delay(5)
+                            .build()).join();
+            assertTrue(result.isComplete());
+            assertEquals(7, result.getDeleted());
+            assertEquals(0, result.getArchived());
+            assertEquals(6, db.count("delete_test", "*"));
+
+            result = db.deleteBuilder("delete_test", "id").where(QueryCondition.equals("kind", 1)).execute();
+            assertTrue(result.isComplete());
+            assertEquals(0, result.getChunks());
+        } finally {
+            db.drop("delete_test");
+            db.drop("delete_archive");
+        }
+    }
+
+    @Test
+    void testQueryTimeout() throws SQLException, InterruptedException {
+        Database db = getDb();
+        assertThrows(IllegalArgumentException.class, () -> db.setQueryTimeout(-1));
+        db.setQueryTimeout(30);
+        try {
+            assertEquals(30, db.getQueryTimeout());
+            assertEquals(2, db.selectBuilder("testtable").select("*").timeout(5, TimeUnit.SECONDS).execute().size());
+        } finally {
+            db.setQueryTimeout(0);
+        }
+
+        // Statements created after the deadline has passed fail.
+        SilentSQLException e = assertThrows(SilentSQLException.class, () -> db.withTimeout(1, TimeUnit.NANOSECONDS,
+                () -> db.selectBuilder("testtable").select("*").execute()));
+        assertInstanceOf(SQLTimeoutException.class, e.getParent());
+
+        List<Throwable> errors = new CopyOnWriteArrayList<>();
+        Consumer<Throwable> errorHandler = db.getErrorHandler();
+        db.setErrorHandler(errors::add);
+        try {
+            // The deadline is set when the call is made and carried over to the executor.
+            assertNull(db.selectBuilder("testtable").select("*").timeout(1, TimeUnit.NANOSECONDS).executeAsync().join());
+            assertEquals(1, errors.size());
+            assertInstanceOf(SilentSQLException.class, ((AsyncSQLException) errors.get(0)).getException());
+            errors.clear();
+
+            // Cancelling the future cancels the running statement.
+            CountDownLatch started = new CountDownLatch(1), stopped = new CountDownLatch(1);
+            CompletableFuture<ResultSet> query = db.runAsync(() -> {
+                started.countDown();
+                try {
+                    return db.executeQuery("WITH RECURSIVE c(x) AS (SELECT 1 UNION ALL SELECT x + 1 FROM c WHERE x < 1000000000) SELECT COUNT(*) FROM c;");
+                } finally {
+                    stopped.countDown();
+                }
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Thread.sleep(100); // Giving the query some time to start.
+            assertTrue(query.cancel(true));
+            assertTrue(stopped.await(5, TimeUnit.SECONDS));
+            assertTrue(query.isCancelled());
+            assertTrue(errors.isEmpty());
+            assertEquals(2, db.count("testtable", "*"));
+        } finally {
+            db.setErrorHandler(errorHandler);
+        }
+    }
 }
\ No newline at end of file